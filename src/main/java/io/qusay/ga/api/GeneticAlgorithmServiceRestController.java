@@ -1,10 +1,15 @@
 package io.qusay.ga.api;
 
+import io.qusay.ga.geneticalgorithm.JobParameters;
 import io.qusay.model.Job;
 import io.qusay.model.JobDto;
+import io.qusay.model.JobMetricsDto;
+import io.qusay.model.ScheduleEvaluationDto;
 import io.qusay.ga.service.Dispatcher;
 import io.qusay.ga.service.GaToDbSerializer;
+import io.qusay.ga.service.ScheduleEvaluator;
 
+import org.springdoc.api.annotations.ParameterObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.hateoas.server.mvc.WebMvcLinkBuilder;
 import org.springframework.http.HttpStatus;
@@ -12,11 +17,14 @@ import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/genetic-algorithm-api")
 // Does not run from /api/genetic-algorithm-api, but rather just from /genetic-algorithm-api
@@ -25,54 +33,28 @@ public class GeneticAlgorithmServiceRestController {
     @Autowired
     Dispatcher dispatcher;
 
-    // Parameters of the GA. These are to fine-tune the algorithm
-    // FUTURE: These constants should be stored somewhere else. Some sort of public static constant in the GA controller?
-    // FUTURE: Perhaps in a configuration text file, or better: in a database config table
-    private static final String NUM_GENERATIONS = "10000";
-    private static final String POPULATION_SIZE = "60";
-    // How many "extra" generations to run after a valid (no violated hard constraints) solution has emerged
-    // Expressed in the proportion of already-ran generations. E.g. If this is 20, and 1000 generations have run when a valid solution is found, then 1000 * 0.20 = 200 more generations will run
-    private static final String RUN_DOWN_PROPORTION_GENERATIONS = "20";
-    // Crossover with p = 0.6
-    private static final String CROSSOVER_PERCENTAGE = "10";
-    // Mutate all individuals with p = 0.05 each generation
-    private static final String MUTATE_PERCENTAGE = "5"; // For suggested rates, see (Cekała et all 2015) and/or my lit review for suggested %
-    // Each chromosome may have between 1 and MUTATE_GENES_MAX if it is mutated
-    private static final String MUTATE_GENES_MAX = "20";
-    // How many of the very best in a population are guaranteed to survive
-    private static final String ELITE_SURVIVORS = "2";
-
-    // How often to send reports back to the database, in percentage of job done
-    // This is important for the frontend, since it is how often the status progress bar will update
-    private static final String QUERY_RATE = "1";
+    @Autowired
+    ScheduleEvaluator scheduleEvaluator;
 
     /**
      * Start a genetic algorithm batch job running, using an existing Schedule (which may or may not be a work-in-progress)
      *
      * @param scheduleId Primary key of an existing record in the Schedules Table
+     * @param parameters Bound by name from the rest of the query parameters. Any not given keep their defaults, see {@link JobParameters}
      * @return Data on the new job, and an HTTP 202 Accepted (which comes from the @ResponseStatus annotation)
      */
     @PostMapping("/job")
     @ResponseStatus(HttpStatus.ACCEPTED) // Why HTTP 202 Accepted? Processing isn't complete, but this HTTP transaction is closed. Perfect! See: https://httpstatuses.com/202
-    public JobDto createJob(@RequestParam(required = true) Long scheduleId,
-                            @RequestParam(required = false, defaultValue = NUM_GENERATIONS) Integer numGenerations,
-                            @RequestParam(required = false, defaultValue = POPULATION_SIZE) Integer populationSize,
-                            @RequestParam(required = false, defaultValue = RUN_DOWN_PROPORTION_GENERATIONS) Integer proportionRunDownGenerations,
-                            @RequestParam(required = false, defaultValue = CROSSOVER_PERCENTAGE) Integer crossoverPercentage,
-                            @RequestParam(required = false, defaultValue = MUTATE_PERCENTAGE) Integer mutatePercentage,
-                            @RequestParam(required = false, defaultValue = MUTATE_GENES_MAX) Integer mutateGenesMax,
-                            @RequestParam(required = false, defaultValue = ELITE_SURVIVORS) Integer numEliteSurvivors,
-                            @RequestParam(required = false, defaultValue = QUERY_RATE) Integer queryRate
-    ) {
+    public JobDto createJob(@RequestParam(required = true) Long scheduleId, @ParameterObject JobParameters parameters) {
         System.out.println("Creating a GA job from schedule, id=" + scheduleId); // FUTURE: Logger info
 
         // Dispatch the job. After getting data from database, and creating a new record in the Job table,
         // the dispatcher will spawn its own thread (so that this method (and API call) can return)
-        Job job = dispatcher.dispatchNewJobForSchedule(scheduleId, numGenerations, populationSize, proportionRunDownGenerations, crossoverPercentage, mutatePercentage, mutateGenesMax, numEliteSurvivors, queryRate);
+        Job job = dispatcher.dispatchNewJobForSchedule(scheduleId, parameters);
 
         // Return a JSON response representing the Job
         JobDto dto = buildJsonResponse(job);
-        dto.add(WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(GeneticAlgorithmServiceRestController.class).createJob(scheduleId, numGenerations, populationSize, proportionRunDownGenerations, crossoverPercentage, mutatePercentage, mutateGenesMax, numEliteSurvivors, queryRate)).withSelfRel());
+        dto.add(WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(GeneticAlgorithmServiceRestController.class).createJob(scheduleId, parameters)).withSelfRel());
 
         return dto;
     }
@@ -100,6 +82,55 @@ public class GeneticAlgorithmServiceRestController {
         return dto;
     }
 
+    /**
+     * Live metrics for a queued or running job (generations/sec, evaluations/sec, memory, ...). Served from memory, never the database
+     */
+    @GetMapping("/job/{jobId}/metrics")
+    @ResponseStatus(HttpStatus.OK)
+    public JobMetricsDto getMetricsOfJob(@PathVariable Long jobId) {
+        JobMetricsDto metrics = dispatcher.getMetricsForJob(jobId);
+        metrics.add(WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(GeneticAlgorithmServiceRestController.class).getMetricsOfJob(jobId)).withSelfRel());
+        return metrics;
+    }
+
+    /**
+     * Live metrics for every queued or running job, for an ops dashboard
+     */
+    @GetMapping("/jobs")
+    @ResponseStatus(HttpStatus.OK)
+    public List<JobMetricsDto> listJobs() {
+        List<JobMetricsDto> allMetrics = dispatcher.listJobMetrics();
+        for (JobMetricsDto metrics : allMetrics) {
+            metrics.add(WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(GeneticAlgorithmServiceRestController.class).getMetricsOfJob(metrics.getJobId())).withSelfRel());
+        }
+        return allMetrics;
+    }
+
+    /**
+     * Throttle or boost a running (or queued) job, by changing its share of the compute threads
+     *
+     * @param computeWeightPercentage 100 is a normal share, 50 half that, 200 double
+     */
+    @PutMapping("/job/{jobId}/compute-weight")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void setComputeWeightOfJob(@PathVariable Long jobId, @RequestParam(required = true) Integer computeWeightPercentage) {
+        dispatcher.setComputeWeightForJob(jobId, computeWeightPercentage);
+    }
+
+    /**
+     * Fitness of a schedule as it is now, e.g. after editing it by hand through /api/scheduledModules, without starting a job
+     * Same fitness function as the GA's, with its hard/soft breakdown and whether the schedule is valid
+     *
+     * @param scheduleId Primary key of an existing record in the Schedules Table
+     */
+    @GetMapping("/schedule/{scheduleId}/evaluation")
+    @ResponseStatus(HttpStatus.OK)
+    public ScheduleEvaluationDto evaluateSchedule(@PathVariable Long scheduleId) {
+        ScheduleEvaluationDto evaluation = scheduleEvaluator.evaluate(scheduleId);
+        evaluation.add(WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(GeneticAlgorithmServiceRestController.class).evaluateSchedule(scheduleId)).withSelfRel());
+        return evaluation;
+    }
+
     @DeleteMapping("/job/{jobId}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void stopJob(@PathVariable Long jobId) {
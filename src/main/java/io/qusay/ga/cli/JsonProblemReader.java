@@ -0,0 +1,124 @@
+package io.qusay.ga.cli;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.qusay.ga.geneticalgorithm.Gene;
+import io.qusay.ga.geneticalgorithm.GeneticAlgorithmJobData;
+import io.qusay.ga.geneticalgorithm.JobParameters;
+import io.qusay.ga.geneticalgorithm.ModuleGA;
+import io.qusay.ga.geneticalgorithm.TimeslotGA;
+import io.qusay.ga.geneticalgorithm.VenueGA;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a problem instance written by hand, or by a script, as JSON:
+ * <pre>
+ * {
+ *   "scheduleId": 1,
+ *   "parameters": { "numGenerations": 10000, "populationSize": 60, ... },
+ *   "modules":    [ { "id": 1, "name": "CS101", "numEnrolled": 120, "isLab": false, "lecturerId": 7, "courseIds": [3], "departmentIds": [2] } ],
+ *   "venues":     [ { "id": 1, "name": "Hall A", "isLab": false, "capacity": 150, "locationX": 0, "locationY": 0, "departmentsScores": { "2": 20 } } ],
+ *   "timeslots":  [ { "id": 1, "day": 0, "time": 9, "lecturerPreferences": { "7": 10 } } ],
+ *   "scheduledModules": [ { "moduleId": 1, "venueId": 1, "timeslotId": 1, "lockedVenue": false, "lockedTimeslot": false } ]
+ * }
+ * </pre>
+ * Parameters have the same names, units and defaults as the REST API's createJob: see {@link JobParameters}.
+ * A module's "lecturerId" may be left out, for a module nobody teaches yet. "scheduledModules" is optional: an existing schedule to improve on, which should place every module
+ *
+ * Kept apart from {@link Solver} so that Jackson is only loaded for JSON input: snapshots need nothing but the GA itself
+ */
+final class JsonProblemReader {
+    private JsonProblemReader() {
+    }
+
+    static GeneticAlgorithmJobData read(Path file) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode root = mapper.readTree(file.toFile());
+        GeneticAlgorithmJobData data = new GeneticAlgorithmJobData();
+        data.setScheduleId(root.path("scheduleId").asLong(0));
+        data.setJobId(root.path("jobId").asLong(0));
+
+        // Unknown parameters are ignored, as the REST API ignores unknown query parameters
+        JobParameters parameters = root.has("parameters") ?
+                mapper.readerFor(JobParameters.class).without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES).readValue(root.get("parameters")) :
+                new JobParameters();
+        parameters.applyTo(data);
+
+        Map<Long, ModuleGA> modulesById = new HashMap<>();
+        List<ModuleGA> modules = new ArrayList<>();
+        for (JsonNode node : root.path("modules")) {
+            ModuleGA module = new ModuleGA(node.path("id").asLong(), node.path("name").asText(""), node.path("numEnrolled").asInt(),
+                    node.path("isLab").asBoolean(false), node.path("lecturerId").asLong(ModuleGA.NO_LECTURER), readIds(node.path("courseIds")), readIds(node.path("departmentIds")));
+            modules.add(module);
+            modulesById.put(module.getId(), module);
+        }
+
+        Map<Long, VenueGA> venuesById = new HashMap<>();
+        List<VenueGA> venues = new ArrayList<>();
+        for (JsonNode node : root.path("venues")) {
+            VenueGA venue = new VenueGA(node.path("id").asLong(), node.path("name").asText(""), node.path("isLab").asBoolean(false), node.path("capacity").asInt(),
+                    node.path("locationX").asDouble(0), node.path("locationY").asDouble(0), readScores(node.path("departmentsScores")));
+            venues.add(venue);
+            venuesById.put(venue.getId(), venue);
+        }
+
+        Map<Long, TimeslotGA> timeslotsById = new HashMap<>();
+        List<TimeslotGA> timeslots = new ArrayList<>();
+        for (JsonNode node : root.path("timeslots")) {
+            TimeslotGA timeslot = new TimeslotGA(node.path("id").asLong(), node.path("day").asInt(), node.path("time").asInt(), readScores(node.path("lecturerPreferences")));
+            timeslots.add(timeslot);
+            timeslotsById.put(timeslot.getId(), timeslot);
+        }
+
+        data.setModules(modules);
+        data.setVenues(venues);
+        data.setTimeslots(timeslots);
+
+        if (root.has("scheduledModules")) {
+            List<Gene> scheduledModules = new ArrayList<>();
+            for (JsonNode node : root.path("scheduledModules")) {
+                Gene gene = new Gene(require(modulesById, node, "moduleId"), require(venuesById, node, "venueId"), require(timeslotsById, node, "timeslotId"), data);
+                gene.setLockedVenue(node.path("lockedVenue").asBoolean(false));
+                gene.setLockedTimeslot(node.path("lockedTimeslot").asBoolean(false));
+                scheduledModules.add(gene);
+            }
+            data.setScheduledModules(scheduledModules);
+            data.setModifyExistingJob(true);
+        }
+        return data;
+    }
+
+    private static HashSet<Long> readIds(JsonNode array) {
+        HashSet<Long> ids = new HashSet<>();
+        for (JsonNode id : array) {
+            ids.add(id.asLong());
+        }
+        return ids;
+    }
+
+    private static HashMap<Long, Integer> readScores(JsonNode object) {
+        HashMap<Long, Integer> scores = new HashMap<>();
+        for (Iterator<Map.Entry<String, JsonNode>> fields = object.fields(); fields.hasNext(); ) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            scores.put(Long.parseLong(field.getKey()), field.getValue().asInt());
+        }
+        return scores;
+    }
+
+    private static <T> T require(Map<Long, T> byId, JsonNode node, String field) throws IOException {
+        T found = byId.get(node.path(field).asLong());
+        if (found == null) {
+            throw new IOException("Scheduled module refers to unknown " + field + " " + node.path(field));
+        }
+        return found;
+    }
+}
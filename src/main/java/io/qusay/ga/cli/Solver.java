@@ -0,0 +1,175 @@
+package io.qusay.ga.cli;
+
+import io.qusay.ga.geneticalgorithm.Gene;
+import io.qusay.ga.geneticalgorithm.GeneticAlgorithmJob;
+import io.qusay.ga.geneticalgorithm.GeneticAlgorithmJobData;
+import io.qusay.ga.geneticalgorithm.JobListener;
+import io.qusay.ga.geneticalgorithm.JobState;
+import io.qusay.ga.geneticalgorithm.ProblemSnapshot;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Solve one problem instance from the command line: no Spring, no database, no web server
+ *
+ * Usage: java -jar genetic-project-core.jar PROBLEM [--generations N] [--population N] [--time-budget SECONDS] [--threads N] [--out FILE] [--quiet]
+ *   PROBLEM        A {@link ProblemSnapshot} file, or a .json file (see {@link JsonProblemReader})
+ *                  The core jar doesn't include Jackson, which .json files need. For those, put it on the classpath and name the main class:
+ *                  java -cp genetic-project-core.jar:jackson-databind.jar:jackson-core.jar:jackson-annotations.jar io.qusay.ga.cli.Solver PROBLEM.json ...
+ *   --generations  Override the number of generations in the file
+ *   --population   Override the population size in the file
+ *   --time-budget  Override the time budget in the file, in seconds. 0 for none
+ *   --threads      Threads for the GA's parallel work. Default: one per core
+ *   --out          Also save the solved instance as a snapshot, e.g. to compare runs or to start another run from
+ *   --quiet        Don't show the GA's progress output
+ *
+ * The solution is printed to stdout as tab separated lines of: module, venue, day, time. Summary lines start with '#'.
+ * Everything the GA logs while running goes to stderr instead, so stdout can be piped into other tools.
+ * Exits with 0 if a valid solution (no hard constraints broken) was found, 2 if not, 1 on bad input, and 3 if the GA itself failed
+ */
+public final class Solver {
+    private static final String USAGE = "Usage: java -jar genetic-project-core.jar PROBLEM [--generations N] [--population N] [--time-budget SECONDS] [--threads N] [--out FILE] [--quiet]\n" +
+            "PROBLEM is a snapshot file, or a .json file. For .json, Jackson must be on the classpath:\n" +
+            "  java -cp genetic-project-core.jar:jackson-databind.jar:jackson-core.jar:jackson-annotations.jar io.qusay.ga.cli.Solver PROBLEM.json [options]";
+
+    private Solver() {
+    }
+
+    public static void main(String[] args) {
+        try {
+            System.exit(run(args));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("Could not read or write problem: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static int run(String[] args) throws IOException {
+        Path problemFile = null;
+        Path outFile = null;
+        Integer generations = null;
+        Integer population = null;
+        Integer timeBudgetSeconds = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean quiet = false;
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--generations":
+                    generations = intArgument(args, ++i);
+                    break;
+                case "--population":
+                    population = intArgument(args, ++i);
+                    break;
+                case "--time-budget":
+                    timeBudgetSeconds = intArgument(args, ++i);
+                    break;
+                case "--threads":
+                    threads = intArgument(args, ++i);
+                    break;
+                case "--out":
+                    outFile = Paths.get(argument(args, ++i));
+                    break;
+                case "--quiet":
+                    quiet = true;
+                    break;
+                default:
+                    if (args[i].startsWith("--") || problemFile != null) {
+                        throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+                    }
+                    problemFile = Paths.get(args[i]);
+            }
+        }
+        if (problemFile == null) {
+            throw new IllegalArgumentException("No problem file given");
+        }
+
+        final boolean isJson = problemFile.toString().endsWith(".json");
+        if (isJson && !isJacksonAvailable()) {
+            // Checked up front: otherwise loading JsonProblemReader dies with a NoClassDefFoundError, which says nothing about how to fix it
+            throw new IllegalArgumentException("Reading " + problemFile + " needs Jackson (jackson-databind, jackson-core and jackson-annotations), which isn't on the classpath." +
+                    " java -jar only uses the core jar itself");
+        }
+        GeneticAlgorithmJobData data = isJson ? JsonProblemReader.read(problemFile) : ProblemSnapshot.read(problemFile);
+        if (generations != null) {
+            data.setNumGenerations(generations);
+        }
+        if (population != null) {
+            data.setPopulationSize(population);
+        }
+        if (timeBudgetSeconds != null) {
+            data.setTimeBudgetMillis(timeBudgetSeconds * 1000L);
+        }
+
+        // The GA logs to System.out: keep stdout for the result
+        final PrintStream stdout = System.out;
+        System.setOut(quiet ? new PrintStream(OutputStream.nullOutputStream()) : System.err);
+        ExecutorService threadPool = Executors.newFixedThreadPool(threads, Solver::daemonThread);
+        ExecutorService subJobPool = Executors.newCachedThreadPool(Solver::daemonThread);
+        GeneticAlgorithmJob job = new GeneticAlgorithmJob(data, threadPool, subJobPool, JobListener.NONE);
+        try {
+            job.run(); // On this thread: there is nothing else to do until it's finished
+        } finally {
+            threadPool.shutdownNow();
+            subJobPool.shutdownNow();
+            System.setOut(stdout);
+        }
+        if (job.getState() == JobState.FAILED) {
+            System.err.println("The GA failed, see the error above. No solution");
+            return 3;
+        }
+
+        stdout.println("# modules=" + data.getModules().size() + " venues=" + data.getVenues().size() + " timeslots=" + data.getTimeslots().size());
+        stdout.println("# generations=" + (job.getCurrentGeneration() - 1) + " seconds=" + job.getRunningTimeNanos() / 1E9 + " terminationReason=" + data.getTerminationReason());
+        stdout.println("# fitness=" + data.getFitness() + " validSolution=" + data.isHasValidSolution());
+        for (Gene gene : data.getScheduledModules()) {
+            stdout.println(gene.getModule().getName() + "\t" + gene.getVenue().getName() + "\t" + gene.getTimeslot().getDay() + "\t" + gene.getTimeslot().getTime());
+        }
+
+        if (outFile != null) {
+            data.setModifyExistingJob(true);
+            ProblemSnapshot.write(data, outFile);
+        }
+        return data.isHasValidSolution() ? 0 : 2;
+    }
+
+    private static String argument(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[i - 1]);
+        }
+        return args[i];
+    }
+
+    private static int intArgument(String[] args, int i) {
+        try {
+            return Integer.parseInt(argument(args, i));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number for " + args[i - 1] + ": " + args[i]);
+        }
+    }
+
+    private static boolean isJacksonAvailable() {
+        try {
+            Class.forName("com.fasterxml.jackson.databind.ObjectMapper", false, Solver.class.getClassLoader());
+            Class.forName("com.fasterxml.jackson.annotation.JsonInclude", false, Solver.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static Thread daemonThread(Runnable runnable) {
+        Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,65 @@
+package io.qusay.ga.geneticalgorithm;
+
+/**
+ * Crossover/mutation rates that follow the search, rather than staying fixed for the whole job
+ *
+ * Early on (diverse population, still improving) crossover does most of the work: it mixes good pieces of different chromosomes.
+ * Once the population is uniform or the best fitness has stopped moving, crossover mostly recombines clones, so mutation is turned up instead.
+ * The number of genes changed per mutation shrinks as the job goes on (small, targeted changes near the end), unless the search is stuck.
+ */
+public class AdaptiveOperatorRates {
+    // Bounds, all from the job parameters
+    private final float crossoverMin;
+    private final float crossoverMax;
+    private final float mutateMin;
+    private final float mutateMax;
+    private final int mutatedGenesMax;
+    // After this many generations without improvement, the search counts as fully stalled
+    private final int stallWindow;
+
+    // Current rates. Volatile so that progress reports can read them from other threads
+    private volatile float crossoverProbability;
+    private volatile float mutateProbability;
+    private volatile int mutatedGenes;
+
+    public AdaptiveOperatorRates(float crossoverMin, float crossoverMax, float mutateMin, float mutateMax, int mutatedGenesMax, int stallWindow) {
+        this.crossoverMin = crossoverMin;
+        this.crossoverMax = Math.max(crossoverMax, crossoverMin);
+        this.mutateMin = mutateMin;
+        this.mutateMax = Math.max(mutateMax, mutateMin);
+        this.mutatedGenesMax = Math.max(mutatedGenesMax, 1);
+        this.stallWindow = Math.max(stallWindow, 1);
+
+        // Start where a fresh, random population wants to be: lots of crossover, little but broad mutation
+        crossoverProbability = this.crossoverMax;
+        mutateProbability = this.mutateMin;
+        mutatedGenes = this.mutatedGenesMax;
+    }
+
+    /**
+     * Pick the rates for the next generation
+     *
+     * @param diversity                     [0.0f, 1.0f] See {@link Population#getDiversity()}
+     * @param generationsSinceImprovement   How long ago the best fitness last went up
+     * @param progress                      [0.0f, 1.0f] How far through the job we are
+     */
+    public void update(float diversity, int generationsSinceImprovement, float progress) {
+        final float stall = Math.min((float) generationsSinceImprovement / stallWindow, 1.0f);
+
+        crossoverProbability = crossoverMin + (crossoverMax - crossoverMin) * diversity * (1.0f - stall);
+        mutateProbability = mutateMin + (mutateMax - mutateMin) * Math.max(1.0f - diversity, stall);
+        mutatedGenes = 1 + Math.round((mutatedGenesMax - 1) * Math.max(stall, 1.0f - progress));
+    }
+
+    public float getCrossoverProbability() {
+        return crossoverProbability;
+    }
+
+    public float getMutateProbability() {
+        return mutateProbability;
+    }
+
+    public int getMutatedGenes() {
+        return mutatedGenes;
+    }
+}
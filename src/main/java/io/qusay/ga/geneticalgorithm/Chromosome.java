@@ -1,8 +1,11 @@
 package io.qusay.ga.geneticalgorithm;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 public class Chromosome implements Comparable<Chromosome>, Serializable {
@@ -17,6 +20,15 @@ public class Chromosome implements Comparable<Chromosome>, Serializable {
     // TODO: Do something with this. Maybe stop job early?
     private boolean isValidSolution;
 
+    // How many hard constraints are violated. Zero exactly when isValidSolution
+    private int hardConstraintViolations;
+
+    // Zobrist-style hash: XOR of {@link Gene#zobristKey} over every gene. Kept up to date incrementally as genes change,
+    // so that two chromosomes can be recognised as identical without comparing (or evaluating) them
+    private long hash;
+    // A second, independent hash. Only used to check that a {@link FitnessCache} hit really is for this chromosome
+    private long verificationHash;
+
     /**
      * Randomising constructor
      */
@@ -27,8 +39,9 @@ public class Chromosome implements Comparable<Chromosome>, Serializable {
         for (int i = 0; i < data.getChromosomeSize(); ++i) {
             genes[i] = new Gene(data.getIndexedModule(i), data);
         }
+        calculateHashes();
 
-        cachedFitness = calculateFitness(); // Also sets isValidSolution
+        evaluateFitness(); // Also sets isValidSolution
     }
 
     /**
@@ -37,13 +50,16 @@ public class Chromosome implements Comparable<Chromosome>, Serializable {
     public Chromosome(Chromosome toClone) {
         data = toClone.data;
 
-        genes = new Gene[data.getChromosomeSize()];
-        for (int i = 0; i < data.getChromosomeSize(); ++i) {
+        genes = new Gene[toClone.genes.length]; // Not always the chromosome size: a schedule from the database may be missing modules
+        for (int i = 0; i < genes.length; ++i) {
             genes[i] = toClone.genes[i].clone();
         }
 
         cachedFitness = toClone.getCachedFitness();
         isValidSolution = toClone.isValidSolution();
+        hardConstraintViolations = toClone.hardConstraintViolations;
+        hash = toClone.hash;
+        verificationHash = toClone.verificationHash;
     }
 
     /**
@@ -54,17 +70,40 @@ public class Chromosome implements Comparable<Chromosome>, Serializable {
 
         // Make a new array of the appropriate type using existing data
         genes = existingSchedule.toArray(new Gene[0]); // The JVM optimises array creation, so passing an empty array is preferential, see: https://stackoverflow.com/a/29444594/5271224
+        calculateHashes();
+
+        evaluateFitness(); // Also sets isValidSolution
+    }
 
-        cachedFitness = calculateFitness(); // Also sets isValidSolution
+    /**
+     * Crossover and mutation do NOT recalculate fitness, so that offspring that turn out to be duplicates (same {@link #getHash()})
+     * can be thrown away without the cost of evaluating them. Call this before using the fitness of a changed chromosome
+     */
+    public void evaluateFitness() {
+        data.getFitnessEvaluations().increment();
+        FitnessCache cache = data.getFitnessCache();
+        if (cache != null) {
+            FitnessCache.Entry cached = cache.get(hash, verificationHash);
+            if (cached != null) {
+                cachedFitness = cached.fitness;
+                isValidSolution = cached.isValidSolution;
+                hardConstraintViolations = cached.hardConstraintViolations;
+                return;
+            }
+        }
+
+        cachedFitness = calculateFitness();
+
+        if (cache != null) {
+            cache.put(hash, new FitnessCache.Entry(verificationHash, cachedFitness, isValidSolution, hardConstraintViolations));
+        }
     }
 
     public void crossoverBinary(Chromosome toCrossWith) {
         final int crossoverPoint = random.nextInt(genes.length);
         for (int i = 0; i <= crossoverPoint; ++i) {
-            genes[i] = toCrossWith.genes[i].clone();
+            replaceGene(i, toCrossWith.genes[i].clone());
         }
-
-        cachedFitness = calculateFitness();
     }
 
     /**
@@ -82,10 +121,8 @@ public class Chromosome implements Comparable<Chromosome>, Serializable {
         final int crossoverStart = random.nextInt(genes.length);
         final int crossoverEnd = random.nextInt(genes.length - crossoverStart);
         for (int i = crossoverStart; i < crossoverEnd; ++i) {
-            genes[i] = toCrossWith.genes[i].clone();
+            replaceGene(i, toCrossWith.genes[i].clone());
         }
-
-        cachedFitness = calculateFitness();
     }
 
     /**
@@ -110,15 +147,16 @@ public class Chromosome implements Comparable<Chromosome>, Serializable {
         Arrays.sort(startStopGeneNumbers);
 
         for (int i = startStopGeneNumbers[0]; i < startStopGeneNumbers[1]; ++i) {
-            genes[i] = toCrossWith.genes[i].clone();
+            replaceGene(i, toCrossWith.genes[i].clone());
         }
         for (int i = startStopGeneNumbers[2]; i < startStopGeneNumbers[3]; ++i) {
-            genes[i] = toCrossWith.genes[i].clone();
+            replaceGene(i, toCrossWith.genes[i].clone());
         }
-
-        cachedFitness = calculateFitness();
     }
 
+    /**
+     * @return A mutated clone of this chromosome. Its fitness is not calculated yet, see {@link #evaluateFitness()}
+     */
     public Chromosome mutate(int mutateGenesMax) {
         // Clones itself
         Chromosome outOfTheGreenGlowingGoop = new Chromosome(this);
@@ -143,29 +181,66 @@ public class Chromosome implements Comparable<Chromosome>, Serializable {
             // Heuristic mutate (sometimes): if this gene is already in a suitable venueGA, don't mutate the venueGA, just the time
             if (genes[mutateGene].isInValidVenue() && random.nextFloat() < 0.5) {
                 // Mutate only time
-                genes[mutateGene].setTimeslot(data.getRandomTimeslot());
+                toggleGeneInHashes(mutateGene);
+                data.retimeRandomly(genes[mutateGene]);
+                toggleGeneInHashes(mutateGene);
             } else {
                 // Mutate both timeslotGA and venueGA
-                genes[mutateGene] = new Gene(genes[mutateGene].getModule(), data);
+                replaceGene(mutateGene, new Gene(genes[mutateGene].getModule(), data));
             }
         }
+    }
 
-        cachedFitness = calculateFitness();
+    /**
+     * Swap in a new gene at an index, keeping the hash up to date
+     */
+    private void replaceGene(int index, Gene newGene) {
+        toggleGeneInHashes(index);
+        genes[index] = newGene;
+        toggleGeneInHashes(index);
+    }
+
+    /**
+     * XOR a gene into (or, if it's already in, out of) both hashes
+     */
+    private void toggleGeneInHashes(int index) {
+        hash ^= genes[index].zobristKey(index);
+        verificationHash ^= genes[index].verificationKey(index);
+    }
+
+    private void calculateHashes() {
+        hash = 0;
+        verificationHash = 0;
+        for (int i = 0; i < genes.length; ++i) {
+            toggleGeneInHashes(i);
+        }
     }
 
     private int calculateFitness() {
+        FitnessBreakdown breakdown = calculateFitness(data, genes);
+        isValidSolution = breakdown.isValidSolution();
+        hardConstraintViolations = breakdown.getHardConstraintViolations();
+        return breakdown.getFitness();
+    }
+
+    // Fitness lost for each violated hard constraint
+    static final int ONE_HARD_CONSTRAINT = 1000;
+
+    /**
+     * The fitness of a set of genes, whether or not they're part of a chromosome (e.g. a schedule edited by hand). Never from the {@link FitnessCache}
+     *
+     * @param data  Only its chromosome size is used, to weight the soft constraints
+     * @param genes Not changed
+     */
+    public static FitnessBreakdown calculateFitness(GeneticAlgorithmJobData data, Gene[] genes) {
         // TODO: act differently based on masterData.isModifyExistingJob
 
         // Weight of any "required" fitness is 100, such as two modules overlapping
         // Weight of any "preferable" fitness is 1, such as keeping a 2-hour lecture as one block vs. two blocks or lecture not being at 8am
         // TODO: Tweak these fitness weights
 
-        // Calculate minimal fitness of any chromosome which has all HARD constraints met
-        final int ONE_HARD_CONSTRAINT = 1000;
-
-
         final int QTY_SOFT_CONSTRAINTS = 2;
-        final int EACH_SOFT_CONSTRAINT = ONE_HARD_CONSTRAINT / (QTY_SOFT_CONSTRAINTS * data.getChromosomeSize());
+        final int EACH_SOFT_CONSTRAINT = ONE_HARD_CONSTRAINT / (QTY_SOFT_CONSTRAINTS * Math.max(data.getChromosomeSize(), 1)); // No modules at all: only when evaluating an empty schedule
         // TODO: soft constraints should be able to add up to just below that
         /*
           If there are 5 modules, and each violated hard constraint takes away 100 = ONE_HARD_CONSTRAINT fitness,
@@ -218,43 +293,49 @@ public class Chromosome implements Comparable<Chromosome>, Serializable {
         // Start with the max possible hard-fitness value; subtract as violations are found
         int fitnessFromOverlappingClasses = genes.length * ONE_HARD_CONSTRAINT;
         int fitnessFromInvalidVenues = genes.length * ONE_HARD_CONSTRAINT;
-        isValidSolution = true;
+        int numConflicts = 0;
+        int numInvalidVenues = 0;
 
         // For soft constraints, start at zero and add as good values are found
         int fitnessFromBuildingPreference = 0;
         int fitnessFromTimeslotPreference = 0;
 
-        // TODO: O(n^2) iterative search. Needs improvement. Ideas: Hash array, make sure no collisions. "Sort" array and then compare linearly.
-        // TODO: ...but, may not be able to make those improvements! Because fitness is now comparing across several axes
-        for (int i = 0; i < genes.length; ++i) {
+        // Genes can only conflict with others in the same timeslot, so only those are compared with each other: O(n^2) for each timeslot, rather than for the whole chromosome
+        // By identity, just like {@link Gene#conflictsWithTimeOrPlaceOrLecturerOf}
+        Map<TimeslotGA, List<Gene>> genesByTimeslot = new IdentityHashMap<>();
+        for (Gene gene : genes) {
             // ******************** Fitness calculations that only calculated based on ONE gene ********************
 
             // Combines hard constraints related to an invalid venueGA:
             // 1. Cannot schedule a moduleGA in a venueGA smaller than the total number of enrolled students (in all the courses that offer this moduleGA)
             // 2. Classroom type must be correct: classroom, computer lab, FUTURE: chemistry lab, physics lab, conference room, etc. Room with projector, with chalkboard, etc.
-            if (!genes[i].isInValidVenue()) {
+            if (!gene.isInValidVenue()) {
                 fitnessFromInvalidVenues -= ONE_HARD_CONSTRAINT;
-                isValidSolution = false;
+                ++numInvalidVenues;
             }
 
             // TODO: Soft constraint: Goldilocks effect: preference against having a small class in a very big venueGA
 
-            fitnessFromBuildingPreference += EACH_SOFT_CONSTRAINT * genes[i].getDepartmentsBuildingPreferenceAverage() / Gene.MAX_BUILDING_PREF_SCORE; // Integer division rounds down, which is desired
+            fitnessFromBuildingPreference += EACH_SOFT_CONSTRAINT * gene.getDepartmentsBuildingPreferenceAverage() / Gene.MAX_BUILDING_PREF_SCORE; // Integer division rounds down, which is desired
 
-            fitnessFromTimeslotPreference += 0.25f * EACH_SOFT_CONSTRAINT * genes[i].getLecturerTimeslotPreference() / Gene.MAX_TIMESLOT_PREF_SCORE; // Integer division rounds down, which is desired
+            fitnessFromTimeslotPreference += 0.25f * EACH_SOFT_CONSTRAINT * gene.getLecturerTimeslotPreference() / Gene.MAX_TIMESLOT_PREF_SCORE; // Integer division rounds down, which is desired
 
             // *****************************************************************************************************
 
-            for (int j = i + 1; j < genes.length; ++j) {
-                if (i != j) {
+            genesByTimeslot.computeIfAbsent(gene.timeslotGA, timeslot -> new ArrayList<>()).add(gene);
+        }
+
+        for (List<Gene> sameTimeslot : genesByTimeslot.values()) {
+            for (int i = 0; i < sameTimeslot.size(); ++i) {
+                for (int j = i + 1; j < sameTimeslot.size(); ++j) {
                     // ******************** Fitness calculations that require comparing EVERY OTHER gene ********************
 
                     // Combines hard constraints related to conflicting timeslots:
                     // 1. Cannot schedule any moduleGA in the same time and place (timeslotGA + venueGA)
                     // 2. Cannot schedule modules within one course for the same time (timeslotGA + course)
-                    if (genes[i].conflictsWithTimeOrPlaceOrLecturerOf(genes[j])) {
+                    if (sameTimeslot.get(i).conflictsWithTimeOrPlaceOrLecturerOf(sameTimeslot.get(j))) {
                         fitnessFromOverlappingClasses -= ONE_HARD_CONSTRAINT;
-                        isValidSolution = false;
+                        ++numConflicts;
                     }
 
                     // ******************************************************************************************************
@@ -262,10 +343,8 @@ public class Chromosome implements Comparable<Chromosome>, Serializable {
             }
         }
 
-        return fitnessFromOverlappingClasses
-                + fitnessFromInvalidVenues
-                + fitnessFromBuildingPreference
-                + fitnessFromTimeslotPreference;
+        return new FitnessBreakdown(fitnessFromOverlappingClasses, fitnessFromInvalidVenues, numConflicts, numInvalidVenues,
+                fitnessFromBuildingPreference, fitnessFromTimeslotPreference);
     }
 
     public String toString() {
@@ -290,6 +369,21 @@ public class Chromosome implements Comparable<Chromosome>, Serializable {
         return isValidSolution;
     }
 
+    public int getHardConstraintViolations() {
+        return hardConstraintViolations;
+    }
+
+    /**
+     * @return 64-bit hash of every gene's placement. Equal chromosomes have equal hashes; unequal ones almost never do
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    public long getVerificationHash() {
+        return verificationHash;
+    }
+
     public Gene[] getGenes() {
         return genes;
     }
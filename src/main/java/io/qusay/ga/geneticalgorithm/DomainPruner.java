@@ -0,0 +1,181 @@
+package io.qusay.ga.geneticalgorithm;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Pre-solver: before evolution starts, remove every (venue, timeslot) pair a module could never be validly placed in
+ *
+ * Removed from a module's domain:
+ * 1. Venues that fail {@link Gene#isValidVenueFor} (wrong type of room, too small)
+ * 2. Timeslots where a locked module of the same lecturer, or of one of the same courses, already sits
+ * 3. The exact (venue, timeslot) pair of any other module locked into both
+ * 4. Timeslots the module's lecturer has ranked 0
+ * Locked modules themselves are restricted to their locked venue and/or timeslot.
+ *
+ * The rules are applied in that order. If a rule would leave a module with nowhere to go, that rule alone is skipped for that module:
+ * the GA will then report the violation as usual
+ */
+public final class DomainPruner {
+    // A lecturer rank of 0 for a timeslot means "never", see {@link Gene#getLecturerTimeslotPreference()}
+    private static final int RANK_UNAVAILABLE = 0;
+
+    private DomainPruner() {
+    }
+
+    /**
+     * Compute a feasible domain for every module in the job, and store them in the job's data
+     */
+    public static void prune(GeneticAlgorithmJobData data) {
+        final List<ModuleGA> modules = data.getModules();
+        final List<VenueGA> venues = data.getVenues();
+        final List<TimeslotGA> timeslots = data.getTimeslots();
+        final int numTimeslots = timeslots.size();
+
+        Map<VenueGA, Integer> venueIndexes = new IdentityHashMap<>();
+        for (int v = 0; v < venues.size(); ++v) {
+            venueIndexes.put(venues.get(v), v);
+        }
+        Map<TimeslotGA, Integer> timeslotIndexes = new IdentityHashMap<>();
+        for (int t = 0; t < numTimeslots; ++t) {
+            timeslotIndexes.put(timeslots.get(t), t);
+        }
+
+        // Gather locks from the existing schedule (only a work-in-progress schedule can have any)
+        Map<ModuleGA, Gene> lockedGenes = new IdentityHashMap<>();
+        Map<Long, Set<Integer>> lockedTimeslotsByLecturer = new HashMap<>();
+        Map<Long, Set<Integer>> lockedTimeslotsByCourse = new HashMap<>();
+        Map<Integer, ModuleGA> lockedCellOwners = new HashMap<>();
+        if (data.isModifyExistingJob() && data.getScheduledModules() != null) {
+            for (Gene gene : data.getScheduledModules()) {
+                if (!gene.isLockedVenue() && !gene.isLockedTimeslot()) {
+                    continue;
+                }
+                lockedGenes.put(gene.getModule(), gene);
+
+                Integer timeslotIndex = timeslotIndexes.get(gene.getTimeslot());
+                if (gene.isLockedTimeslot() && timeslotIndex != null) {
+                    if (gene.getModule().hasLecturer()) {
+                        lockedTimeslotsByLecturer.computeIfAbsent(gene.getModule().getLecturerId(), key -> new HashSet<>()).add(timeslotIndex);
+                    }
+                    for (Long courseId : gene.getModule().getCourseIds()) {
+                        lockedTimeslotsByCourse.computeIfAbsent(courseId, key -> new HashSet<>()).add(timeslotIndex);
+                    }
+
+                    Integer venueIndex = venueIndexes.get(gene.getVenue());
+                    if (gene.isLockedVenue() && venueIndex != null) {
+                        lockedCellOwners.put(venueIndex * numTimeslots + timeslotIndex, gene.getModule());
+                    }
+                }
+            }
+        }
+
+        Map<ModuleGA, ModuleDomain> domains = new IdentityHashMap<>();
+        long totalCellsKept = 0;
+        int smallestDomain = Integer.MAX_VALUE;
+        int largestDomain = 0;
+        for (ModuleGA module : modules) {
+            Gene locked = lockedGenes.get(module);
+
+            // Venues
+            List<Integer> moduleVenues = new ArrayList<>();
+            Integer lockedVenue = locked != null && locked.isLockedVenue() ? venueIndexes.get(locked.getVenue()) : null;
+            if (lockedVenue != null) {
+                moduleVenues.add(lockedVenue);
+            } else {
+                for (int v = 0; v < venues.size(); ++v) {
+                    if (Gene.isValidVenueFor(module, venues.get(v))) {
+                        moduleVenues.add(v);
+                    }
+                }
+                if (moduleVenues.isEmpty()) {
+                    // Fits nowhere. Keep every venue; the GA will report the invalid venue
+                    for (int v = 0; v < venues.size(); ++v) {
+                        moduleVenues.add(v);
+                    }
+                }
+            }
+
+            // Timeslots
+            List<Integer> moduleTimeslots = new ArrayList<>();
+            Integer lockedTimeslot = locked != null && locked.isLockedTimeslot() ? timeslotIndexes.get(locked.getTimeslot()) : null;
+            if (lockedTimeslot != null) {
+                moduleTimeslots.add(lockedTimeslot);
+            } else {
+                // Rule 2, then rule 4 on what is left, so that only a rule which would empty the timeslots is skipped
+                Set<Integer> takenTimeslots = new HashSet<>(lockedTimeslotsByLecturer.getOrDefault(module.getLecturerId(), new HashSet<>()));
+                for (Long courseId : module.getCourseIds()) {
+                    takenTimeslots.addAll(lockedTimeslotsByCourse.getOrDefault(courseId, new HashSet<>()));
+                }
+                List<Integer> freeTimeslots = new ArrayList<>();
+                for (int t = 0; t < numTimeslots; ++t) {
+                    if (!takenTimeslots.contains(t)) {
+                        freeTimeslots.add(t);
+                    }
+                }
+                if (freeTimeslots.isEmpty()) {
+                    // Over-constrained by locks. Keep every timeslot; the GA will report the conflict
+                    for (int t = 0; t < numTimeslots; ++t) {
+                        freeTimeslots.add(t);
+                    }
+                }
+
+                for (int t : freeTimeslots) {
+                    Integer rank = timeslots.get(t).getLecturerPreferences().get(module.getLecturerId());
+                    if (rank == null || rank != RANK_UNAVAILABLE) {
+                        moduleTimeslots.add(t);
+                    }
+                }
+                if (moduleTimeslots.isEmpty()) {
+                    // The lecturer can't teach in any timeslot left. Keep them all; the GA will report it
+                    moduleTimeslots.addAll(freeTimeslots);
+                }
+            }
+
+            // Cross the two, dropping the exact pairs held by other fully-locked modules
+            BitSet cells = new BitSet(venues.size() * numTimeslots);
+            for (int v : moduleVenues) {
+                for (int t : moduleTimeslots) {
+                    final int cell = v * numTimeslots + t;
+                    ModuleGA owner = lockedCellOwners.get(cell);
+                    if (owner == null || owner == module) {
+                        cells.set(cell);
+                    }
+                }
+            }
+            if (cells.isEmpty()) {
+                for (int v : moduleVenues) {
+                    for (int t : moduleTimeslots) {
+                        cells.set(v * numTimeslots + t);
+                    }
+                }
+            }
+
+            ModuleDomain domain = new ModuleDomain(numTimeslots, cells,
+                    moduleVenues.stream().mapToInt(Integer::intValue).toArray(),
+                    moduleTimeslots.stream().mapToInt(Integer::intValue).toArray());
+            domains.put(module, domain);
+
+            final int size = domain.size();
+            totalCellsKept += size;
+            smallestDomain = Math.min(smallestDomain, size);
+            largestDomain = Math.max(largestDomain, size);
+        }
+
+        data.setModuleDomains(domains, venueIndexes);
+
+        final long totalCells = (long) modules.size() * venues.size() * numTimeslots;
+        System.out.println("Domain pruning job=" + data.getJobId() + ": kept " + totalCellsKept + " of " + totalCells + " (module, venue, timeslot) placements" +
+                " (" + (totalCells == 0 ? 0 : 100 - (100 * totalCellsKept / totalCells)) + "% removed)" +
+                ", per module min=" + (modules.isEmpty() ? 0 : smallestDomain) +
+                " avg=" + (modules.isEmpty() ? 0 : totalCellsKept / modules.size()) +
+                " max=" + largestDomain +
+                ", locked modules=" + lockedGenes.size()); // FUTURE: Logger info
+    }
+}
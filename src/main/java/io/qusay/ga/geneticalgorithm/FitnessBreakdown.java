@@ -0,0 +1,72 @@
+package io.qusay.ga.geneticalgorithm;
+
+/**
+ * A chromosome's fitness, and what it is made up of. See {@link Chromosome#calculateFitness(GeneticAlgorithmJobData, Gene[])}
+ * Hard fitness starts at its maximum and loses {@link Chromosome#ONE_HARD_CONSTRAINT} per violation. Soft fitness starts at zero and is earned
+ */
+public final class FitnessBreakdown {
+    // Hard constraints
+    private final int overlappingClassesFitness;
+    private final int invalidVenuesFitness;
+    // Pairs of genes in the same timeslot which share a venue, lecturer or course
+    private final int numConflicts;
+    // Genes in a venue of the wrong type, or too small
+    private final int numInvalidVenues;
+
+    // Soft constraints
+    private final int buildingPreferenceFitness;
+    private final int timeslotPreferenceFitness;
+
+    FitnessBreakdown(int overlappingClassesFitness, int invalidVenuesFitness, int numConflicts, int numInvalidVenues, int buildingPreferenceFitness, int timeslotPreferenceFitness) {
+        this.overlappingClassesFitness = overlappingClassesFitness;
+        this.invalidVenuesFitness = invalidVenuesFitness;
+        this.numConflicts = numConflicts;
+        this.numInvalidVenues = numInvalidVenues;
+        this.buildingPreferenceFitness = buildingPreferenceFitness;
+        this.timeslotPreferenceFitness = timeslotPreferenceFitness;
+    }
+
+    public int getFitness() {
+        return getHardFitness() + getSoftFitness();
+    }
+
+    public int getHardFitness() {
+        return overlappingClassesFitness + invalidVenuesFitness;
+    }
+
+    public int getSoftFitness() {
+        return buildingPreferenceFitness + timeslotPreferenceFitness;
+    }
+
+    public int getOverlappingClassesFitness() {
+        return overlappingClassesFitness;
+    }
+
+    public int getInvalidVenuesFitness() {
+        return invalidVenuesFitness;
+    }
+
+    public int getBuildingPreferenceFitness() {
+        return buildingPreferenceFitness;
+    }
+
+    public int getTimeslotPreferenceFitness() {
+        return timeslotPreferenceFitness;
+    }
+
+    public int getNumConflicts() {
+        return numConflicts;
+    }
+
+    public int getNumInvalidVenues() {
+        return numInvalidVenues;
+    }
+
+    public int getHardConstraintViolations() {
+        return numConflicts + numInvalidVenues;
+    }
+
+    public boolean isValidSolution() {
+        return getHardConstraintViolations() == 0;
+    }
+}
@@ -0,0 +1,130 @@
+package io.qusay.ga.geneticalgorithm;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, thread-safe memo of fitness results, keyed by {@link Chromosome#getHash()}
+ *
+ * Roulette selection keeps re-creating chromosomes that have been seen in earlier generations, and evaluating fitness compares every pair of genes in each timeslot
+ * Split into segments, each an LRU map behind its own lock, so that the crossover threads rarely wait on each other.
+ * Each entry also keeps a second, independent hash of the chromosome ({@link Chromosome#getVerificationHash()}):
+ * a hit is only trusted if both hashes match, which guards against 64-bit collisions without storing the genes themselves
+ */
+public class FitnessCache {
+    private static final int NUM_SEGMENTS = 16;
+
+    private final Segment[] segments;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+
+    /**
+     * @param capacity Maximum number of fitness results to keep, in total
+     */
+    public FitnessCache(int capacity) {
+        segments = new Segment[NUM_SEGMENTS];
+        final int segmentCapacity = Math.max(capacity / NUM_SEGMENTS, 1);
+        for (int i = 0; i < NUM_SEGMENTS; ++i) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    /**
+     * @return The cached result for this chromosome, or null if it hasn't been evaluated (recently)
+     */
+    public Entry get(long hash, long verificationHash) {
+        Segment segment = segmentFor(hash);
+        Entry entry;
+        synchronized (segment) {
+            entry = segment.get(hash);
+        }
+
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.verificationHash != verificationHash) {
+            // Two different chromosomes with the same hash. Treat as a miss; the newer one will replace it
+            collisions.increment();
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry;
+    }
+
+    public void put(long hash, Entry entry) {
+        Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            segment.put(hash, entry);
+        }
+    }
+
+    private Segment segmentFor(long hash) {
+        // Use the high bits: the low bits pick the slot inside the segment's hash map
+        return segments[(int) (hash >>> 60) & (NUM_SEGMENTS - 1)];
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getCollisions() {
+        return collisions.sum();
+    }
+
+    /**
+     * @return [0.0, 1.0] Proportion of lookups that were answered from the cache
+     */
+    public double getHitRate() {
+        final long lookups = getHits() + getMisses();
+        return lookups == 0 ? 0 : (double) getHits() / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return "FitnessCache{hits=" + getHits() + " misses=" + getMisses() + " collisions=" + getCollisions() +
+                " hitRate=" + String.format("%.3f", getHitRate()) + "}";
+    }
+
+    /**
+     * Everything {@link Chromosome} caches about its own fitness
+     */
+    public static class Entry {
+        final long verificationHash;
+        final int fitness;
+        final boolean isValidSolution;
+        final int hardConstraintViolations;
+
+        public Entry(long verificationHash, int fitness, boolean isValidSolution, int hardConstraintViolations) {
+            this.verificationHash = verificationHash;
+            this.fitness = fitness;
+            this.isValidSolution = isValidSolution;
+            this.hardConstraintViolations = hardConstraintViolations;
+        }
+    }
+
+    /**
+     * An access-ordered LinkedHashMap drops its least recently used entry once full, see: https://docs.oracle.com/javase/8/docs/api/java/util/LinkedHashMap.html#removeEldestEntry-java.util.Map.Entry-
+     */
+    private static class Segment extends LinkedHashMap<Long, Entry> {
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            return size() > capacity;
+        }
+    }
+}
@@ -12,6 +12,11 @@ public class Gene implements Cloneable, Serializable {
     VenueGA venueGA;
     TimeslotGA timeslotGA;
 
+    // A user has pinned this module to its venue and/or timeslot in an existing schedule
+    // Only read when the job starts, by {@link DomainPruner}, so these are not carried along when a gene is cloned
+    private boolean isLockedVenue;
+    private boolean isLockedTimeslot;
+
     @Override
     public String toString() {
         return "Gene{" + moduleGA + "," + venueGA + "," + timeslotGA + '}';
@@ -24,8 +29,7 @@ public class Gene implements Cloneable, Serializable {
         data = masterData;
 
         this.moduleGA = moduleGA;
-        this.venueGA = data.getRandomVenue();
-        this.timeslotGA = data.getRandomTimeslot();
+        data.placeRandomly(this); // Sets venueGA and timeslotGA
     }
 
     /**
@@ -43,6 +47,40 @@ public class Gene implements Cloneable, Serializable {
         return new Gene(this.moduleGA, this.venueGA, this.timeslotGA, this.data);
     }
 
+    /**
+     * Copy this gene into another job's data (e.g. moving between a job and its sub jobs), keeping any locks
+     */
+    public Gene copyFor(GeneticAlgorithmJobData otherData) {
+        Gene copy = new Gene(this.moduleGA, this.venueGA, this.timeslotGA, otherData);
+        copy.isLockedVenue = this.isLockedVenue;
+        copy.isLockedTimeslot = this.isLockedTimeslot;
+        return copy;
+    }
+
+    /**
+     * A pseudo-random 64-bit key for this gene's placement at a position in a chromosome, for {@link Chromosome#getHash()}
+     * Zobrist hashing, except the keys are derived by a mixing function rather than stored in a (venues x timeslots x modules) table
+     *
+     * @param index Position of this gene in its chromosome
+     */
+    public long zobristKey(int index) {
+        return mix64(index * 0x9E3779B97F4A7C15L + mix64(venueGA.id * 0xC2B2AE3D27D4EB4FL + timeslotGA.id));
+    }
+
+    /**
+     * Like {@link #zobristKey}, but mixed with different constants so the two keys are independent
+     */
+    public long verificationKey(int index) {
+        return mix64(index * 0xD6E8FEB86659FD93L + mix64(timeslotGA.id * 0x9FB21C651E98DF25L + venueGA.id));
+    }
+
+    // SplitMix64 finaliser, see: https://xorshift.di.unimi.it/splitmix64.c
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
     /**
      * Compare two genes. If they overlap in both venueGA and timeslotGA, there is a conflict! Return true
      * If they overlap in JUST timeslotGA but the two modules are offered BY THE SAME COURSE, return true
@@ -80,8 +118,17 @@ public class Gene implements Cloneable, Serializable {
      * @return true if the moduleGA can be successfully taught within this venueGA
      */
     public boolean isInValidVenue() {
-        if (this.moduleGA.isLab != this.venueGA.isLab) return false;
-        if (this.venueGA.capacity < this.moduleGA.numEnrolled) return false;
+        return isValidVenueFor(this.moduleGA, this.venueGA);
+    }
+
+    /**
+     * Same check as {@link #isInValidVenue()}, but usable before any gene exists (e.g. when analysing the problem before a job starts)
+     *
+     * @return true if the moduleGA can be successfully taught within the venueGA
+     */
+    public static boolean isValidVenueFor(ModuleGA moduleGA, VenueGA venueGA) {
+        if (moduleGA.isLab != venueGA.isLab) return false;
+        if (venueGA.capacity < moduleGA.numEnrolled) return false;
         return true;
     }
 
@@ -126,4 +173,20 @@ public class Gene implements Cloneable, Serializable {
     public void setTimeslot(TimeslotGA timeslotGA) {
         this.timeslotGA = timeslotGA;
     }
+
+    public boolean isLockedVenue() {
+        return isLockedVenue;
+    }
+
+    public void setLockedVenue(boolean lockedVenue) {
+        isLockedVenue = lockedVenue;
+    }
+
+    public boolean isLockedTimeslot() {
+        return isLockedTimeslot;
+    }
+
+    public void setLockedTimeslot(boolean lockedTimeslot) {
+        isLockedTimeslot = lockedTimeslot;
+    }
 }
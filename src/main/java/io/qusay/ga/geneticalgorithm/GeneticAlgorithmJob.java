@@ -1,45 +1,57 @@
 package io.qusay.ga.geneticalgorithm;
 
-import io.qusay.BeanUtil;
-import io.qusay.ga.service.Dispatcher;
-import io.qusay.ga.service.GaToDbSerializer;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
-
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import static io.qusay.WebSocketConfiguration.MESSAGE_PREFIX;
-
 
 public class GeneticAlgorithmJob implements Runnable {
     // To control the thread, change this atomic (i.e. thread-safe) boolean. The thread will stop itself after the next generation
     private final AtomicBoolean isRunning;
+    // Set once the job has been told to stop, even before its generation loop started
+    private volatile boolean isStopRequested;
 
     // A thread pool that can be used to execute any subtasks of the GA that can run in parallel
+    // Shared with other jobs, and fixed size: tasks given to it must never wait on other tasks in it
     private final ExecutorService threadPool;
+    // Runs the driver threads of sub jobs, which do wait on tasks in threadPool
+    private final ExecutorService subJobPool;
 
     // How often to send reports back to the database, in percentage of job done
     private final float queryRate;
 
-    // Spring @Service bean classes
-    // Can't use @Autowired here because that would require letting Spring manage the lifecycle of this class,
-    // but the lifecycle of this class is managed as a Thread
-    private final GaToDbSerializer gaToDbSerializer;
-    private final Dispatcher dispatcher;
-    private SimpMessagingTemplate websocket;
+    // Told about progress and the result, e.g. to save it to the database. The GA itself doesn't know or care who is listening
+    private final JobListener listener;
+
+    // A sub job solves one independent component of a bigger job (see {@link ProblemDecomposer})
+    // It never talks to the database or the frontend: its parent job merges the results and does that
+    private final boolean isSubJob;
+    private final List<GeneticAlgorithmJob> subJobs = new CopyOnWriteArrayList<>(); // Read by request threads querying progress
 
     // Data on this job:
     // Master data is all the metadata the GA needs to run
@@ -58,24 +70,79 @@ public class GeneticAlgorithmJob implements Runnable {
     private final float mutateProbability;
     // How many genes can be mutated within a chromosome if it is mutated: between 1..mutatedGenesMax
     private final int mutatedGenesMax;
+    // If set, crossover/mutation rates are adjusted every generation instead of using the three fixed values above
+    private final AdaptiveOperatorRates adaptiveRates;
     // How many of the very best in a population are guaranteed to survive
     private final int eliteSurvivors;
+    // Stop early if the best fitness hasn't improved for this many generations. 0 to never stop for this reason
+    private final int stallGenerations;
+    // Stop early if population diversity (see {@link Population#getDiversity()}) drops below this. 0 to never stop for this reason
+    private final float minDiversity;
+    // Wall-clock time budget. 0 for none
+    private final long timeBudgetNanos;
+    // When the time budget runs out, from {@link System#nanoTime()}. Sub jobs share their parent's deadline
+    private long deadlineNanos;
+
+    // After this many generations of a time-budgeted job, estimate whether a valid solution will be found in time
+    private static final int ESTIMATE_AFTER_GENERATIONS = 20;
+    // The estimate, see {@link #estimateOutcomeWithinBudget}. Both are -1/false until the estimate is made
+    private volatile int estimatedGenerationsInBudget = -1;
+    private volatile boolean isValidSolutionLikelyInBudget;
+
+    // Lifecycle, and when the job started and stopped running, from {@link System#nanoTime()} (0 if not yet). Read by the job registry
+    private volatile JobState state = JobState.QUEUED;
+    private volatile long runStartNanos;
+    private volatile long runEndNanos;
+    private volatile long startTimeMillis;
+
+    // Checkpoints (see {@link PopulationCheckpoint}) are written by one background thread, shared by all jobs, so the generation loop only pays for copying the population
+    private static final ExecutorService checkpointWriter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ga-checkpoint-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // File name of this job's checkpoint: "job-<id>", and "job-<id>-part-<n>" for a sub job
+    private String checkpointName;
+    private final long checkpointIntervalNanos;
+    private long lastCheckpointNanos;
+    // The checkpoint still being written, if any. A new one is skipped rather than queued behind it
+    private Future<?> pendingCheckpoint;
+    // The generation the population was restored at, 0 if this job started from scratch. Volatile so that metrics can read it from other threads
+    private volatile int resumeGeneration;
+
+    // Snapshots of the best so far, see {@link #snapshotIfDue}. A job split into sub jobs takes them from its sub jobs' published bests instead, see {@link #snapshotSubJobsIfDue}
+    private final long snapshotIntervalNanos;
+    private long lastSnapshotNanos;
+    private long snapshotFitness = Long.MIN_VALUE;
+    // A sub job's best so far, copied from its population each time it would have taken a snapshot, for its parent to merge. NULL until then
+    private volatile Gene[] publishedBest;
+    // The sub jobs' published bests that went into the parent's last snapshot, so the same ones aren't merged again
+    private List<Gene[]> snapshotSubJobBests = Collections.emptyList();
 
     // Generation counter; Atomic so that it can be read by outside services querying this GA job's progress
     private AtomicInteger currentGeneration;
+    // How far along this job is, [0.0f, 1.0f]. Read by a parent job to report the progress of all its sub jobs
+    private volatile float progress;
 
-    // Data structures being used by the job in action
-    private Population population;
+    // Data structures being used by the job in action. Volatile so that progress reports from other threads see the population once it is made
+    private volatile Population population;
     static final boolean DATA_ANALYTICS_FILE_WRITE_OUTPUT = false; // DEBUG
     static final boolean DEBUG_STATS = true; // DEBUG
 
-    public GeneticAlgorithmJob(GeneticAlgorithmJobData geneticAlgorithmJobData, ExecutorService threadPool) {
-        // Services
-        // Directly get Spring @Services via a context-aware utility class
-        gaToDbSerializer = BeanUtil.getBean(GaToDbSerializer.class);
-        dispatcher = BeanUtil.getBean(Dispatcher.class);
-        websocket = BeanUtil.getBean(SimpMessagingTemplate.class);
+    /**
+     * @param threadPool For the GA's parallel subtasks. Must not be the pool this job runs on
+     * @param subJobPool For the driver threads of sub jobs, if the job is decomposed. Must not be bounded
+     * @param listener   Told about progress and the result
+     */
+    public GeneticAlgorithmJob(GeneticAlgorithmJobData geneticAlgorithmJobData, ExecutorService threadPool, ExecutorService subJobPool, JobListener listener) {
+        this(geneticAlgorithmJobData, threadPool, subJobPool, listener, false);
+    }
+
+    private GeneticAlgorithmJob(GeneticAlgorithmJobData geneticAlgorithmJobData, ExecutorService threadPool, ExecutorService subJobPool, JobListener listener, boolean isSubJob) {
+        this.isSubJob = isSubJob;
+        this.listener = listener;
         this.threadPool = threadPool;
+        this.subJobPool = subJobPool;
 
         // Genetic algorithm data
         masterData = geneticAlgorithmJobData;
@@ -84,7 +151,17 @@ public class GeneticAlgorithmJob implements Runnable {
         crossoverProbability = masterData.getCrossoverProbability();
         mutateProbability = masterData.getMutateProbability();
         mutatedGenesMax = masterData.getMutatedGenesMax();
+        adaptiveRates = masterData.isAdaptiveRates() ?
+                new AdaptiveOperatorRates(masterData.getAdaptiveCrossoverMin(), masterData.getAdaptiveCrossoverMax(),
+                        masterData.getAdaptiveMutateMin(), masterData.getAdaptiveMutateMax(), mutatedGenesMax, masterData.getAdaptiveStallWindow()) :
+                null;
         eliteSurvivors = masterData.getNumEliteSurvivors();
+        stallGenerations = masterData.getStallGenerations();
+        minDiversity = masterData.getMinDiversity();
+        timeBudgetNanos = masterData.getTimeBudgetMillis() * 1_000_000L;
+        checkpointIntervalNanos = masterData.getCheckpointDirectory() == null ? 0 : masterData.getCheckpointIntervalMillis() * 1_000_000L;
+        checkpointName = "job-" + masterData.getJobId();
+        snapshotIntervalNanos = masterData.getSnapshotIntervalMillis() * 1_000_000L;
 
         // Thread control
         currentGeneration = new AtomicInteger(0);
@@ -94,22 +171,270 @@ public class GeneticAlgorithmJob implements Runnable {
 
     @Override
     public void run() {
+        final long startTime = System.nanoTime();
+        runStartNanos = startTime;
+        startTimeMillis = System.currentTimeMillis();
+        state = JobState.RUNNING;
+        if (!isSubJob) {
+            deadlineNanos = startTime + timeBudgetNanos;
+        }
         System.out.println("************* GENETIC ALGORITHM INITIALISATION jobId=" + masterData.getJobId() + ", schedId=" + masterData.getScheduleId() + " *************"); // DEBUG
-        createInitialPopulation();
-        System.out.println("************* GENETIC ALGORITHM POPULATION CREATED jobId=" + masterData.getJobId() + ", schedId=" + masterData.getScheduleId() + " *************"); // DEBUG
-        runAllGenerations();
-        saveBestIndividualToMasterData();
-        writeBackToDatabase();
-        finaliseJob();
+        try {
+            List<GeneticAlgorithmJobData> components = isSubJob ? Collections.singletonList(masterData) : ProblemDecomposer.decompose(masterData);
+            if (components.size() > 1) {
+                runSubJobs(components);
+            } else {
+                createInitialPopulation();
+                System.out.println("************* GENETIC ALGORITHM POPULATION CREATED jobId=" + masterData.getJobId() + ", schedId=" + masterData.getScheduleId() + " *************"); // DEBUG
+                runAllGenerations();
+                saveBestIndividualToMasterData();
+            }
+        } catch (RuntimeException e) {
+            runEndNanos = System.nanoTime();
+            state = JobState.FAILED;
+            if (isSubJob) {
+                throw e; // The parent job fails as a whole, see {@link #runSubJobs}
+            }
+            fail(e);
+            return;
+        }
+        runEndNanos = System.nanoTime();
+        if (!isSubJob) {
+            state = JobState.SAVING;
+            // Hand over the result and free this thread for the next job. The listener saves it, then calls {@link #finish}
+            listener.onSolved(this, new JobResult(this, masterData, masterData.getScheduledModules().toArray(new Gene[0]),
+                    masterData.getFitness(), masterData.isHasValidSolution(), masterData.getTerminationReason()));
+        } else {
+            state = JobState.DONE;
+        }
         System.out.println("************* JOB DONE jobId=" + masterData.getJobId() + ", schedId=" + masterData.getScheduleId() + " *************"); // DEBUG
     }
 
+    /**
+     * Solve each independent component of this job as its own sub job, in parallel, then merge their best chromosomes together
+     *
+     * @param components Job data for each component, from {@link ProblemDecomposer}
+     */
+    private void runSubJobs(List<GeneticAlgorithmJobData> components) {
+        List<Future<?>> subJobWaiters = new ArrayList<>(components.size());
+        for (GeneticAlgorithmJobData component : components) {
+            GeneticAlgorithmJob subJob = new GeneticAlgorithmJob(component, threadPool, subJobPool, JobListener.NONE, true);
+            subJob.deadlineNanos = deadlineNanos;
+            subJob.checkpointName = checkpointName + "-part-" + subJobs.size(); // Decomposition is deterministic, so a resumed job's parts line up again
+            subJobs.add(subJob);
+            subJobWaiters.add(subJobPool.submit(subJob));
+        }
+
+        int queryGenerationModulus = Math.max((int) (numGenerationsMaximum * queryRate), 1);
+        long lastReportedGeneration = -queryGenerationModulus;
+        lastSnapshotNanos = System.nanoTime();
+        RuntimeException failure = null;
+        for (Future<?> waiter : subJobWaiters) {
+            while (failure == null) {
+                // While waiting, keep informing the frontend of the progress of the slowest sub job
+                if (getCurrentGeneration() - lastReportedGeneration >= queryGenerationModulus) {
+                    lastReportedGeneration = getCurrentGeneration();
+                    listener.onProgress(this, getProgress(), getEstimatedFitness());
+                }
+                snapshotSubJobsIfDue();
+                try {
+                    waiter.get(100, TimeUnit.MILLISECONDS);
+                    break;
+                } catch (TimeoutException ignored) {
+                    // Still running, report progress again
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failure = new IllegalStateException("Interrupted while waiting for the sub jobs of job=" + masterData.getJobId(), e);
+                } catch (ExecutionException e) {
+                    failure = new IllegalStateException("A sub job of job=" + masterData.getJobId() + " has failed", e.getCause());
+                } catch (CancellationException e) {
+                    failure = new IllegalStateException("A sub job of job=" + masterData.getJobId() + " was cancelled", e);
+                }
+            }
+            if (failure != null) {
+                break;
+            }
+        }
+
+        if (failure != null) {
+            // Never merge the rest: the failed component's modules would be left unplaced. Stop the others, and fail the whole job
+            setIsRunning(false);
+            for (Future<?> waiter : subJobWaiters) {
+                try {
+                    waiter.get(); // So that none of them is still writing a checkpoint once the job's checkpoints are deleted
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (ExecutionException | CancellationException ignored) {
+                    // Only the first failure is reported
+                }
+            }
+            throw failure;
+        }
+
+        // Merge the best genes of every component back into the original module order
+        List<Gene> mergedGenes = new ArrayList<>(masterData.getModules().size());
+        for (GeneticAlgorithmJob subJob : subJobs) {
+            if (subJob.masterData.getScheduledModules() != null) {
+                mergedGenes.addAll(subJob.masterData.getScheduledModules());
+            }
+        }
+        Chromosome merged = merge(mergedGenes);
+        masterData.setScheduledModules(Arrays.asList(merged.getGenes()));
+        masterData.setFitness(merged.getCachedFitness());
+        masterData.setHasValidSolution(merged.isValidSolution());
+        // Report why the sub job which ran the longest stopped, since that is what decided when this job stopped
+        GeneticAlgorithmJob longest = Collections.max(subJobs, Comparator.comparingInt(GeneticAlgorithmJob::getCurrentGeneration));
+        masterData.setTerminationReason(longest.masterData.getTerminationReason());
+        System.out.println("Merged " + subJobs.size() + " sub jobs, job=" + masterData.getJobId() + ", fitness=" + merged.getCachedFitness() + ", valid=" + merged.isValidSolution()); // FUTURE: Logger info
+    }
+
+    /**
+     * Put the genes of every sub job back into one chromosome of this job, in the original module order
+     * Fitness is recalculated over the whole job, since soft constraints are weighted by the total number of modules
+     * Like every other evaluation, on the job's compute share: this thread only coordinates
+     *
+     * @param subJobGenes The genes of all the sub jobs, in any order. Copied
+     * @throws IllegalStateException If a module isn't placed, or the evaluation fails
+     */
+    private Chromosome merge(List<Gene> subJobGenes) {
+        Map<ModuleGA, Gene> genesByModule = new HashMap<>();
+        for (Gene gene : subJobGenes) {
+            genesByModule.put(gene.getModule(), gene.copyFor(masterData));
+        }
+        List<Gene> mergedGenes = new ArrayList<>(genesByModule.size());
+        for (ModuleGA module : masterData.getModules()) {
+            Gene gene = genesByModule.get(module);
+            if (gene == null) {
+                throw new IllegalStateException("No sub job of job=" + masterData.getJobId() + " placed module " + module.getName());
+            }
+            mergedGenes.add(gene);
+        }
+
+        try {
+            return threadPool.submit(() -> new Chromosome(masterData, mergedGenes)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while merging the sub jobs of job=" + masterData.getJobId(), e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not merge the sub jobs of job=" + masterData.getJobId(), e.getCause());
+        }
+    }
+
     private void createInitialPopulation() {
-        population = new Population(masterData, threadPool);
+        // Before any random chromosomes are made, shrink the placements each module may be drawn from
+        // A sub job may already have been pruned, when its existing genes were moved into its venues (see {@link ProblemDecomposer})
+        if (masterData.getModuleDomains() == null) {
+            DomainPruner.prune(masterData);
+        }
+        // Each (sub) job has its own cache, since hashes depend on the order of its modules
+        masterData.setFitnessCache(masterData.getFitnessCacheSize() > 0 ? new FitnessCache(masterData.getFitnessCacheSize()) : null);
+
+        List<Chromosome> restored = masterData.isResuming() ? restoreFromCheckpoint() : null;
+        if (restored != null) {
+            // The best schedule so far may have been written after the last checkpoint was taken: bring it along, so it isn't lost
+            Chromosome bestSoFar = bestSoFarFromDatabase(restored);
+            if (bestSoFar != null) {
+                restored.add(bestSoFar);
+            }
+        }
+        population = restored != null ? new Population(masterData, threadPool, restored) : new Population(masterData, threadPool);
+    }
+
+    /**
+     * The schedule as loaded from the database: for a resumed job, the last best-so-far snapshot it staged (see {@link JobListener#onBestSoFar})
+     * Its genes are put in the same module order as the restored chromosomes, so that it can cross over with them
+     *
+     * @return null if the schedule doesn't place exactly the restored chromosomes' modules, or is already one of them
+     */
+    private Chromosome bestSoFarFromDatabase(List<Chromosome> restored) {
+        List<Gene> scheduledModules = masterData.getScheduledModules();
+        Gene[] order = restored.get(0).getGenes();
+        if (scheduledModules == null || scheduledModules.size() != order.length) {
+            return null;
+        }
+        Map<Long, Gene> scheduledByModuleId = new HashMap<>();
+        for (Gene gene : scheduledModules) {
+            scheduledByModuleId.put(gene.getModule().getId(), gene);
+        }
+        List<Gene> genes = new ArrayList<>(order.length);
+        for (Gene gene : order) {
+            Gene scheduled = scheduledByModuleId.get(gene.getModule().getId());
+            if (scheduled == null) {
+                return null;
+            }
+            genes.add(scheduled.clone());
+        }
+
+        Chromosome bestSoFar = new Chromosome(masterData, genes);
+        for (Chromosome chromosome : restored) {
+            if (chromosome.getHash() == bestSoFar.getHash()) {
+                return null;
+            }
+        }
+        System.out.println("Resumed job=" + masterData.getJobId() + " with its best schedule so far from the database, fitness=" + bestSoFar.getCachedFitness()); // FUTURE: Logger info
+        return bestSoFar;
+    }
+
+    /**
+     * @return The population saved in this job's last checkpoint, or null if there isn't one that fits the job's data
+     */
+    private List<Chromosome> restoreFromCheckpoint() {
+        if (masterData.getCheckpointDirectory() == null) {
+            return null;
+        }
+        Path file = PopulationCheckpoint.fileFor(masterData.getCheckpointDirectory(), checkpointName);
+        if (!Files.exists(file)) {
+            System.out.println("No checkpoint " + file + " to resume from, starting afresh"); // FUTURE: Logger info
+            return null;
+        }
+        try {
+            PopulationCheckpoint checkpoint = PopulationCheckpoint.readFrom(file);
+            List<Chromosome> restored = checkpoint.restore(masterData);
+            if (restored == null || restored.isEmpty()) {
+                System.out.println("Checkpoint " + file + " no longer matches the data in the database, starting afresh"); // FUTURE: Logger warning
+                return null;
+            }
+            resumeGeneration = checkpoint.getGeneration();
+            System.out.println("Resumed job=" + masterData.getJobId() + " from " + file + " at generation " + resumeGeneration); // FUTURE: Logger info
+            return restored;
+        } catch (IOException e) {
+            System.out.println("ERROR: Could not read checkpoint " + file + ", starting afresh"); // FUTURE: Logger error
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Checkpoint the population, if it's time to. Only the copy into index arrays happens on this thread; the file is written in the background
+     */
+    private void checkpointIfDue() {
+        if (checkpointIntervalNanos <= 0 || System.nanoTime() - lastCheckpointNanos < checkpointIntervalNanos) {
+            return;
+        }
+        if (pendingCheckpoint != null && !pendingCheckpoint.isDone()) {
+            return; // Disk is slower than the interval. Skip this one rather than pile up writes
+        }
+        lastCheckpointNanos = System.nanoTime();
+
+        final PopulationCheckpoint checkpoint = PopulationCheckpoint.capture(masterData, population.getIndividuals(), currentGeneration.get());
+        final Path file = PopulationCheckpoint.fileFor(masterData.getCheckpointDirectory(), checkpointName);
+        if (DEBUG_STATS) {
+            System.out.println(currentGeneration.get() + "gen: Captured checkpoint in " + ((System.nanoTime() - lastCheckpointNanos) * 1E-6) + " ms, job=" + masterData.getJobId()); // FUTURE: Logger debug
+        }
+        pendingCheckpoint = checkpointWriter.submit(() -> {
+            try {
+                checkpoint.writeTo(file);
+            } catch (IOException e) {
+                System.out.println("ERROR: Could not write checkpoint " + file); // FUTURE: Logger error
+                e.printStackTrace();
+            }
+        });
     }
 
     private void runAllGenerations() {
-        currentGeneration.set(0);
+        currentGeneration.set(resumeGeneration);
+        lastCheckpointNanos = System.nanoTime();
 
         // Let the algorithm be quit earlier than the specified MAX generations
         // Such as, if all hard constraints are met, then let the algorithm run for several more generations, then quit
@@ -138,15 +463,29 @@ public class GeneticAlgorithmJob implements Runnable {
         final long initTime = System.nanoTime() - startTime; // DEBUG
         double runningAverage = -1; // DEBUG
 
-        isRunning.set(true);
+        // For stall detection: the best fitness seen so far, and when it last improved
+        long bestFitness = Long.MIN_VALUE;
+        int lastImprovedGeneration = resumeGeneration;
+        TerminationReason terminationReason = null;
+
+        // For the time budget estimate: hard constraint violations at the start of the run
+        final long loopStartTime = System.nanoTime();
+        int startingHardViolations = -1;
+        lastSnapshotNanos = loopStartTime; // The first snapshot is one interval in: the starting population is already in the database, or is random
+
+        isRunning.set(!isStopRequested); // Stopped before it got here: still return the (initial) best individual
         while (isRunning.get()) { // Use of AtomicBoolean to control a Thread see: https://www.baeldung.com/java-thread-stop
             long generationTime = System.nanoTime(); // DEBUG
 
-            population.mutate(mutateProbability, mutatedGenesMax);
+            if (adaptiveRates != null) {
+                adaptiveRates.update(population.getDiversity(), currentGeneration.get() - lastImprovedGeneration, progress);
+            }
+
+            population.mutate(getCurrentMutateProbability(), getCurrentMutatedGenesMax());
 
-            population.crossover(crossoverProbability);
+            population.crossover(getCurrentCrossoverProbability());
 
-            population.select(eliteSurvivors); // Selection must be done after genetic crossover/mutate in order to find cached hasValidSolution
+            population.select(eliteSurvivors, getCurrentMutatedGenesMax()); // Selection must be done after genetic crossover/mutate in order to find cached hasValidSolution
 
 //            // DEBUG: Some delay needed to prevent frontend from breaking because it cannot update when the job ends too quickly. This is obviously a hack, but may be able to eliminate it once there's more load for the whole GA
 //            try {
@@ -161,31 +500,61 @@ public class GeneticAlgorithmJob implements Runnable {
             }
 
             // DEBUG
-            if (currentGeneration.get() == 0) {
+            if (currentGeneration.get() == resumeGeneration) {
                 runningAverage = System.nanoTime() - generationTime;
             } else {
-                runningAverage += ((System.nanoTime() - generationTime) - runningAverage) / ((double) (currentGeneration.get() + 1));
+                runningAverage += ((System.nanoTime() - generationTime) - runningAverage) / ((double) (currentGeneration.get() - resumeGeneration + 1));
+            }
+
+            if (timeBudgetNanos > 0) {
+                // Operators set a time budget, so report progress against time
+                progress = Math.min((float) (System.nanoTime() - (deadlineNanos - timeBudgetNanos)) / timeBudgetNanos, 1.0f);
+
+                if (currentGeneration.get() == resumeGeneration) {
+                    startingHardViolations = population.getFewestHardViolations();
+                } else if (currentGeneration.get() == resumeGeneration + ESTIMATE_AFTER_GENERATIONS) {
+                    estimateOutcomeWithinBudget(loopStartTime, startingHardViolations);
+                }
+            } else {
+                progress = Math.min((float) currentGeneration.get() / tentativeGenLimit, 1.0f); // TODO: try it with numGenerationsMaximum rather than max, see how it look
             }
 
             // Every 5% of the way through the job (config by QUERY_RATE), inform the frontend that the job status should be updated
-            if (currentGeneration.get() % queryGenerationModulus == 0) {
-                // Send a WebSocket publication to subscribers on the frontend web app, notifying of progress of this job
-                this.websocket.convertAndSend(MESSAGE_PREFIX + "/jobStatus",
-                        "{\"jobId\":" + masterData.getJobId() +
-                                ",\"scheduleId\":" + masterData.getScheduleId() +
-                                ",\"progressPercent\":" +
-                                ((float) currentGeneration.get() / tentativeGenLimit) + // TODO: try it with numGenerationsMaximum rather than max, see how it look
-                                ",\"fitnessEstimate\":" +
-                                population.getEstimatedFitness() +
-                                ",\"isDone\": " + false + "}");
+            if (!isSubJob && currentGeneration.get() % queryGenerationModulus == 0) {
+                listener.onProgress(this, progress, population.getEstimatedFitness());
+                System.out.println(currentGeneration.get() + "gen: diversity=" + population.getDiversity() + ", duplicate offspring dropped=" + population.getDuplicatesDropped() +
+                        ", crossover=" + getCurrentCrossoverProbability() + ", mutate=" + getCurrentMutateProbability() + ", mutatedGenesMax=" + getCurrentMutatedGenesMax() +
+                        ", job=" + masterData.getJobId()); // FUTURE: Logger debug
+            }
+
+            if (population.getEstimatedFitness() > bestFitness) {
+                bestFitness = population.getEstimatedFitness();
+                lastImprovedGeneration = currentGeneration.get();
             }
 
+            checkpointIfDue();
+            snapshotIfDue(bestFitness);
+
             // Increment generation counter, and then check for exit conditions
             if (currentGeneration.incrementAndGet() > numGenerationsMaximum) {
                 isRunning.set(false);
+                terminationReason = TerminationReason.GENERATION_LIMIT;
+            } else if (timeBudgetNanos > 0 && System.nanoTime() >= deadlineNanos) {
+                isRunning.set(false);
+                terminationReason = TerminationReason.TIME_BUDGET;
+                System.out.println(currentGeneration.get() + "gen: Time budget of " + masterData.getTimeBudgetMillis() + "ms used up. Quitting with the best found so far"); // FUTURE: Logger
+            } else if (stallGenerations > 0 && currentGeneration.get() - lastImprovedGeneration > stallGenerations) {
+                isRunning.set(false);
+                terminationReason = TerminationReason.FITNESS_STALLED;
+                System.out.println(currentGeneration.get() + "gen: Best fitness " + bestFitness + " has not improved since generation " + lastImprovedGeneration + ". Quitting early!"); // FUTURE: Logger
+            } else if (population.getDiversity() < minDiversity) {
+                isRunning.set(false);
+                terminationReason = TerminationReason.DIVERSITY_COLLAPSED;
+                System.out.println(currentGeneration.get() + "gen: Population diversity has dropped to " + population.getDiversity() + ". Quitting early!"); // FUTURE: Logger
             } else if (currentGeneration.get() > tentativeGenLimit) {
                 if (population.hasValidSolution()) {
                     isRunning.set(false); // Can quit early! We had found a solution, ran some more generations as a "run down", and now we still have a solution
+                    terminationReason = TerminationReason.VALID_SOLUTION;
                     System.out.println(currentGeneration.get() + "gen: Found a valid solution and ran for several more generations. Quitting early!"); // FUTURE: Logger
                 } else {
                     tentativeGenLimit = numGenerationsMaximum; // Ran several more generations, but have now LOST the valid solution. Go some more
@@ -201,6 +570,17 @@ public class GeneticAlgorithmJob implements Runnable {
                 // else: There's no valid solution. Continue running the algorithm as normal
             } // else: Already doing a final run down, don't check if the valid solution still exists until we're done
         }
+        if (pendingCheckpoint != null) {
+            // Let the last checkpoint land before the job finishes, so it can't reappear after the job's checkpoints are deleted
+            try {
+                pendingCheckpoint.get();
+            } catch (InterruptedException | ExecutionException e) {
+                e.printStackTrace();
+            }
+        }
+
+        // Nothing in the loop stopped it, therefore it was stopped from outside
+        masterData.setTerminationReason(terminationReason != null ? terminationReason : TerminationReason.STOPPED);
         // DEBUG
         if (DEBUG_STATS) {
             System.out.print("Complexity of dataset:"); // FUTURE: Logger
@@ -211,12 +591,16 @@ public class GeneticAlgorithmJob implements Runnable {
             System.out.print(" Time init: " + (initTime * 1.0E-6) + " ms"); // FUTURE: Logger
             System.out.print(" Average generation time: " + (runningAverage * 1E-6) + " ms"); // FUTURE: Logger
             System.out.println(" Total time: " + ((System.nanoTime() - startTime) * 1E-9) + " s"); // FUTURE: Logger
+            if (masterData.getFitnessCache() != null) {
+                // If the hit rate is close to zero, the cache isn't paying for itself on this dataset: run the job with fitnessCacheSize=0
+                System.out.println("Fitness cache stats: " + masterData.getFitnessCache()); // FUTURE: Logger
+            }
 
             // Log which modules were not able to be scheduled
             population.logFailuresToSchedule();
         }
 
-        System.out.println("GA generations have completed in " + (currentGeneration.get() - 1) + " generations, job=" + masterData.getJobId() + ", schedule=" + masterData.getScheduleId()); // FUTURE: Logger info
+        System.out.println("GA generations have completed in " + (currentGeneration.get() - 1) + " generations, job=" + masterData.getJobId() + ", schedule=" + masterData.getScheduleId() + ", reason=" + masterData.getTerminationReason()); // FUTURE: Logger info
 
         // Generate a CSV file with the parameters and running time results for this GA run
         // FUTURE: File writing could be optimised
@@ -264,24 +648,118 @@ public class GeneticAlgorithmJob implements Runnable {
             }
         }
 
-        // Send a WebSocket publication to subscribers on the frontend web app, notifying job progress == DONE
+        progress = 1.0f;
+    }
+
+    /**
+     * For a time-budgeted job, use the first few generations to guess whether a valid solution will be found before the deadline
+     * Assumes generation time stays flat, and hard constraint violations keep being removed at the rate they were so far (both usually optimistic)
+     *
+     * @param loopStartTime          When the first generation started, from {@link System#nanoTime()}
+     * @param startingHardViolations Fewest hard constraint violations in the population after the first generation
+     */
+    private void estimateOutcomeWithinBudget(long loopStartTime, int startingHardViolations) {
+        final long now = System.nanoTime();
+        final int generationsRun = currentGeneration.get() - resumeGeneration;
+        final double nanosPerGeneration = (double) (now - loopStartTime) / generationsRun;
+        final int generationsLeft = (int) Math.min(Math.max((deadlineNanos - now) / nanosPerGeneration, 0), numGenerationsMaximum - currentGeneration.get());
+        estimatedGenerationsInBudget = currentGeneration.get() + generationsLeft;
+
+        final int hardViolations = population.getFewestHardViolations();
+        final double violationsRemovedPerGeneration = (double) (startingHardViolations - hardViolations) / generationsRun;
+        isValidSolutionLikelyInBudget = hardViolations == 0 ||
+                (violationsRemovedPerGeneration > 0 && hardViolations / violationsRemovedPerGeneration <= generationsLeft);
+
+        System.out.println(currentGeneration.get() + "gen: Estimated " + estimatedGenerationsInBudget + " generations within the time budget, " +
+                hardViolations + " hard violations left, valid solution likely=" + isValidSolutionLikelyInBudget + ", job=" + masterData.getJobId()); // FUTURE: Logger info
+        if (!isSubJob) {
+            listener.onEstimate(this);
+        }
+    }
+
+    /**
+     * Every so often, if the best fitness has improved since the last one, hand a snapshot of the best individual to the listener: see {@link JobListener#onBestSoFar}
+     * So that a job that's stopped, or dies, has still left its progress somewhere. Costs a sort of the population and a copy of one chromosome
+     * A sub job publishes its best for its parent instead, since only the parent can make a whole schedule of it: see {@link #snapshotSubJobsIfDue}
+     *
+     * @param bestFitness Best fitness seen so far
+     */
+    private void snapshotIfDue(long bestFitness) {
+        if (snapshotIntervalNanos <= 0 || bestFitness <= snapshotFitness || System.nanoTime() - lastSnapshotNanos < snapshotIntervalNanos) {
+            return;
+        }
+        lastSnapshotNanos = System.nanoTime();
+        snapshotFitness = bestFitness;
+
+        Chromosome best = population.getBestChromosome();
+        if (isSubJob) {
+            // Copied here, on the sub job's own thread: its population can't be read from the parent's
+            Gene[] genes = new Gene[best.getGenes().length];
+            for (int i = 0; i < genes.length; ++i) {
+                genes[i] = best.getGenes()[i].clone();
+            }
+            publishedBest = genes;
+        } else {
+            listener.onBestSoFar(this, new JobResult(this, masterData, best.getGenes(), best.getCachedFitness(), best.isValidSolution(), null));
+        }
+    }
+
+    /**
+     * For a job split into sub jobs: every so often, merge the bests its sub jobs have published into one schedule, and hand it to the listener as a snapshot
+     * Only once every sub job has published, at least one has published again since the last snapshot, and the merged fitness has improved
+     * A failed merge only skips the snapshot: the final merge will report it
+     */
+    private void snapshotSubJobsIfDue() {
+        if (snapshotIntervalNanos <= 0 || System.nanoTime() - lastSnapshotNanos < snapshotIntervalNanos) {
+            return;
+        }
+        lastSnapshotNanos = System.nanoTime();
+
+        List<Gene[]> bests = new ArrayList<>(subJobs.size());
+        for (GeneticAlgorithmJob subJob : subJobs) {
+            Gene[] best = subJob.publishedBest;
+            if (best == null) {
+                return;
+            }
+            bests.add(best);
+        }
+        boolean isNew = false;
+        for (int i = 0; i < bests.size() && !isNew; ++i) {
+            isNew = snapshotSubJobBests.isEmpty() || bests.get(i) != snapshotSubJobBests.get(i);
+        }
+        if (!isNew) {
+            return;
+        }
+        snapshotSubJobBests = bests;
+
+        List<Gene> genes = new ArrayList<>(masterData.getModules().size());
+        for (Gene[] best : bests) {
+            genes.addAll(Arrays.asList(best));
+        }
+        final Chromosome merged;
         try {
-            // DEBUG: If the algorithm converged TOO FAST, then add an artificial delay. This is to make up for failings in the front end (breaks state if updates too fast).
-            // DEBUG: ...this is definitely a hack
-            final int MIN_EXECUTION_TIME = 10 * 1000; // milliseconds
-            final long actualExecutionTime = (long) ((System.nanoTime() - startTime) * 1E-6);
-            System.out.println("Need a delay? Sleeping for " + (MIN_EXECUTION_TIME - actualExecutionTime) + "ms"); // DEBUG
-            Thread.sleep(Math.max(MIN_EXECUTION_TIME - actualExecutionTime, 0));
-        } catch (InterruptedException e) {
+            merged = merge(genes);
+        } catch (IllegalStateException e) {
+            System.out.println("ERROR: Could not merge a snapshot of the sub jobs of job=" + masterData.getJobId()); // FUTURE: Logger error
             e.printStackTrace();
+            return;
+        }
+        if (merged.getCachedFitness() > snapshotFitness) {
+            snapshotFitness = merged.getCachedFitness();
+            listener.onBestSoFar(this, new JobResult(this, masterData, merged.getGenes(), merged.getCachedFitness(), merged.isValidSolution(), null));
+        }
+    }
+
+    /**
+     * Something went wrong while running the job. Nothing is written back, and its checkpoints are deleted
+     */
+    private void fail(RuntimeException cause) {
+        System.out.println("ERROR: job=" + masterData.getJobId() + ", schedule=" + masterData.getScheduleId() + " has failed, nothing will be written back"); // FUTURE: Logger error
+        cause.printStackTrace();
+        if (masterData.getCheckpointDirectory() != null) {
+            PopulationCheckpoint.deleteForJob(masterData.getCheckpointDirectory(), masterData.getJobId());
         }
-        this.websocket.convertAndSend(MESSAGE_PREFIX + "/jobStatus",
-                "{\"jobId\":" + masterData.getJobId() +
-                        ",\"scheduleId\":" + masterData.getScheduleId() +
-                        ",\"progressPercent\":" + 1.0 +
-                        ",\"fitnessEstimate\":" +
-                        population.getEstimatedFitness() +
-                        ",\"isDone\": " + true + "}");
+        listener.onFailed(this, cause);
     }
 
     /**
@@ -292,22 +770,18 @@ public class GeneticAlgorithmJob implements Runnable {
         Chromosome bestChromosome = population.getBestChromosome();
         masterData.setScheduledModules(Arrays.asList(bestChromosome.getGenes()));
         masterData.setFitness(bestChromosome.getCachedFitness());
+        masterData.setHasValidSolution(bestChromosome.isValidSolution());
     }
 
-    private void writeBackToDatabase() {
-        gaToDbSerializer.writeScheduleData(masterData, masterData.getScheduleId());
-
-        // Send a WebSocket publication to subscribers on the frontend web app, notifying "A job has finished for this schedule and has been written into the DB"
-        this.websocket.convertAndSend(MESSAGE_PREFIX + "/jobComplete",
-                "{\"scheduleId\":" + masterData.getScheduleId() +
-                        ",\"foundValidSolution\":" + population.hasValidSolution() +
-                        ",\"finalGenerationNumber\":" + (currentGeneration.get() - 1) + "}");
-
-    }
-
-    private void finaliseJob() {
-        dispatcher.jobCompleted(masterData.getJobId());
-        gaToDbSerializer.deleteJobForSchedule(masterData.getScheduleId());
+    /**
+     * The job's result has been saved (see {@link JobListener#onSolved}). May be called from any thread
+     */
+    public void finish() {
+        if (masterData.getCheckpointDirectory() != null) {
+            // Written back, so there's nothing left to resume. Includes the checkpoints of any sub jobs
+            PopulationCheckpoint.deleteForJob(masterData.getCheckpointDirectory(), masterData.getJobId());
+        }
+        state = JobState.DONE;
     }
 
     public boolean getIsRunning() {
@@ -315,14 +789,242 @@ public class GeneticAlgorithmJob implements Runnable {
     }
 
     public void setIsRunning(boolean isRunning) {
+        if (!isRunning) {
+            isStopRequested = true;
+        }
         this.isRunning.set(isRunning);
+        for (GeneticAlgorithmJob subJob : subJobs) {
+            subJob.setIsRunning(isRunning);
+        }
+    }
+
+    /**
+     * @return Everything this job was given. Once it is solved, this holds the solution too
+     */
+    public GeneticAlgorithmJobData getData() {
+        return masterData;
     }
 
     public int getNumGenerations() {
         return numGenerationsMaximum;
     }
 
+    public JobState getState() {
+        return state;
+    }
+
+    /**
+     * The job was taken out of the queue and will never run
+     */
+    public void markCancelled() {
+        state = JobState.CANCELLED;
+    }
+
+    /**
+     * @return Wall-clock time this job started running, in epoch milliseconds. 0 if it hasn't started
+     */
+    public long getStartTimeMillis() {
+        return startTimeMillis;
+    }
+
+    /**
+     * @return How long this job has been running generations for, or ran for if it has finished, in nanoseconds
+     */
+    public long getRunningTimeNanos() {
+        if (runStartNanos == 0) {
+            return 0;
+        }
+        return (runEndNanos != 0 ? runEndNanos : System.nanoTime()) - runStartNanos;
+    }
+
+    /**
+     * @return How many fitness evaluations have been asked for (including fitness cache hits), over this job and all its sub jobs
+     */
+    public long getFitnessEvaluations() {
+        long evaluations = masterData.getFitnessEvaluations().sum();
+        for (GeneticAlgorithmJob subJob : subJobs) {
+            evaluations += subJob.getFitnessEvaluations();
+        }
+        return evaluations;
+    }
+
+    /**
+     * @return Whether the best individual so far breaks no hard constraints. For a job split into sub jobs, whether that's true of all of them
+     */
+    public boolean hasValidSolution() {
+        if (state == JobState.SAVING || state == JobState.DONE) {
+            return masterData.isHasValidSolution();
+        }
+        if (subJobs.isEmpty()) {
+            return population != null && population.getFewestHardViolations() == 0;
+        }
+        for (GeneticAlgorithmJob subJob : subJobs) {
+            if (!subJob.hasValidSolution()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A rough estimate of the heap this job holds: its population (two generations are alive while selecting) and fitness cache
+     *
+     * @return Bytes
+     */
+    public long getMemoryEstimateBytes() {
+        // Assumes compressed references: a Gene is a 12 byte header, 3 references and 2 booleans; each gene also costs a 4 byte slot in its chromosome's array
+        final long bytesPerGene = 32 + 4;
+        final long bytesPerChromosome = 48 + 16;
+        // A cache entry, its LinkedHashMap node, and its boxed Long key
+        final long bytesPerCacheEntry = 32 + 40 + 16;
+
+        long bytes = 0;
+        List<GeneticAlgorithmJob> jobs = subJobs.isEmpty() ? Collections.singletonList(this) : subJobs;
+        for (GeneticAlgorithmJob job : jobs) {
+            final long chromosomes = 2L * job.masterData.getPopulationSize();
+            bytes += chromosomes * (bytesPerChromosome + bytesPerGene * job.masterData.getChromosomeSize());
+            if (job.masterData.getFitnessCache() != null) {
+                bytes += (long) job.masterData.getFitnessCacheSize() * bytesPerCacheEntry; // Upper bound: the cache fills up quickly
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return The generation this job is on. For a job split into sub jobs, the furthest generation any sub job has reached
+     */
     public int getCurrentGeneration() {
-        return currentGeneration.get();
+        int generation = currentGeneration.get();
+        for (GeneticAlgorithmJob subJob : subJobs) {
+            generation = Math.max(generation, subJob.getCurrentGeneration());
+        }
+        return generation;
+    }
+
+    /**
+     * @return The generation this job was resumed from a checkpoint at, 0 if it started from scratch.
+     *         For a job split into sub jobs, that of the sub job furthest along, to go with {@link #getCurrentGeneration()}
+     */
+    public int getResumeGeneration() {
+        int generation = currentGeneration.get();
+        int resumedAt = resumeGeneration;
+        for (GeneticAlgorithmJob subJob : subJobs) {
+            if (subJob.getCurrentGeneration() > generation) {
+                generation = subJob.getCurrentGeneration();
+                resumedAt = subJob.getResumeGeneration();
+            }
+        }
+        return resumedAt;
+    }
+
+    /**
+     * @return [0.0f, 1.0f] How far along this job is. For a job split into sub jobs, the progress of the slowest sub job
+     */
+    public float getProgress() {
+        if (subJobs.isEmpty()) {
+            return progress;
+        }
+        float slowest = 1.0f;
+        for (GeneticAlgorithmJob subJob : subJobs) {
+            slowest = Math.min(slowest, subJob.getProgress());
+        }
+        return slowest;
+    }
+
+    /**
+     * @return For a time-budgeted job, how many generations are expected to run in total. -1 if not estimated (yet)
+     */
+    public int getEstimatedGenerationsInBudget() {
+        return estimatedGenerationsInBudget;
+    }
+
+    /**
+     * @return For a time-budgeted job, whether a valid solution is expected before the deadline. For a job split into sub jobs, whether it is for all of them
+     */
+    public boolean isValidSolutionLikelyInBudget() {
+        if (subJobs.isEmpty()) {
+            return isValidSolutionLikelyInBudget;
+        }
+        for (GeneticAlgorithmJob subJob : subJobs) {
+            if (!subJob.isValidSolutionLikelyInBudget()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return [0.0, 1.0] Proportion of fitness evaluations answered by the {@link FitnessCache}, over this job and all its sub jobs. 0 if the cache is off
+     */
+    public double getFitnessCacheHitRate() {
+        long hits = 0;
+        long lookups = 0;
+        List<GeneticAlgorithmJob> jobs = subJobs.isEmpty() ? Collections.singletonList(this) : subJobs;
+        for (GeneticAlgorithmJob job : jobs) {
+            FitnessCache cache = job.masterData.getFitnessCache();
+            if (cache != null) {
+                hits += cache.getHits();
+                lookups += cache.getHits() + cache.getMisses();
+            }
+        }
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * @return The crossover probability used for the latest generation. For a job split into sub jobs, the average over its sub jobs
+     */
+    public float getCurrentCrossoverProbability() {
+        if (!subJobs.isEmpty()) {
+            return (float) subJobs.stream().mapToDouble(GeneticAlgorithmJob::getCurrentCrossoverProbability).average().orElse(0);
+        }
+        return adaptiveRates != null ? adaptiveRates.getCrossoverProbability() : crossoverProbability;
+    }
+
+    /**
+     * @return The mutation probability used for the latest generation. For a job split into sub jobs, the average over its sub jobs
+     */
+    public float getCurrentMutateProbability() {
+        if (!subJobs.isEmpty()) {
+            return (float) subJobs.stream().mapToDouble(GeneticAlgorithmJob::getCurrentMutateProbability).average().orElse(0);
+        }
+        return adaptiveRates != null ? adaptiveRates.getMutateProbability() : mutateProbability;
+    }
+
+    /**
+     * @return The most genes a mutation could change in the latest generation. For a job split into sub jobs, the largest over its sub jobs
+     */
+    public int getCurrentMutatedGenesMax() {
+        if (!subJobs.isEmpty()) {
+            return subJobs.stream().mapToInt(GeneticAlgorithmJob::getCurrentMutatedGenesMax).max().orElse(0);
+        }
+        return adaptiveRates != null ? adaptiveRates.getMutatedGenes() : mutatedGenesMax;
+    }
+
+    /**
+     * @return [0.0f, 1.0f] Proportion of distinct individuals in the population. For a job split into sub jobs, the average over its sub jobs
+     */
+    public float getDiversity() {
+        if (subJobs.isEmpty()) {
+            return population == null ? 1.0f : population.getDiversity();
+        }
+        float sum = 0;
+        for (GeneticAlgorithmJob subJob : subJobs) {
+            sum += subJob.getDiversity();
+        }
+        return sum / subJobs.size();
+    }
+
+    /**
+     * @return Best fitness seen so far. For a job split into sub jobs, the sum over its sub jobs (only an estimate, since fitness is weighted by chromosome size)
+     */
+    public long getEstimatedFitness() {
+        if (subJobs.isEmpty()) {
+            return population == null ? masterData.getFitness() : population.getEstimatedFitness();
+        }
+        long sum = 0;
+        for (GeneticAlgorithmJob subJob : subJobs) {
+            sum += subJob.getEstimatedFitness();
+        }
+        return sum;
     }
 }
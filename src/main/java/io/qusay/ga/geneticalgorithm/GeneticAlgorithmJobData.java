@@ -1,14 +1,13 @@
 package io.qusay.ga.geneticalgorithm;
 
-import io.qusay.ga.service.DbToGaDeserializer;
-import io.qusay.ga.service.Dispatcher;
-
 import java.io.Serializable;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * This is the MASTER object: The {@link Dispatcher} will create one of these, (via a {@link DbToGaDeserializer}
+ * This is the MASTER object: The Dispatcher will create one of these, (via a DbToGaDeserializer, or a {@link ProblemSnapshot} outside the web app)
  * and then pass it to the actual GA runner to define ALL properties of the job
  *
  * Contains every piece of information (as component collections) that a GA job needs to create a schedule
@@ -40,9 +39,42 @@ public class GeneticAlgorithmJobData implements Serializable {
     // How many genes can be mutated within a chromosome if it is mutated: between 1..mutatedGenesMax
     private int mutatedGenesMax;
 
+    // Adjust crossover/mutation rates every generation (see {@link AdaptiveOperatorRates}), within these bounds
+    // mutatedGenesMax is the upper bound for the number of genes mutated
+    private boolean isAdaptiveRates;
+    private float adaptiveCrossoverMin;
+    private float adaptiveCrossoverMax;
+    private float adaptiveMutateMin;
+    private float adaptiveMutateMax;
+    // Generations without improvement after which the adaptive rates count the search as fully stalled
+    private int adaptiveStallWindow;
+
     // How many of the very best in a population are guaranteed to survive
     private int numEliteSurvivors;
 
+    // Stop early if the best fitness hasn't improved for this many generations. 0 to disable
+    private int stallGenerations;
+    // Stop early if population diversity drops below this proportion [0.0f, 1.0f]. 0 to disable
+    private float minDiversity;
+
+    // Stop once the job has been running this many milliseconds. 0 for no time limit (numGenerations still applies either way)
+    private long timeBudgetMillis;
+
+    // How many fitness results to memoise, see {@link FitnessCache}. 0 to not use a cache for this job
+    private int fitnessCacheSize;
+    // Created when the job starts running. Null if the cache is off
+    private transient FitnessCache fitnessCache;
+    // How many times fitness has been asked for (including cache hits), for job metrics
+    private final transient LongAdder fitnessEvaluations = new LongAdder();
+
+    // Where to save {@link PopulationCheckpoint}s, and how often. Null directory or 0 interval to never checkpoint
+    private String checkpointDirectory;
+    private long checkpointIntervalMillis;
+    // This job was found orphaned after a restart: start from its checkpoints, if they still fit the data
+    private boolean isResuming;
+    // How often to hand the best solution so far to the job's listener, while it keeps improving. 0 to only hand over the final solution
+    private long snapshotIntervalMillis;
+
     // How often to send reports back to the database, in percentage of job done
     // This is important for the frontend, since it is how often the status progress bar will update
     private float queryRate;
@@ -59,6 +91,10 @@ public class GeneticAlgorithmJobData implements Serializable {
     // Either way, at the END of the job, it will be filled up with the results
     private List<Gene> scheduledModules;
 
+    // The scheduled modules as they were in the database when the job started, or NULL for a new schedule
+    // Copies, which the GA never touches: only read once the job is done, to write back just the modules that moved
+    private List<Gene> persistedScheduledModules;
+
     // Does this job's data represent a schedule with no hard constraints violated?
     // Will be set and read DURING the job
     private boolean hasValidSolution;
@@ -66,8 +102,127 @@ public class GeneticAlgorithmJobData implements Serializable {
     // What is the fitness of the current solution?
     private long fitness;
 
+    // Which exit condition ended the run
+    private TerminationReason terminationReason;
+
+    // Feasible (venue, timeslot) pairs of each module, see {@link DomainPruner}. Null until the pruner has run, in which case placements are drawn from everything
+    private Map<ModuleGA, ModuleDomain> moduleDomains;
+    private Map<VenueGA, Integer> venueIndexes;
+
+    // How many times to draw a random (venue, timeslot) pair from the feasible venues and timeslots before scanning for a feasible pair instead
+    private static final int MAX_DRAW_ATTEMPTS = 16;
+
     private static final Random random = new Random();
 
+    /**
+     * Make a smaller job out of a subset of this job's modules and venues, see {@link ProblemDecomposer}
+     * All parameters of the job are copied. Timeslots are shared, since every module may be placed in any timeslot
+     *
+     * @param subsetModules Modules to schedule in the new job
+     * @param subsetVenues  Venues those modules may be placed in
+     * @return A job data object that can be run by its own {@link GeneticAlgorithmJob}
+     */
+    public GeneticAlgorithmJobData createSubProblem(List<ModuleGA> subsetModules, List<VenueGA> subsetVenues) {
+        GeneticAlgorithmJobData subProblem = new GeneticAlgorithmJobData();
+        subProblem.scheduleId = scheduleId;
+        subProblem.jobId = jobId;
+        subProblem.isModifyExistingJob = isModifyExistingJob;
+        subProblem.numGenerations = numGenerations;
+        subProblem.populationSize = populationSize;
+        subProblem.proportionRunDownGenerations = proportionRunDownGenerations;
+        subProblem.crossoverProbability = crossoverProbability;
+        subProblem.mutateProbability = mutateProbability;
+        subProblem.mutatedGenesMax = mutatedGenesMax;
+        subProblem.isAdaptiveRates = isAdaptiveRates;
+        subProblem.adaptiveCrossoverMin = adaptiveCrossoverMin;
+        subProblem.adaptiveCrossoverMax = adaptiveCrossoverMax;
+        subProblem.adaptiveMutateMin = adaptiveMutateMin;
+        subProblem.adaptiveMutateMax = adaptiveMutateMax;
+        subProblem.adaptiveStallWindow = adaptiveStallWindow;
+        subProblem.numEliteSurvivors = numEliteSurvivors;
+        subProblem.stallGenerations = stallGenerations;
+        subProblem.minDiversity = minDiversity;
+        subProblem.timeBudgetMillis = timeBudgetMillis;
+        subProblem.fitnessCacheSize = fitnessCacheSize;
+        subProblem.queryRate = queryRate;
+        subProblem.checkpointDirectory = checkpointDirectory;
+        subProblem.checkpointIntervalMillis = checkpointIntervalMillis;
+        subProblem.snapshotIntervalMillis = snapshotIntervalMillis; // Sub jobs publish their best this often, see {@link GeneticAlgorithmJob#snapshotIfDue}
+        subProblem.isResuming = isResuming;
+
+        subProblem.setModules(subsetModules);
+        subProblem.setVenues(subsetVenues);
+        subProblem.setTimeslots(timeslotGAS);
+
+        return subProblem;
+    }
+
+    /**
+     * Give a gene a random venue and timeslot. If the job has been pruned, only feasible pairs from the module's domain are drawn
+     */
+    public void placeRandomly(Gene gene) {
+        ModuleDomain domain = moduleDomains == null ? null : moduleDomains.get(gene.moduleGA);
+        if (domain == null) {
+            gene.venueGA = getRandomVenue();
+            gene.timeslotGA = getRandomTimeslot();
+            return;
+        }
+
+        final int[] domainVenues = domain.getVenueIndexes();
+        final int[] domainTimeslots = domain.getTimeslotIndexes();
+        for (int attempt = 0; attempt < MAX_DRAW_ATTEMPTS; ++attempt) {
+            final int venueIndex = domainVenues[random.nextInt(domainVenues.length)];
+            final int timeslotIndex = domainTimeslots[random.nextInt(domainTimeslots.length)];
+            if (domain.contains(venueIndex, timeslotIndex)) {
+                gene.venueGA = venueGAS.get(venueIndex);
+                gene.timeslotGA = timeslotGAS.get(timeslotIndex);
+                return;
+            }
+        }
+
+        // Unlucky (or a very sparse domain): walk from a random cell to the next feasible one
+        final int cell = domain.nextCellFrom(random.nextInt(venueGAS.size() * timeslotGAS.size()));
+        gene.venueGA = venueGAS.get(cell / domain.getNumTimeslots());
+        gene.timeslotGA = timeslotGAS.get(cell % domain.getNumTimeslots());
+    }
+
+    /**
+     * Move a gene to the first feasible (venue, timeslot) pair at or after its own timeslot in the first venue, see {@link ModuleDomain#nextCellFrom}
+     * Unlike {@link #placeRandomly}, the same gene always lands in the same place. The job must have been pruned, see {@link DomainPruner}
+     */
+    public void placeInFirstFeasibleCell(Gene gene) {
+        ModuleDomain domain = moduleDomains.get(gene.moduleGA);
+        final int cell = domain.nextCellFrom(Math.max(timeslotGAS.indexOf(gene.timeslotGA), 0));
+        gene.venueGA = venueGAS.get(cell / domain.getNumTimeslots());
+        gene.timeslotGA = timeslotGAS.get(cell % domain.getNumTimeslots());
+    }
+
+    /**
+     * Give a gene a random timeslot, keeping its venue. If the job has been pruned, only timeslots feasible with that venue are drawn
+     */
+    public void retimeRandomly(Gene gene) {
+        ModuleDomain domain = moduleDomains == null ? null : moduleDomains.get(gene.moduleGA);
+        if (domain == null) {
+            gene.timeslotGA = getRandomTimeslot();
+            return;
+        }
+
+        Integer venueIndex = venueIndexes.get(gene.venueGA);
+        if (venueIndex != null) {
+            final int[] domainTimeslots = domain.getTimeslotIndexes();
+            for (int attempt = 0; attempt < MAX_DRAW_ATTEMPTS; ++attempt) {
+                final int timeslotIndex = domainTimeslots[random.nextInt(domainTimeslots.length)];
+                if (domain.contains(venueIndex, timeslotIndex)) {
+                    gene.timeslotGA = timeslotGAS.get(timeslotIndex);
+                    return;
+                }
+            }
+        }
+
+        // The current venue isn't feasible (or has no feasible timeslots): move the gene entirely
+        placeRandomly(gene);
+    }
+
     public ModuleGA getRandomModule() {
         return moduleGAS.get(random.nextInt(moduleGAS.size()));
     }
@@ -176,6 +331,54 @@ public class GeneticAlgorithmJobData implements Serializable {
         this.mutatedGenesMax = mutatedGenesMax;
     }
 
+    public boolean isAdaptiveRates() {
+        return isAdaptiveRates;
+    }
+
+    public void setAdaptiveRates(boolean adaptiveRates) {
+        isAdaptiveRates = adaptiveRates;
+    }
+
+    public float getAdaptiveCrossoverMin() {
+        return adaptiveCrossoverMin;
+    }
+
+    public void setAdaptiveCrossoverMin(float adaptiveCrossoverMin) {
+        this.adaptiveCrossoverMin = adaptiveCrossoverMin;
+    }
+
+    public float getAdaptiveCrossoverMax() {
+        return adaptiveCrossoverMax;
+    }
+
+    public void setAdaptiveCrossoverMax(float adaptiveCrossoverMax) {
+        this.adaptiveCrossoverMax = adaptiveCrossoverMax;
+    }
+
+    public float getAdaptiveMutateMin() {
+        return adaptiveMutateMin;
+    }
+
+    public void setAdaptiveMutateMin(float adaptiveMutateMin) {
+        this.adaptiveMutateMin = adaptiveMutateMin;
+    }
+
+    public float getAdaptiveMutateMax() {
+        return adaptiveMutateMax;
+    }
+
+    public void setAdaptiveMutateMax(float adaptiveMutateMax) {
+        this.adaptiveMutateMax = adaptiveMutateMax;
+    }
+
+    public int getAdaptiveStallWindow() {
+        return adaptiveStallWindow;
+    }
+
+    public void setAdaptiveStallWindow(int adaptiveStallWindow) {
+        this.adaptiveStallWindow = adaptiveStallWindow;
+    }
+
     public int getNumEliteSurvivors() {
         return numEliteSurvivors;
     }
@@ -184,6 +387,82 @@ public class GeneticAlgorithmJobData implements Serializable {
         this.numEliteSurvivors = numEliteSurvivors;
     }
 
+    public int getStallGenerations() {
+        return stallGenerations;
+    }
+
+    public void setStallGenerations(int stallGenerations) {
+        this.stallGenerations = stallGenerations;
+    }
+
+    public float getMinDiversity() {
+        return minDiversity;
+    }
+
+    public void setMinDiversity(float minDiversity) {
+        this.minDiversity = minDiversity;
+    }
+
+    public long getTimeBudgetMillis() {
+        return timeBudgetMillis;
+    }
+
+    public void setTimeBudgetMillis(long timeBudgetMillis) {
+        this.timeBudgetMillis = timeBudgetMillis;
+    }
+
+    public int getFitnessCacheSize() {
+        return fitnessCacheSize;
+    }
+
+    public void setFitnessCacheSize(int fitnessCacheSize) {
+        this.fitnessCacheSize = fitnessCacheSize;
+    }
+
+    public String getCheckpointDirectory() {
+        return checkpointDirectory;
+    }
+
+    public void setCheckpointDirectory(String checkpointDirectory) {
+        this.checkpointDirectory = checkpointDirectory;
+    }
+
+    public long getCheckpointIntervalMillis() {
+        return checkpointIntervalMillis;
+    }
+
+    public void setCheckpointIntervalMillis(long checkpointIntervalMillis) {
+        this.checkpointIntervalMillis = checkpointIntervalMillis;
+    }
+
+    public boolean isResuming() {
+        return isResuming;
+    }
+
+    public long getSnapshotIntervalMillis() {
+        return snapshotIntervalMillis;
+    }
+
+    public void setSnapshotIntervalMillis(long snapshotIntervalMillis) {
+        this.snapshotIntervalMillis = snapshotIntervalMillis;
+    }
+
+    public void setResuming(boolean resuming) {
+        isResuming = resuming;
+    }
+
+    public LongAdder getFitnessEvaluations() {
+        return fitnessEvaluations;
+    }
+
+    public FitnessCache getFitnessCache() {
+        return fitnessCache;
+    }
+
+    public void setFitnessCache(FitnessCache fitnessCache) {
+        this.fitnessCache = fitnessCache;
+    }
+
     public float getQueryRate() {
         return queryRate;
     }
@@ -229,6 +508,23 @@ public class GeneticAlgorithmJobData implements Serializable {
         this.scheduledModules = scheduledModules;
     }
 
+    public List<Gene> getPersistedScheduledModules() {
+        return persistedScheduledModules;
+    }
+
+    public void setPersistedScheduledModules(List<Gene> persistedScheduledModules) {
+        this.persistedScheduledModules = persistedScheduledModules;
+    }
+
+    public Map<ModuleGA, ModuleDomain> getModuleDomains() {
+        return moduleDomains;
+    }
+
+    public void setModuleDomains(Map<ModuleGA, ModuleDomain> moduleDomains, Map<VenueGA, Integer> venueIndexes) {
+        this.moduleDomains = moduleDomains;
+        this.venueIndexes = venueIndexes;
+    }
+
     public long getFitness() {
         return fitness;
     }
@@ -236,4 +532,12 @@ public class GeneticAlgorithmJobData implements Serializable {
     public void setFitness(long fitness) {
         this.fitness = fitness;
     }
+
+    public TerminationReason getTerminationReason() {
+        return terminationReason;
+    }
+
+    public void setTerminationReason(TerminationReason terminationReason) {
+        this.terminationReason = terminationReason;
+    }
 }
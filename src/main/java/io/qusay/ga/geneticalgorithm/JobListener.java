@@ -0,0 +1,51 @@
+package io.qusay.ga.geneticalgorithm;
+
+/**
+ * Everything a {@link GeneticAlgorithmJob} tells the outside world, so that the GA itself has no idea who is listening:
+ * the web app saves to the database and notifies the frontend, the command line solver just prints
+ *
+ * Only top-level jobs call these, never sub jobs. All are called from the job's own thread, so should return quickly.
+ * That includes {@link #onSolved}: the job's thread isn't free to run the next job until it returns, so any saving belongs on another thread
+ */
+public interface JobListener {
+    // Ignores everything
+    JobListener NONE = new JobListener() {
+    };
+
+    /**
+     * A time-budgeted job has estimated how it will do, see {@link GeneticAlgorithmJob#getEstimatedGenerationsInBudget()}
+     */
+    default void onEstimate(GeneticAlgorithmJob job) {
+    }
+
+    /**
+     * Called while the job is running, never once it has stopped: see {@link #onSolved} for that
+     *
+     * @param progress        [0.0f, 1.0f] How far along the job is
+     * @param fitnessEstimate Best fitness so far
+     */
+    default void onProgress(GeneticAlgorithmJob job, float progress, long fitnessEstimate) {
+    }
+
+    /**
+     * The job's best solution has improved, and it's been a while since the last snapshot. The job carries on running
+     * Called with a snapshot every {@link GeneticAlgorithmJobData#getSnapshotIntervalMillis()} at most, and never once {@link #onSolved} has been called
+     */
+    default void onBestSoFar(GeneticAlgorithmJob job, JobResult snapshot) {
+    }
+
+    /**
+     * The job has stopped running. Its best solution is in the result, and also saved into its data (see {@link GeneticAlgorithmJobData#getScheduledModules()})
+     * Once the result is saved, on whichever thread, call {@link GeneticAlgorithmJob#finish()}. By default nothing is saved, so it is called straight away
+     */
+    default void onSolved(GeneticAlgorithmJob job, JobResult result) {
+        job.finish();
+    }
+
+    /**
+     * The job has stopped because of an error, see {@link JobState#FAILED}. There is no result to save, and {@link #onSolved} will never be called
+     * Its checkpoints are already deleted: resuming it would only fail the same way again
+     */
+    default void onFailed(GeneticAlgorithmJob job, RuntimeException cause) {
+    }
+}
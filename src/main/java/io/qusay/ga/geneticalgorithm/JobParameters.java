@@ -0,0 +1,223 @@
+package io.qusay.ga.geneticalgorithm;
+
+/**
+ * Everything a caller can tune about one GA job, by name, with the defaults used for anything not given
+ *
+ * Filled in from the REST API's createJob query parameters, and from the "parameters" object of a JSON problem file (see {@link io.qusay.ga.cli.JsonProblemReader}),
+ * so both have the same names, units and defaults. Percentages are whole numbers here: {@link #applyTo} turns them into the proportions the GA uses
+ */
+public class JobParameters {
+    // FUTURE: Defaults could come from a configuration file, or better: a database config table
+    private int numGenerations = 10000;
+    private int populationSize = 60;
+    // How many "extra" generations to run after a valid (no violated hard constraints) solution has emerged
+    // Expressed in the proportion of already-ran generations. E.g. If this is 20, and 1000 generations have run when a valid solution is found, then 1000 * 0.20 = 200 more generations will run
+    private int proportionRunDownGenerations = 20;
+    // Crossover with p = 0.1
+    private int crossoverPercentage = 10;
+    // Mutate all individuals with p = 0.05 each generation
+    private int mutatePercentage = 5; // For suggested rates, see (Cekała et all 2015) and/or my lit review for suggested %
+    // Each chromosome may have between 1 and mutateGenesMax if it is mutated
+    private int mutateGenesMax = 20;
+    // Adaptive mode: crossover and mutation rates change every generation, based on diversity and improvement, within these bounds
+    // mutateGenesMax is the upper bound for how many genes are mutated. crossoverPercentage and mutatePercentage are ignored
+    private boolean adaptiveRates = false;
+    private int adaptiveCrossoverPercentageMin = 2;
+    private int adaptiveCrossoverPercentageMax = 30;
+    private int adaptiveMutatePercentageMin = 1;
+    private int adaptiveMutatePercentageMax = 30;
+    // After this many generations without improvement, adaptive rates treat the search as fully stalled, and turn mutation all the way up
+    private int adaptiveStallWindow = 100;
+    // How many of the very best in a population are guaranteed to survive
+    private int numEliteSurvivors = 2;
+    // Stop early if the best fitness hasn't improved in this many generations. 0 turns this off, so that jobs run as long as they always have unless asked to
+    private int stallGenerations = 0;
+    // Stop early if fewer than this percentage of the population are distinct. 0 turns this off
+    private int minDiversityPercentage = 0;
+    // Stop the job after this many seconds, and save the best schedule found so far. 0 means no time limit, only numGenerations
+    private int timeBudgetSeconds = 0;
+    // How many fitness results to remember, so chromosomes that reappear aren't evaluated again. 0 turns the cache off for the job
+    private int fitnessCacheSize = 65536;
+    // Share of the compute threads, relative to other running jobs. 100 is a normal share, 50 half, 200 double. Can be changed while running
+    // Only used by the web app, which shares its compute threads between jobs
+    private int computeWeightPercentage = 100;
+    // How often to send reports back to the database, in percentage of job done
+    // This is important for the frontend, since it is how often the status progress bar will update
+    private int queryRate = 1;
+
+    /**
+     * Set these parameters on a job's data, as proportions where they're percentages here
+     */
+    public void applyTo(GeneticAlgorithmJobData data) {
+        data.setNumGenerations(numGenerations);
+        data.setPopulationSize(populationSize);
+        data.setProportionRunDownGenerations(proportionRunDownGenerations / 100.0f);
+        data.setCrossoverProbability(crossoverPercentage / 100.0f);
+        data.setMutateProbability(mutatePercentage / 100.0f);
+        data.setMutatedGenesMax(mutateGenesMax);
+        data.setAdaptiveRates(adaptiveRates);
+        data.setAdaptiveCrossoverMin(adaptiveCrossoverPercentageMin / 100.0f);
+        data.setAdaptiveCrossoverMax(adaptiveCrossoverPercentageMax / 100.0f);
+        data.setAdaptiveMutateMin(adaptiveMutatePercentageMin / 100.0f);
+        data.setAdaptiveMutateMax(adaptiveMutatePercentageMax / 100.0f);
+        data.setAdaptiveStallWindow(adaptiveStallWindow);
+        data.setNumEliteSurvivors(numEliteSurvivors);
+        data.setStallGenerations(stallGenerations);
+        data.setMinDiversity(minDiversityPercentage / 100.0f);
+        data.setTimeBudgetMillis(timeBudgetSeconds * 1000L);
+        data.setFitnessCacheSize(fitnessCacheSize);
+        data.setQueryRate(queryRate / 100.0f);
+    }
+
+    public int getNumGenerations() {
+        return numGenerations;
+    }
+
+    public void setNumGenerations(int numGenerations) {
+        this.numGenerations = numGenerations;
+    }
+
+    public int getPopulationSize() {
+        return populationSize;
+    }
+
+    public void setPopulationSize(int populationSize) {
+        this.populationSize = populationSize;
+    }
+
+    public int getProportionRunDownGenerations() {
+        return proportionRunDownGenerations;
+    }
+
+    public void setProportionRunDownGenerations(int proportionRunDownGenerations) {
+        this.proportionRunDownGenerations = proportionRunDownGenerations;
+    }
+
+    public int getCrossoverPercentage() {
+        return crossoverPercentage;
+    }
+
+    public void setCrossoverPercentage(int crossoverPercentage) {
+        this.crossoverPercentage = crossoverPercentage;
+    }
+
+    public int getMutatePercentage() {
+        return mutatePercentage;
+    }
+
+    public void setMutatePercentage(int mutatePercentage) {
+        this.mutatePercentage = mutatePercentage;
+    }
+
+    public int getMutateGenesMax() {
+        return mutateGenesMax;
+    }
+
+    public void setMutateGenesMax(int mutateGenesMax) {
+        this.mutateGenesMax = mutateGenesMax;
+    }
+
+    public boolean isAdaptiveRates() {
+        return adaptiveRates;
+    }
+
+    public void setAdaptiveRates(boolean adaptiveRates) {
+        this.adaptiveRates = adaptiveRates;
+    }
+
+    public int getAdaptiveCrossoverPercentageMin() {
+        return adaptiveCrossoverPercentageMin;
+    }
+
+    public void setAdaptiveCrossoverPercentageMin(int adaptiveCrossoverPercentageMin) {
+        this.adaptiveCrossoverPercentageMin = adaptiveCrossoverPercentageMin;
+    }
+
+    public int getAdaptiveCrossoverPercentageMax() {
+        return adaptiveCrossoverPercentageMax;
+    }
+
+    public void setAdaptiveCrossoverPercentageMax(int adaptiveCrossoverPercentageMax) {
+        this.adaptiveCrossoverPercentageMax = adaptiveCrossoverPercentageMax;
+    }
+
+    public int getAdaptiveMutatePercentageMin() {
+        return adaptiveMutatePercentageMin;
+    }
+
+    public void setAdaptiveMutatePercentageMin(int adaptiveMutatePercentageMin) {
+        this.adaptiveMutatePercentageMin = adaptiveMutatePercentageMin;
+    }
+
+    public int getAdaptiveMutatePercentageMax() {
+        return adaptiveMutatePercentageMax;
+    }
+
+    public void setAdaptiveMutatePercentageMax(int adaptiveMutatePercentageMax) {
+        this.adaptiveMutatePercentageMax = adaptiveMutatePercentageMax;
+    }
+
+    public int getAdaptiveStallWindow() {
+        return adaptiveStallWindow;
+    }
+
+    public void setAdaptiveStallWindow(int adaptiveStallWindow) {
+        this.adaptiveStallWindow = adaptiveStallWindow;
+    }
+
+    public int getNumEliteSurvivors() {
+        return numEliteSurvivors;
+    }
+
+    public void setNumEliteSurvivors(int numEliteSurvivors) {
+        this.numEliteSurvivors = numEliteSurvivors;
+    }
+
+    public int getStallGenerations() {
+        return stallGenerations;
+    }
+
+    public void setStallGenerations(int stallGenerations) {
+        this.stallGenerations = stallGenerations;
+    }
+
+    public int getMinDiversityPercentage() {
+        return minDiversityPercentage;
+    }
+
+    public void setMinDiversityPercentage(int minDiversityPercentage) {
+        this.minDiversityPercentage = minDiversityPercentage;
+    }
+
+    public int getTimeBudgetSeconds() {
+        return timeBudgetSeconds;
+    }
+
+    public void setTimeBudgetSeconds(int timeBudgetSeconds) {
+        this.timeBudgetSeconds = timeBudgetSeconds;
+    }
+
+    public int getFitnessCacheSize() {
+        return fitnessCacheSize;
+    }
+
+    public void setFitnessCacheSize(int fitnessCacheSize) {
+        this.fitnessCacheSize = fitnessCacheSize;
+    }
+
+    public int getComputeWeightPercentage() {
+        return computeWeightPercentage;
+    }
+
+    public void setComputeWeightPercentage(int computeWeightPercentage) {
+        this.computeWeightPercentage = computeWeightPercentage;
+    }
+
+    public int getQueryRate() {
+        return queryRate;
+    }
+
+    public void setQueryRate(int queryRate) {
+        this.queryRate = queryRate;
+    }
+}
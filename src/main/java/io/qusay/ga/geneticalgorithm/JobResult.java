@@ -0,0 +1,123 @@
+package io.qusay.ga.geneticalgorithm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What a {@link GeneticAlgorithmJob} hands over to its {@link JobListener}: the best schedule found, and how the run went
+ * Either the final result, or a snapshot of the best so far while the job is still running
+ * Immutable, so that it can be saved on another thread while the job's own thread carries on
+ */
+public final class JobResult {
+    private final long jobId;
+    private final long scheduleId;
+
+    // The best schedule found, one gene per module. Copies, which nothing in the GA holds on to
+    private final List<Gene> scheduledModules;
+    // The schedule as it was in the database when the job started, or NULL for a new schedule. See {@link GeneticAlgorithmJobData#getPersistedScheduledModules()}
+    private final List<Gene> persistedScheduledModules;
+    private final long fitness;
+    private final boolean hasValidSolution;
+    // NULL for a snapshot, since the job is still running
+    private final TerminationReason terminationReason;
+
+    // How the run went, as of its latest generation
+    private final int finalGenerationNumber;
+    private final long runningTimeNanos;
+    private final double fitnessCacheHitRate;
+    private final float diversity;
+    private final float crossoverProbability;
+    private final float mutateProbability;
+    private final int mutatedGenesMax;
+
+    /**
+     * @param best              The best individual: its genes are copied
+     * @param terminationReason NULL for a snapshot of a job still running
+     */
+    JobResult(GeneticAlgorithmJob job, GeneticAlgorithmJobData data, Gene[] best, long fitness, boolean hasValidSolution, TerminationReason terminationReason) {
+        jobId = data.getJobId();
+        scheduleId = data.getScheduleId();
+
+        List<Gene> genes = new ArrayList<>(best.length);
+        for (Gene gene : best) {
+            genes.add(gene.clone());
+        }
+        scheduledModules = Collections.unmodifiableList(genes);
+        persistedScheduledModules = data.getPersistedScheduledModules() == null ? null : Collections.unmodifiableList(new ArrayList<>(data.getPersistedScheduledModules()));
+        this.fitness = fitness;
+        this.hasValidSolution = hasValidSolution;
+        this.terminationReason = terminationReason;
+
+        finalGenerationNumber = job.getCurrentGeneration() - 1;
+        runningTimeNanos = job.getRunningTimeNanos();
+        fitnessCacheHitRate = job.getFitnessCacheHitRate();
+        diversity = job.getDiversity();
+        crossoverProbability = job.getCurrentCrossoverProbability();
+        mutateProbability = job.getCurrentMutateProbability();
+        mutatedGenesMax = job.getCurrentMutatedGenesMax();
+    }
+
+    public long getJobId() {
+        return jobId;
+    }
+
+    public long getScheduleId() {
+        return scheduleId;
+    }
+
+    public List<Gene> getScheduledModules() {
+        return scheduledModules;
+    }
+
+    public List<Gene> getPersistedScheduledModules() {
+        return persistedScheduledModules;
+    }
+
+    public long getFitness() {
+        return fitness;
+    }
+
+    public boolean isHasValidSolution() {
+        return hasValidSolution;
+    }
+
+    public TerminationReason getTerminationReason() {
+        return terminationReason;
+    }
+
+    /**
+     * @return Whether this is only the best so far, of a job that is still running
+     */
+    public boolean isSnapshot() {
+        return terminationReason == null;
+    }
+
+    public int getFinalGenerationNumber() {
+        return finalGenerationNumber;
+    }
+
+    public long getRunningTimeNanos() {
+        return runningTimeNanos;
+    }
+
+    public double getFitnessCacheHitRate() {
+        return fitnessCacheHitRate;
+    }
+
+    public float getDiversity() {
+        return diversity;
+    }
+
+    public float getCrossoverProbability() {
+        return crossoverProbability;
+    }
+
+    public float getMutateProbability() {
+        return mutateProbability;
+    }
+
+    public int getMutatedGenesMax() {
+        return mutatedGenesMax;
+    }
+}
@@ -0,0 +1,19 @@
+package io.qusay.ga.geneticalgorithm;
+
+/**
+ * Where a {@link GeneticAlgorithmJob} is in its lifecycle
+ */
+public enum JobState {
+    // Dispatched, waiting for a free job slot
+    QUEUED,
+    // Running generations (or sub jobs)
+    RUNNING,
+    // Generations are done, the best schedule is being written back to the database
+    SAVING,
+    // Finished and written back
+    DONE,
+    // Taken out of the queue before it ever ran
+    CANCELLED,
+    // Stopped by an error (e.g. in one of its sub jobs). Nothing was written back
+    FAILED
+}
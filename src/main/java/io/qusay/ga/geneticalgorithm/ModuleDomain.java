@@ -0,0 +1,60 @@
+package io.qusay.ga.geneticalgorithm;
+
+import java.io.Serializable;
+import java.util.BitSet;
+
+/**
+ * The feasible placements of one module, as worked out by {@link DomainPruner} before a job starts
+ *
+ * Every (venue, timeslot) pair is one bit, at index venueIndex * numTimeslots + timeslotIndex
+ * The venue and timeslot indexes which appear in any feasible pair are also kept, so that a random placement can be drawn quickly
+ */
+public class ModuleDomain implements Serializable {
+    private final int numTimeslots;
+
+    private final BitSet cells;
+
+    // Indexes (into the job's venue and timeslot lists) of every venue and every timeslot that is part of some feasible pair
+    private final int[] venueIndexes;
+    private final int[] timeslotIndexes;
+
+    public ModuleDomain(int numTimeslots, BitSet cells, int[] venueIndexes, int[] timeslotIndexes) {
+        this.numTimeslots = numTimeslots;
+        this.cells = cells;
+        this.venueIndexes = venueIndexes;
+        this.timeslotIndexes = timeslotIndexes;
+    }
+
+    public boolean contains(int venueIndex, int timeslotIndex) {
+        return cells.get(venueIndex * numTimeslots + timeslotIndex);
+    }
+
+    /**
+     * @return How many (venue, timeslot) pairs this module may be placed in
+     */
+    public int size() {
+        return cells.cardinality();
+    }
+
+    /**
+     * Find the next feasible pair at or after a cell, wrapping around to the start. Used as a fallback when random draws keep missing
+     *
+     * @return A cell index, venueIndex * numTimeslots + timeslotIndex
+     */
+    public int nextCellFrom(int cell) {
+        int found = cells.nextSetBit(cell);
+        return found >= 0 ? found : cells.nextSetBit(0);
+    }
+
+    public int getNumTimeslots() {
+        return numTimeslots;
+    }
+
+    public int[] getVenueIndexes() {
+        return venueIndexes;
+    }
+
+    public int[] getTimeslotIndexes() {
+        return timeslotIndexes;
+    }
+}
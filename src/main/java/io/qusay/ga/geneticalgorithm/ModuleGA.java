@@ -7,6 +7,9 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 public class ModuleGA implements Serializable {
+    // lecturerId of a module nobody has been assigned to teach yet. Such modules never clash with each other over a lecturer
+    public static final long NO_LECTURER = -1;
+
     // Database module_id
     long id;
 
@@ -19,7 +22,7 @@ public class ModuleGA implements Serializable {
     // This is the computer lab component of a moduleGA
     boolean isLab;
 
-    // Used to find this moduleGA's lecturer's preferences for timeslots
+    // Used to find this moduleGA's lecturer's preferences for timeslots. {@link #NO_LECTURER} if it has none
     long lecturerId;
 
     // The courses that are offering this moduleGA. Used to make sure a course doesn't have modules scheduled at the same time
@@ -114,6 +117,10 @@ public class ModuleGA implements Serializable {
     }
 
     public boolean taughtByTheSameLecturer(ModuleGA that) {
-        return this.lecturerId == that.lecturerId;
+        return this.lecturerId == that.lecturerId && hasLecturer();
+    }
+
+    public boolean hasLecturer() {
+        return lecturerId != NO_LECTURER;
     }
 }
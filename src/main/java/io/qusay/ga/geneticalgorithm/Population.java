@@ -3,11 +3,15 @@ package io.qusay.ga.geneticalgorithm;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Population implements Serializable {
     private static final Random random = new Random();
@@ -20,19 +24,52 @@ public class Population implements Serializable {
 
     private List<Chromosome> individuals;
 
-    private long cachedEstimatedFitness = 0;
+    // Volatile: read by progress reports and job metrics from other threads
+    private volatile long cachedEstimatedFitness = 0;
+
+    // Proportion of distinct chromosomes (by {@link Chromosome#getHash()}) in the last selected generation, [0.0f, 1.0f]
+    private float cachedDiversity = 1.0f;
+
+    // Hashes of every individual currently in the population. Offspring with a hash already in here are exact duplicates, and are dropped before their fitness is evaluated
+    private final Set<Long> individualHashes = ConcurrentHashMap.newKeySet();
+    // How many duplicate offspring were dropped since the last selection
+    private final AtomicInteger duplicatesDropped = new AtomicInteger(0);
+    private int cachedDuplicatesDropped = 0;
+
+    // Fewest hard constraints violated by any individual in the last selected generation
+    private volatile int cachedFewestHardViolations = Integer.MAX_VALUE;
 
     public Population(GeneticAlgorithmJobData masterData, ExecutorService threadPool) {
         data = masterData;
         this.threadPool = threadPool;
         populationSize = data.getPopulationSize();
 
-        individuals = Collections.synchronizedList(new ArrayList<>(populationSize + 600));
+        individuals = new ArrayList<>(populationSize + 600);
         if (data.isModifyExistingJob()) {
             makePopulationFromExisting(data);
         } else {
             makeNewPopulation(data);
         }
+        for (Chromosome individual : individuals) {
+            individualHashes.add(individual.getHash());
+        }
+    }
+
+    /**
+     * Resume from a {@link PopulationCheckpoint}
+     *
+     * @param restored Already evaluated chromosomes, see {@link PopulationCheckpoint#restore}
+     */
+    public Population(GeneticAlgorithmJobData masterData, ExecutorService threadPool, List<Chromosome> restored) {
+        data = masterData;
+        this.threadPool = threadPool;
+        populationSize = data.getPopulationSize();
+
+        individuals = new ArrayList<>(populationSize + 600);
+        individuals.addAll(restored);
+        for (Chromosome individual : individuals) {
+            individualHashes.add(individual.getHash());
+        }
     }
 
     /**
@@ -93,15 +130,7 @@ public class Population implements Serializable {
         }
 
         // Block until all threads are done
-        try {
-            for (int i = 0; i < populationSize; ++i) {
-                individuals.add((chromosomeCreators.get(i)).get()); // Block for this thread to return its Future value
-            }
-        } catch (InterruptedException | ExecutionException e) {
-            // TODO: There's no real exception handling here. This should kill the Genetic Algorithm Job and put it in a failed state!
-            System.out.println("ERROR: While creating a new population and calculating its fitness, a threading error was thrown"); // FUTURE: Logger error
-            e.printStackTrace();
-        }
+        collect(chromosomeCreators, individuals);
     }
 
     /**
@@ -112,21 +141,73 @@ public class Population implements Serializable {
      *                          As suggested by (Cekała et al 2015), keeping the "Elite" members of the population
      *                          can speed up convergence to a solution as much as twice as fast as just plain roulette-wheel selection.
      *                          Keeping 1 elite member halved num generations to converge. 2-3 elites selected improved a good bit, and any more had diminishing returns.
+     * @param mutatedGenesMax   How many genes may change when a survivor picked more than once is mutated, so that it isn't an exact copy
+     */
+    public void select(int numEliteSurvivors, int mutatedGenesMax) {
+        // Ranking and spinning the wheel are the job's work too, so they run on its compute share rather than on the driver thread
+        final List<Chromosome> survivors = await(threadPool.submit(() -> spinRouletteWheel(numEliteSurvivors)));
+
+        // Now that it's sorted, go ahead and save the best individual
+        cachedEstimatedFitness = individuals.get(0).getCachedFitness();
+
+        // Deep clone every survivor, as each copy may be changed on its own later
+        // The wheel often lands on the same individual many times. Rather than filling the generation with identical copies, every repeat pick (other than the elite) is mutated
+        final Set<Long> nextHashes = new HashSet<>();
+        List<Future<Chromosome>> clones = new ArrayList<>(survivors.size());
+        List<Future<Chromosome>> mutants = new ArrayList<>();
+        for (int i = 0; i < survivors.size(); ++i) {
+            final Chromosome survivor = survivors.get(i);
+            if (nextHashes.add(survivor.getHash()) || i < numEliteSurvivors) {
+                clones.add(threadPool.submit(() -> new Chromosome(survivor)));
+            } else {
+                mutants.add(threadPool.submit(() -> {
+                    Chromosome mutant = survivor.mutate(mutatedGenesMax);
+                    mutant.evaluateFitness();
+                    return mutant;
+                }));
+            }
+        }
+        final List<Chromosome> nextPopulation = new ArrayList<>(populationSize);
+        collect(clones, nextPopulation);
+        for (Future<Chromosome> waiter : mutants) {
+            Chromosome mutant = await(waiter);
+            // A mutant can still land on a chromosome already picked. Drop it: the next crossover and mutation will fill the generation back up
+            if (nextHashes.add(mutant.getHash())) {
+                nextPopulation.add(mutant);
+            } else {
+                duplicatesDropped.incrementAndGet();
+            }
+        }
+
+        // Increment population to the next generation's
+        individuals = nextPopulation;
+
+        int fewestHardViolations = Integer.MAX_VALUE;
+        for (Chromosome individual : individuals) {
+            fewestHardViolations = Math.min(fewestHardViolations, individual.getHardConstraintViolations());
+        }
+        individualHashes.clear();
+        individualHashes.addAll(nextHashes);
+        cachedDiversity = (float) nextHashes.size() / individuals.size();
+        cachedFewestHardViolations = fewestHardViolations;
+        cachedDuplicatesDropped = duplicatesDropped.getAndSet(0);
+    }
+
+    /**
+     * Sorts the individuals, best first, then picks who survives into the next generation. Not cloned yet
+     *
+     * @return populationSize individuals: the elite, then the roulette wheel's picks
      */
-    public void select(int numEliteSurvivors) {
-        final List<Chromosome> nextPopulation = Collections.synchronizedList(new ArrayList<>(populationSize));
-//        final List<Chromosome> nextPopulation = new ArrayList<>(populationSize + 600);
+    private List<Chromosome> spinRouletteWheel(int numEliteSurvivors) {
+        final List<Chromosome> survivors = new ArrayList<>(populationSize);
 
         // Elite survivors: Keep population members ranked 1st, and maybe also 2nd, and 3rd
         Collections.sort(individuals);
         for (int i = 0; i < numEliteSurvivors; ++i) {
             // Get the best: the 0th, 1st, ... individuals
-            nextPopulation.add(new Chromosome(individuals.get(i)));// deep clone individual
+            survivors.add(individuals.get(i));
         }
 
-        // Now that it's sorted, go ahead and save the best individual
-        cachedEstimatedFitness = individuals.get(0).getCachedFitness();
-
         // Determine sum total of all individuals' fitness s.t. roulette wheel can select from them
         long totalFitness = 0;
         for (Chromosome individual : individuals) {
@@ -143,14 +224,12 @@ public class Population implements Serializable {
                 // Subtract this individual's fitness, so the next individual's fitness will be the closest to zero
                 randomSelected -= individual.getCachedFitness();
                 if (randomSelected < 0) {
-                    nextPopulation.add(new Chromosome(individual));// deep clone individual
+                    survivors.add(individual);
                     break;
                 }
             }
         }
-
-        // Increment population to the next generation's
-        individuals = nextPopulation;
+        return survivors;
     }
 
     /**
@@ -159,39 +238,35 @@ public class Population implements Serializable {
      * @param crossoverRate [0.0f, 1.0f] Do crossover with p = crossoverRate . Higher is more often
      */
     public void crossover(float crossoverRate) {
-        try {
-            // todo: initial size??
-            List<Future<Chromosome>> crossedOverChromosomesFutures = new ArrayList<>(populationSize * populationSize);
-
-            for (int i = 0; i < individuals.size(); ++i) {
-                for (int j = 0; j < individuals.size(); ++j) {
-                    if (i != j) {
-                        if (random.nextFloat() < crossoverRate) {
-                            final int firstIndex = i, secondIndex = j;
-                            crossedOverChromosomesFutures.add(threadPool.submit(() -> {
-                                Chromosome first = individuals.get(firstIndex);
-                                Chromosome second = individuals.get(secondIndex);
-                                Chromosome offspring = new Chromosome(first);
-                                final float whichCrossoverMethod = random.nextFloat();
-                                if (whichCrossoverMethod < 0.3333f) {
-                                    offspring.crossoverBinary(second);
-                                } else if (whichCrossoverMethod < 0.6666f) {
-                                    offspring.crossoverPiece(second);
-                                } else {
-                                    offspring.crossoverTwoPieces(second);
-                                }
-                                return offspring; // save the offspring into the population, where it may be selected to be in the next generation soon
-                            }));
-                        }
+        // todo: initial size??
+        List<Future<Chromosome>> crossedOverChromosomesFutures = new ArrayList<>(populationSize * populationSize);
+        final List<Chromosome> parents = new ArrayList<>(individuals); // Offspring are only added once every task is done, so parents are read without locking
+
+        // Only the coin flips for which pairs cross over are made here. Making and evaluating offspring runs on the job's compute share
+        for (int i = 0; i < parents.size(); ++i) {
+            for (int j = 0; j < parents.size(); ++j) {
+                if (i != j) {
+                    if (random.nextFloat() < crossoverRate) {
+                        final int firstIndex = i, secondIndex = j;
+                        crossedOverChromosomesFutures.add(threadPool.submit(() -> {
+                            Chromosome first = parents.get(firstIndex);
+                            Chromosome second = parents.get(secondIndex);
+                            Chromosome offspring = new Chromosome(first);
+                            final float whichCrossoverMethod = random.nextFloat();
+                            if (whichCrossoverMethod < 0.3333f) {
+                                offspring.crossoverBinary(second);
+                            } else if (whichCrossoverMethod < 0.6666f) {
+                                offspring.crossoverPiece(second);
+                            } else {
+                                offspring.crossoverTwoPieces(second);
+                            }
+                            return keepIfNotDuplicate(offspring); // save the offspring into the population, where it may be selected to be in the next generation soon
+                        }));
                     }
                 }
             }
-            for (Future<Chromosome> waiter : crossedOverChromosomesFutures) {
-                individuals.add(waiter.get());
-            }
-        } catch (ExecutionException | InterruptedException e) {
-            e.printStackTrace();
         }
+        collect(crossedOverChromosomesFutures, individuals);
     }
 
     /**
@@ -201,13 +276,64 @@ public class Population implements Serializable {
      */
     public void mutate(float mutateRate, int mutatedGenesMax) {
         final int currentPopulationSize = individuals.size();
+        List<Future<Chromosome>> mutantsFutures = new ArrayList<>(currentPopulationSize);
         for (int i = 0; i < currentPopulationSize; ++i) {
             if (random.nextFloat() < mutateRate) {
-                individuals.add(individuals.get(i).mutate(mutatedGenesMax));
+                // Like crossover offspring, mutants are made and evaluated on the job's compute share
+                final Chromosome parent = individuals.get(i);
+                mutantsFutures.add(threadPool.submit(() -> keepIfNotDuplicate(parent.mutate(mutatedGenesMax))));
+            }
+        }
+        collect(mutantsFutures, individuals);
+    }
+
+    /**
+     * Block until every task is done, and add the chromosomes they made. Offspring dropped as duplicates (null) are skipped
+     *
+     * @throws IllegalStateException If any task failed, so that the whole job fails rather than carrying on with part of a generation
+     */
+    private static void collect(List<Future<Chromosome>> waiters, List<Chromosome> into) {
+        for (Future<Chromosome> waiter : waiters) {
+            Chromosome made = await(waiter);
+            if (made != null) {
+                into.add(made);
             }
         }
     }
 
+    private static <T> T await(Future<T> waiter) {
+        try {
+            return waiter.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a compute task", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A compute task failed", e.getCause());
+        }
+    }
+
+    /**
+     * Only evaluate offspring which aren't an exact copy of an individual already in the population (or of other offspring)
+     *
+     * @param offspring A chromosome whose genes have changed, but whose fitness has not been recalculated
+     * @return The offspring, now with its fitness calculated, or null if it was a duplicate and should be dropped
+     */
+    private Chromosome keepIfNotDuplicate(Chromosome offspring) {
+        if (!individualHashes.add(offspring.getHash())) {
+            duplicatesDropped.incrementAndGet();
+            return null;
+        }
+        offspring.evaluateFitness();
+        return offspring;
+    }
+
+    /**
+     * @return The current individuals. Only safe to read between generations, from the thread running the job
+     */
+    public List<Chromosome> getIndividuals() {
+        return Collections.unmodifiableList(individuals);
+    }
+
     public Boolean hasValidSolution() {
         // Determine if any of the chromosomes represents a valid solution
         for (Chromosome individual : individuals) {
@@ -265,6 +391,27 @@ public class Population implements Serializable {
         return cachedEstimatedFitness;
     }
 
+    /**
+     * @return Fewest hard constraints violated by any individual after the last selection
+     */
+    public int getFewestHardViolations() {
+        return cachedFewestHardViolations;
+    }
+
+    /**
+     * @return How many offspring were dropped as exact duplicates in the generation before the last selection
+     */
+    public int getDuplicatesDropped() {
+        return cachedDuplicatesDropped;
+    }
+
+    /**
+     * @return [0.0f, 1.0f] How varied the population is after the last selection. 1.0f is every individual different
+     */
+    public float getDiversity() {
+        return cachedDiversity;
+    }
+
     /**
      * A debug method to help track down which modules don't have venues that they could POSSIBLY fit into
      */
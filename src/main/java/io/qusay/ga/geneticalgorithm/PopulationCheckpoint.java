@@ -0,0 +1,408 @@
+package io.qusay.ga.geneticalgorithm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A snapshot of a running job's population, so that the job can carry on from where it was if the server goes down
+ *
+ * Genes are stored as indexes into the job's module, venue and timeslot lists, and those lists are stored as database IDs.
+ * On resume, the job's data is loaded from the database as usual, and the IDs are used to map the indexes back onto it.
+ * The job parameters are stored too, since they only ever lived in the REST request that started the job.
+ *
+ * Random number generator state is not stored: the GA's generators are shared between threads, and drawn from in
+ * whatever order the threads run, so a resumed job can't replay the exact same run anyway
+ *
+ * Files are written to a temporary file first, then renamed over the old checkpoint, so a crash mid-write never leaves a broken checkpoint behind
+ */
+public final class PopulationCheckpoint {
+    private static final int MAGIC = 0x47414350; // "GACP"
+    private static final int VERSION = 2;
+    private static final String EXTENSION = ".ckpt";
+
+    // Job
+    private long jobId;
+    private long scheduleId;
+    private int generation;
+
+    // Job parameters
+    private int numGenerations;
+    private int populationSize;
+    private float proportionRunDownGenerations;
+    private float crossoverProbability;
+    private float mutateProbability;
+    private int mutatedGenesMax;
+    private boolean isAdaptiveRates;
+    private float adaptiveCrossoverMin;
+    private float adaptiveCrossoverMax;
+    private float adaptiveMutateMin;
+    private float adaptiveMutateMax;
+    private int adaptiveStallWindow;
+    private int numEliteSurvivors;
+    private int stallGenerations;
+    private float minDiversity;
+    private long timeBudgetMillis;
+    private int fitnessCacheSize;
+    private float queryRate;
+
+    // Database IDs of the job's modules, venues and timeslots, in list order
+    private long[] moduleIds;
+    private long[] venueIds;
+    private long[] timeslotIds;
+
+    // One row per chromosome, one column per gene: indexes into the three ID arrays
+    private int[][] moduleIndexes;
+    private int[][] venueIndexes;
+    private int[][] timeslotIndexes;
+
+    private PopulationCheckpoint() {
+    }
+
+    /**
+     * Copy a population into index arrays. Only does array work, so it is quick enough to call from the generation loop
+     *
+     * @param individuals Must not be changed by another thread while this runs
+     */
+    public static PopulationCheckpoint capture(GeneticAlgorithmJobData data, List<Chromosome> individuals, int generation) {
+        PopulationCheckpoint checkpoint = new PopulationCheckpoint();
+        checkpoint.jobId = data.getJobId();
+        checkpoint.scheduleId = data.getScheduleId();
+        checkpoint.generation = generation;
+
+        checkpoint.numGenerations = data.getNumGenerations();
+        checkpoint.populationSize = data.getPopulationSize();
+        checkpoint.proportionRunDownGenerations = data.getProportionRunDownGenerations();
+        checkpoint.crossoverProbability = data.getCrossoverProbability();
+        checkpoint.mutateProbability = data.getMutateProbability();
+        checkpoint.mutatedGenesMax = data.getMutatedGenesMax();
+        checkpoint.isAdaptiveRates = data.isAdaptiveRates();
+        checkpoint.adaptiveCrossoverMin = data.getAdaptiveCrossoverMin();
+        checkpoint.adaptiveCrossoverMax = data.getAdaptiveCrossoverMax();
+        checkpoint.adaptiveMutateMin = data.getAdaptiveMutateMin();
+        checkpoint.adaptiveMutateMax = data.getAdaptiveMutateMax();
+        checkpoint.adaptiveStallWindow = data.getAdaptiveStallWindow();
+        checkpoint.numEliteSurvivors = data.getNumEliteSurvivors();
+        checkpoint.stallGenerations = data.getStallGenerations();
+        checkpoint.minDiversity = data.getMinDiversity();
+        checkpoint.timeBudgetMillis = data.getTimeBudgetMillis();
+        checkpoint.fitnessCacheSize = data.getFitnessCacheSize();
+        checkpoint.queryRate = data.getQueryRate();
+
+        Map<ModuleGA, Integer> moduleIndex = new IdentityHashMap<>();
+        checkpoint.moduleIds = new long[data.getModules().size()];
+        for (int i = 0; i < checkpoint.moduleIds.length; ++i) {
+            checkpoint.moduleIds[i] = data.getModules().get(i).getId();
+            moduleIndex.put(data.getModules().get(i), i);
+        }
+        Map<VenueGA, Integer> venueIndex = new IdentityHashMap<>();
+        checkpoint.venueIds = new long[data.getVenues().size()];
+        for (int i = 0; i < checkpoint.venueIds.length; ++i) {
+            checkpoint.venueIds[i] = data.getVenues().get(i).getId();
+            venueIndex.put(data.getVenues().get(i), i);
+        }
+        Map<TimeslotGA, Integer> timeslotIndex = new IdentityHashMap<>();
+        checkpoint.timeslotIds = new long[data.getTimeslots().size()];
+        for (int i = 0; i < checkpoint.timeslotIds.length; ++i) {
+            checkpoint.timeslotIds[i] = data.getTimeslots().get(i).getId();
+            timeslotIndex.put(data.getTimeslots().get(i), i);
+        }
+
+        final int numChromosomes = individuals.size();
+        checkpoint.moduleIndexes = new int[numChromosomes][];
+        checkpoint.venueIndexes = new int[numChromosomes][];
+        checkpoint.timeslotIndexes = new int[numChromosomes][];
+        for (int c = 0; c < numChromosomes; ++c) {
+            Gene[] genes = individuals.get(c).getGenes();
+            int[] modules = new int[genes.length];
+            int[] venues = new int[genes.length];
+            int[] timeslots = new int[genes.length];
+            for (int g = 0; g < genes.length; ++g) {
+                modules[g] = moduleIndex.get(genes[g].getModule());
+                venues[g] = venueIndex.get(genes[g].getVenue());
+                timeslots[g] = timeslotIndex.get(genes[g].getTimeslot());
+            }
+            checkpoint.moduleIndexes[c] = modules;
+            checkpoint.venueIndexes[c] = venues;
+            checkpoint.timeslotIndexes[c] = timeslots;
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Write to a temporary file, then atomically rename it over any previous checkpoint at the same path
+     */
+    public void writeTo(Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            out.writeLong(jobId);
+            out.writeLong(scheduleId);
+            out.writeInt(generation);
+
+            out.writeInt(numGenerations);
+            out.writeInt(populationSize);
+            out.writeFloat(proportionRunDownGenerations);
+            out.writeFloat(crossoverProbability);
+            out.writeFloat(mutateProbability);
+            out.writeInt(mutatedGenesMax);
+            out.writeBoolean(isAdaptiveRates);
+            out.writeFloat(adaptiveCrossoverMin);
+            out.writeFloat(adaptiveCrossoverMax);
+            out.writeFloat(adaptiveMutateMin);
+            out.writeFloat(adaptiveMutateMax);
+            out.writeInt(adaptiveStallWindow);
+            out.writeInt(numEliteSurvivors);
+            out.writeInt(stallGenerations);
+            out.writeFloat(minDiversity);
+            out.writeLong(timeBudgetMillis);
+            out.writeInt(fitnessCacheSize);
+            out.writeFloat(queryRate);
+
+            writeLongs(out, moduleIds);
+            writeLongs(out, venueIds);
+            writeLongs(out, timeslotIds);
+
+            out.writeInt(moduleIndexes.length);
+            for (int c = 0; c < moduleIndexes.length; ++c) {
+                writeInts(out, moduleIndexes[c]);
+                writeInts(out, venueIndexes[c]);
+                writeInts(out, timeslotIndexes[c]);
+            }
+        }
+
+        try {
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * @throws IOException If the file is missing, truncated, or not a checkpoint this version understands
+     */
+    public static PopulationCheckpoint readFrom(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a checkpoint file: " + file);
+            }
+            final int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported checkpoint version " + version + ": " + file);
+            }
+
+            PopulationCheckpoint checkpoint = new PopulationCheckpoint();
+            checkpoint.jobId = in.readLong();
+            checkpoint.scheduleId = in.readLong();
+            checkpoint.generation = in.readInt();
+
+            checkpoint.numGenerations = in.readInt();
+            checkpoint.populationSize = in.readInt();
+            checkpoint.proportionRunDownGenerations = in.readFloat();
+            checkpoint.crossoverProbability = in.readFloat();
+            checkpoint.mutateProbability = in.readFloat();
+            checkpoint.mutatedGenesMax = in.readInt();
+            checkpoint.isAdaptiveRates = in.readBoolean();
+            checkpoint.adaptiveCrossoverMin = in.readFloat();
+            checkpoint.adaptiveCrossoverMax = in.readFloat();
+            checkpoint.adaptiveMutateMin = in.readFloat();
+            checkpoint.adaptiveMutateMax = in.readFloat();
+            checkpoint.adaptiveStallWindow = in.readInt();
+            checkpoint.numEliteSurvivors = in.readInt();
+            checkpoint.stallGenerations = in.readInt();
+            checkpoint.minDiversity = in.readFloat();
+            checkpoint.timeBudgetMillis = in.readLong();
+            checkpoint.fitnessCacheSize = in.readInt();
+            checkpoint.queryRate = in.readFloat();
+
+            checkpoint.moduleIds = readLongs(in);
+            checkpoint.venueIds = readLongs(in);
+            checkpoint.timeslotIds = readLongs(in);
+
+            final int numChromosomes = in.readInt();
+            checkpoint.moduleIndexes = new int[numChromosomes][];
+            checkpoint.venueIndexes = new int[numChromosomes][];
+            checkpoint.timeslotIndexes = new int[numChromosomes][];
+            for (int c = 0; c < numChromosomes; ++c) {
+                checkpoint.moduleIndexes[c] = readInts(in);
+                checkpoint.venueIndexes[c] = readInts(in);
+                checkpoint.timeslotIndexes[c] = readInts(in);
+            }
+            return checkpoint;
+        }
+    }
+
+    /**
+     * Put the job parameters this checkpoint was taken with back into (freshly loaded) job data
+     */
+    public void applyParametersTo(GeneticAlgorithmJobData data) {
+        data.setNumGenerations(numGenerations);
+        data.setPopulationSize(populationSize);
+        data.setProportionRunDownGenerations(proportionRunDownGenerations);
+        data.setCrossoverProbability(crossoverProbability);
+        data.setMutateProbability(mutateProbability);
+        data.setMutatedGenesMax(mutatedGenesMax);
+        data.setAdaptiveRates(isAdaptiveRates);
+        data.setAdaptiveCrossoverMin(adaptiveCrossoverMin);
+        data.setAdaptiveCrossoverMax(adaptiveCrossoverMax);
+        data.setAdaptiveMutateMin(adaptiveMutateMin);
+        data.setAdaptiveMutateMax(adaptiveMutateMax);
+        data.setAdaptiveStallWindow(adaptiveStallWindow);
+        data.setNumEliteSurvivors(numEliteSurvivors);
+        data.setStallGenerations(stallGenerations);
+        data.setMinDiversity(minDiversity);
+        data.setTimeBudgetMillis(timeBudgetMillis);
+        data.setFitnessCacheSize(fitnessCacheSize);
+        data.setQueryRate(queryRate);
+    }
+
+    /**
+     * Rebuild the population onto job data loaded from the database. Fitness is evaluated again, since the constraints may have changed
+     *
+     * @return The restored chromosomes, or null if the job's data no longer matches (a module, venue or timeslot has gone, or modules were added)
+     */
+    public List<Chromosome> restore(GeneticAlgorithmJobData data) {
+        if (data.getModules().size() != moduleIds.length) {
+            return null;
+        }
+        ModuleGA[] modules = new ModuleGA[moduleIds.length];
+        VenueGA[] venues = new VenueGA[venueIds.length];
+        TimeslotGA[] timeslots = new TimeslotGA[timeslotIds.length];
+        if (!lookUp(moduleIds, data.getModules(), ModuleGA::getId, modules) ||
+                !lookUp(venueIds, data.getVenues(), VenueGA::getId, venues) ||
+                !lookUp(timeslotIds, data.getTimeslots(), TimeslotGA::getId, timeslots)) {
+            return null;
+        }
+
+        List<Chromosome> chromosomes = new ArrayList<>(moduleIndexes.length);
+        for (int c = 0; c < moduleIndexes.length; ++c) {
+            List<Gene> genes = new ArrayList<>(moduleIndexes[c].length);
+            for (int g = 0; g < moduleIndexes[c].length; ++g) {
+                genes.add(new Gene(modules[moduleIndexes[c][g]], venues[venueIndexes[c][g]], timeslots[timeslotIndexes[c][g]], data));
+            }
+            chromosomes.add(new Chromosome(data, genes));
+        }
+        return chromosomes;
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    public long getJobId() {
+        return jobId;
+    }
+
+    public long getScheduleId() {
+        return scheduleId;
+    }
+
+    /**
+     * @param name E.g. "job-12" for a job, "job-12-part-3" for one of its sub jobs
+     */
+    public static Path fileFor(String directory, String name) {
+        return Path.of(directory, name + EXTENSION);
+    }
+
+    /**
+     * @return Every checkpoint file belonging to a job, including those of its sub jobs
+     */
+    public static List<Path> filesForJob(String directory, long jobId) {
+        List<Path> files = new ArrayList<>();
+        Path dir = Path.of(directory);
+        if (!Files.isDirectory(dir)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "job-" + jobId + "{" + EXTENSION + ",-part-*" + EXTENSION + "}")) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        } catch (IOException e) {
+            System.out.println("ERROR: Could not list checkpoints in " + dir); // FUTURE: Logger error
+            e.printStackTrace();
+        }
+        return files;
+    }
+
+    /**
+     * Remove every checkpoint of a job, once it has finished and been written back
+     */
+    public static void deleteForJob(String directory, long jobId) {
+        for (Path file : filesForJob(directory, jobId)) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                System.out.println("ERROR: Could not delete checkpoint " + file); // FUTURE: Logger error
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private interface IdOf<T> {
+        long id(T item);
+    }
+
+    /**
+     * Fill {@code into} with the items of {@code items} whose IDs are {@code ids}, in that order
+     *
+     * @return false if any ID has no item
+     */
+    private static <T> boolean lookUp(long[] ids, List<T> items, IdOf<T> idOf, T[] into) {
+        Map<Long, T> byId = new HashMap<>();
+        for (T item : items) {
+            byId.put(idOf.id(item), item);
+        }
+        for (int i = 0; i < ids.length; ++i) {
+            into[i] = byId.get(ids[i]);
+            if (into[i] == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeLongs(DataOutputStream out, long[] values) throws IOException {
+        out.writeInt(values.length);
+        for (long value : values) {
+            out.writeLong(value);
+        }
+    }
+
+    private static long[] readLongs(DataInputStream in) throws IOException {
+        long[] values = new long[in.readInt()];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = in.readLong();
+        }
+        return values;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+}
@@ -0,0 +1,164 @@
+package io.qusay.ga.geneticalgorithm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Pre-solve analysis: split a job into independent components before the GA starts
+ *
+ * Two modules can only ever conflict (see {@link Gene#conflictsWithTimeOrPlaceOrLecturerOf}) if they
+ * share a lecturer, share a course, or could both be placed in the same venue.
+ * Modules are linked together by those three relations, and every connected group of modules is a component.
+ * Components never interact, so each can be solved by its own {@link GeneticAlgorithmJob} in parallel,
+ * and the results merged back together afterwards
+ */
+public final class ProblemDecomposer {
+    private ProblemDecomposer() {
+    }
+
+    /**
+     * @param data The complete job
+     * @return One job data per independent component. If there is only one component, the original job data is returned as-is
+     */
+    public static List<GeneticAlgorithmJobData> decompose(GeneticAlgorithmJobData data) {
+        final List<ModuleGA> modules = data.getModules();
+        final List<VenueGA> venues = data.getVenues();
+
+        // Union-find over module indexes. Linking on "first module seen" for each key keeps this close to linear
+        final int[] parent = new int[modules.size()];
+        for (int i = 0; i < parent.length; ++i) {
+            parent[i] = i;
+        }
+
+        Map<Long, Integer> firstModuleOfLecturer = new HashMap<>();
+        Map<Long, Integer> firstModuleOfCourse = new HashMap<>();
+        for (int i = 0; i < modules.size(); ++i) {
+            ModuleGA module = modules.get(i);
+            if (module.hasLecturer()) {
+                Integer lecturerFirst = firstModuleOfLecturer.putIfAbsent(module.getLecturerId(), i);
+                if (lecturerFirst != null) {
+                    union(parent, i, lecturerFirst);
+                }
+            }
+            for (Long courseId : module.getCourseIds()) {
+                Integer courseFirst = firstModuleOfCourse.putIfAbsent(courseId, i);
+                if (courseFirst != null) {
+                    union(parent, i, courseFirst);
+                }
+            }
+        }
+
+        // Any two modules which could validly be taught in the same venue may clash over that venue
+        // Remember which module first claimed each venue, so that the venue can be handed to that module's component
+        final int[] venueClaimedBy = new int[venues.size()];
+        for (int v = 0; v < venues.size(); ++v) {
+            venueClaimedBy[v] = -1;
+            for (int i = 0; i < modules.size(); ++i) {
+                if (Gene.isValidVenueFor(modules.get(i), venues.get(v))) {
+                    if (venueClaimedBy[v] == -1) {
+                        venueClaimedBy[v] = i;
+                    } else {
+                        union(parent, i, venueClaimedBy[v]);
+                    }
+                }
+            }
+        }
+
+        // Modules which fit in no venue at all still need somewhere to be placed (though they can never be valid)
+        // Fold their components into the smallest one that has venues: they then only ever share that component's venues, so components stay independent
+        Set<Integer> rootsWithVenues = new HashSet<>();
+        for (int v = 0; v < venues.size(); ++v) {
+            if (venueClaimedBy[v] != -1) {
+                rootsWithVenues.add(find(parent, venueClaimedBy[v]));
+            }
+        }
+        if (rootsWithVenues.isEmpty()) {
+            return Collections.singletonList(data); // No module fits anywhere: nothing to split by
+        }
+        Map<Integer, Integer> componentSizes = new HashMap<>();
+        for (int i = 0; i < modules.size(); ++i) {
+            componentSizes.merge(find(parent, i), 1, Integer::sum);
+        }
+        final int smallestWithVenues = Collections.min(rootsWithVenues, Comparator.comparingInt(componentSizes::get));
+        for (int i = 0; i < modules.size(); ++i) {
+            if (!rootsWithVenues.contains(find(parent, i))) {
+                union(parent, i, smallestWithVenues);
+            }
+        }
+
+        // Group modules by component root, keeping the original module order within each component
+        Map<Integer, List<ModuleGA>> modulesByComponent = new LinkedHashMap<>();
+        for (int i = 0; i < modules.size(); ++i) {
+            modulesByComponent.computeIfAbsent(find(parent, i), key -> new ArrayList<>()).add(modules.get(i));
+        }
+
+        if (modulesByComponent.size() <= 1) {
+            return Collections.singletonList(data);
+        }
+
+        Map<Integer, List<VenueGA>> venuesByComponent = new HashMap<>();
+        for (int v = 0; v < venues.size(); ++v) {
+            if (venueClaimedBy[v] != -1) {
+                venuesByComponent.computeIfAbsent(find(parent, venueClaimedBy[v]), key -> new ArrayList<>()).add(venues.get(v));
+            }
+        }
+
+        List<GeneticAlgorithmJobData> components = new ArrayList<>(modulesByComponent.size());
+        for (Map.Entry<Integer, List<ModuleGA>> component : modulesByComponent.entrySet()) {
+            GeneticAlgorithmJobData subProblem = data.createSubProblem(component.getValue(), venuesByComponent.get(component.getKey()));
+
+            if (data.isModifyExistingJob() && data.getScheduledModules() != null) {
+                // Re-home the existing genes of this component onto the sub problem, so that mutation draws from the sub problem's venues
+                Set<ModuleGA> componentModules = new HashSet<>(component.getValue());
+                List<Gene> genes = data.getScheduledModules().stream()
+                        .filter(gene -> componentModules.contains(gene.getModule()))
+                        .map(gene -> gene.copyFor(subProblem))
+                        .collect(Collectors.toList());
+                subProblem.setScheduledModules(genes);
+
+                // A gene may sit in a venue that went to another component, where it could clash with that component's modules without either sub job seeing it.
+                // Move it into this component's venues, unless its venue is locked
+                Set<VenueGA> componentVenues = new HashSet<>(subProblem.getVenues());
+                for (Gene gene : genes) {
+                    if (!gene.isLockedVenue() && !componentVenues.contains(gene.getVenue())) {
+                        if (subProblem.getModuleDomains() == null) {
+                            DomainPruner.prune(subProblem);
+                        }
+                        subProblem.placeInFirstFeasibleCell(gene);
+                    }
+                }
+            }
+
+            components.add(subProblem);
+        }
+
+        System.out.println("Decomposed job=" + data.getJobId() + " into " + components.size() + " independent components, modules per component=" +
+                components.stream().map(item -> Integer.toString(item.getChromosomeSize())).collect(Collectors.joining(","))); // FUTURE: Logger info
+
+        return components;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]]; // Path halving
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        final int rootA = find(parent, a);
+        final int rootB = find(parent, b);
+        if (rootA != rootB) {
+            parent[rootA] = rootB;
+        }
+    }
+}
@@ -0,0 +1,541 @@
+package io.qusay.ga.geneticalgorithm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A compact, versioned binary file holding a whole problem instance: modules, venues, timeslots (with their preference tables),
+ * any existing scheduled modules (with their locks), and the job parameters
+ *
+ * The interchange format for benchmarks, offline runs and worker processes: anything that wants to run the GA without the database
+ *
+ * Layout, all little-endian:
+ *   header:  magic "GAPS", version, then the job parameters as fixed-size fields
+ *   arrays:  one after another, each an int element count followed by the elements, and padded so every array starts on an 8 byte boundary
+ * Data is stored by column (e.g. all module IDs, then all module enrolments) so every section is one primitive array.
+ * Variable-length sets and maps (a module's courses, a timeslot's lecturer preferences) are flattened: an offsets array of n + 1 entries,
+ * where item i's values are at [offsets[i], offsets[i + 1]) of a values array.
+ * Names live in one UTF-8 blob, indexed the same way.
+ * Reading memory-maps the file and bulk-copies each section into an array
+ */
+public final class ProblemSnapshot {
+    private static final int MAGIC = 0x53504147; // "GAPS" when read as little-endian bytes
+    private static final int VERSION = 2;
+
+    private static final byte LOCKED_VENUE = 1;
+    private static final byte LOCKED_TIMESLOT = 2;
+
+    private ProblemSnapshot() {
+    }
+
+    /**
+     * Save a problem instance. Written to a temporary file then renamed, so readers never see half a snapshot
+     */
+    public static void write(GeneticAlgorithmJobData data, Path file) throws IOException {
+        final List<ModuleGA> modules = data.getModules();
+        final List<VenueGA> venues = data.getVenues();
+        final List<TimeslotGA> timeslots = data.getTimeslots();
+        final List<Gene> scheduledModules = data.getScheduledModules() == null ? new ArrayList<>() : data.getScheduledModules();
+
+        Writer out = new Writer();
+
+        // Header and job parameters
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        out.putLong(data.getScheduleId());
+        out.putLong(data.getJobId());
+        out.putInt(data.isModifyExistingJob() ? 1 : 0);
+        out.putInt(data.getNumGenerations());
+        out.putInt(data.getPopulationSize());
+        out.putFloat(data.getProportionRunDownGenerations());
+        out.putFloat(data.getCrossoverProbability());
+        out.putFloat(data.getMutateProbability());
+        out.putInt(data.getMutatedGenesMax());
+        out.putInt(data.isAdaptiveRates() ? 1 : 0);
+        out.putFloat(data.getAdaptiveCrossoverMin());
+        out.putFloat(data.getAdaptiveCrossoverMax());
+        out.putFloat(data.getAdaptiveMutateMin());
+        out.putFloat(data.getAdaptiveMutateMax());
+        out.putInt(data.getAdaptiveStallWindow());
+        out.putInt(data.getNumEliteSurvivors());
+        out.putInt(data.getStallGenerations());
+        out.putFloat(data.getMinDiversity());
+        out.putLong(data.getTimeBudgetMillis());
+        out.putInt(data.getFitnessCacheSize());
+        out.putFloat(data.getQueryRate());
+
+        // Names of modules then venues
+        List<String> names = new ArrayList<>(modules.size() + venues.size());
+        modules.forEach(module -> names.add(module.getName()));
+        venues.forEach(venue -> names.add(venue.getName()));
+        writeStrings(out, names);
+
+        // Modules
+        final int numModules = modules.size();
+        long[] moduleIds = new long[numModules];
+        int[] enrolled = new int[numModules];
+        byte[] moduleIsLab = new byte[numModules];
+        long[] lecturerIds = new long[numModules];
+        List<Set<Long>> courseIds = new ArrayList<>(numModules);
+        List<Set<Long>> departmentIds = new ArrayList<>(numModules);
+        for (int i = 0; i < numModules; ++i) {
+            ModuleGA module = modules.get(i);
+            moduleIds[i] = module.getId();
+            enrolled[i] = module.getNumEnrolled();
+            moduleIsLab[i] = (byte) (module.isLab() ? 1 : 0);
+            lecturerIds[i] = module.getLecturerId();
+            courseIds.add(module.getCourseIds());
+            departmentIds.add(module.getDepartmentIds());
+        }
+        out.putLongs(moduleIds);
+        out.putInts(enrolled);
+        out.putBytes(moduleIsLab);
+        out.putLongs(lecturerIds);
+        writeSets(out, courseIds);
+        writeSets(out, departmentIds);
+
+        // Venues
+        final int numVenues = venues.size();
+        long[] venueIds = new long[numVenues];
+        byte[] venueIsLab = new byte[numVenues];
+        int[] capacities = new int[numVenues];
+        double[] locationX = new double[numVenues];
+        double[] locationY = new double[numVenues];
+        List<Map<Long, Integer>> departmentScores = new ArrayList<>(numVenues);
+        for (int i = 0; i < numVenues; ++i) {
+            VenueGA venue = venues.get(i);
+            venueIds[i] = venue.getId();
+            venueIsLab[i] = (byte) (venue.isLab() ? 1 : 0);
+            capacities[i] = venue.getCapacity();
+            locationX[i] = venue.getLocationX();
+            locationY[i] = venue.getLocationY();
+            departmentScores.add(venue.getDepartmentsScores());
+        }
+        out.putLongs(venueIds);
+        out.putBytes(venueIsLab);
+        out.putInts(capacities);
+        out.putDoubles(locationX);
+        out.putDoubles(locationY);
+        writeMaps(out, departmentScores);
+
+        // Timeslots
+        final int numTimeslots = timeslots.size();
+        long[] timeslotIds = new long[numTimeslots];
+        int[] days = new int[numTimeslots];
+        int[] times = new int[numTimeslots];
+        List<Map<Long, Integer>> lecturerPreferences = new ArrayList<>(numTimeslots);
+        for (int i = 0; i < numTimeslots; ++i) {
+            TimeslotGA timeslot = timeslots.get(i);
+            timeslotIds[i] = timeslot.getId();
+            days[i] = timeslot.getDay();
+            times[i] = timeslot.getTime();
+            lecturerPreferences.add(timeslot.getLecturerPreferences());
+        }
+        out.putLongs(timeslotIds);
+        out.putInts(days);
+        out.putInts(times);
+        writeMaps(out, lecturerPreferences);
+
+        // Scheduled modules, as indexes into the three lists above
+        Map<ModuleGA, Integer> moduleIndex = indexOf(modules);
+        Map<VenueGA, Integer> venueIndex = indexOf(venues);
+        Map<TimeslotGA, Integer> timeslotIndex = indexOf(timeslots);
+        final int numScheduled = scheduledModules.size();
+        int[] geneModules = new int[numScheduled];
+        int[] geneVenues = new int[numScheduled];
+        int[] geneTimeslots = new int[numScheduled];
+        byte[] geneLocks = new byte[numScheduled];
+        for (int i = 0; i < numScheduled; ++i) {
+            Gene gene = scheduledModules.get(i);
+            geneModules[i] = moduleIndex.get(gene.getModule());
+            geneVenues[i] = venueIndex.get(gene.getVenue());
+            geneTimeslots[i] = timeslotIndex.get(gene.getTimeslot());
+            geneLocks[i] = (byte) ((gene.isLockedVenue() ? LOCKED_VENUE : 0) | (gene.isLockedTimeslot() ? LOCKED_TIMESLOT : 0));
+        }
+        out.putInts(geneModules);
+        out.putInts(geneVenues);
+        out.putInts(geneTimeslots);
+        out.putBytes(geneLocks);
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = out.toBuffer();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        try {
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Load a problem instance, ready to be run
+     *
+     * @throws IOException If the file is missing, truncated, or not a snapshot this version understands
+     */
+    public static GeneticAlgorithmJobData read(Path file) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // Stays valid after the channel is closed
+        }
+        Reader in = new Reader(mapped);
+
+        try {
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not a problem snapshot: " + file);
+            }
+            final int version = in.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported problem snapshot version " + version + ": " + file);
+            }
+
+            GeneticAlgorithmJobData data = new GeneticAlgorithmJobData();
+            data.setScheduleId(in.getLong());
+            data.setJobId(in.getLong());
+            data.setModifyExistingJob(in.getInt() != 0);
+            data.setNumGenerations(in.getInt());
+            data.setPopulationSize(in.getInt());
+            data.setProportionRunDownGenerations(in.getFloat());
+            data.setCrossoverProbability(in.getFloat());
+            data.setMutateProbability(in.getFloat());
+            data.setMutatedGenesMax(in.getInt());
+            data.setAdaptiveRates(in.getInt() != 0);
+            data.setAdaptiveCrossoverMin(in.getFloat());
+            data.setAdaptiveCrossoverMax(in.getFloat());
+            data.setAdaptiveMutateMin(in.getFloat());
+            data.setAdaptiveMutateMax(in.getFloat());
+            data.setAdaptiveStallWindow(in.getInt());
+            data.setNumEliteSurvivors(in.getInt());
+            data.setStallGenerations(in.getInt());
+            data.setMinDiversity(in.getFloat());
+            data.setTimeBudgetMillis(in.getLong());
+            data.setFitnessCacheSize(in.getInt());
+            data.setQueryRate(in.getFloat());
+
+            String[] names = readStrings(in);
+
+            // Modules
+            long[] moduleIds = in.getLongs();
+            int[] enrolled = in.getInts();
+            byte[] moduleIsLab = in.getBytes();
+            long[] lecturerIds = in.getLongs();
+            List<HashSet<Long>> courseIds = readSets(in);
+            List<HashSet<Long>> departmentIds = readSets(in);
+            List<ModuleGA> modules = new ArrayList<>(moduleIds.length);
+            for (int i = 0; i < moduleIds.length; ++i) {
+                modules.add(new ModuleGA(moduleIds[i], names[i], enrolled[i], moduleIsLab[i] != 0, lecturerIds[i], courseIds.get(i), departmentIds.get(i)));
+            }
+
+            // Venues
+            long[] venueIds = in.getLongs();
+            byte[] venueIsLab = in.getBytes();
+            int[] capacities = in.getInts();
+            double[] locationX = in.getDoubles();
+            double[] locationY = in.getDoubles();
+            List<HashMap<Long, Integer>> departmentScores = readMaps(in);
+            List<VenueGA> venues = new ArrayList<>(venueIds.length);
+            for (int i = 0; i < venueIds.length; ++i) {
+                venues.add(new VenueGA(venueIds[i], names[moduleIds.length + i], venueIsLab[i] != 0, capacities[i], locationX[i], locationY[i], departmentScores.get(i)));
+            }
+
+            // Timeslots
+            long[] timeslotIds = in.getLongs();
+            int[] days = in.getInts();
+            int[] times = in.getInts();
+            List<HashMap<Long, Integer>> lecturerPreferences = readMaps(in);
+            List<TimeslotGA> timeslots = new ArrayList<>(timeslotIds.length);
+            for (int i = 0; i < timeslotIds.length; ++i) {
+                timeslots.add(new TimeslotGA(timeslotIds[i], days[i], times[i], lecturerPreferences.get(i)));
+            }
+
+            data.setModules(modules);
+            data.setVenues(venues);
+            data.setTimeslots(timeslots);
+
+            // Scheduled modules
+            int[] geneModules = in.getInts();
+            int[] geneVenues = in.getInts();
+            int[] geneTimeslots = in.getInts();
+            byte[] geneLocks = in.getBytes();
+            if (geneModules.length > 0) {
+                List<Gene> scheduledModules = new ArrayList<>(geneModules.length);
+                for (int i = 0; i < geneModules.length; ++i) {
+                    Gene gene = new Gene(modules.get(geneModules[i]), venues.get(geneVenues[i]), timeslots.get(geneTimeslots[i]), data);
+                    gene.setLockedVenue((geneLocks[i] & LOCKED_VENUE) != 0);
+                    gene.setLockedTimeslot((geneLocks[i] & LOCKED_TIMESLOT) != 0);
+                    scheduledModules.add(gene);
+                }
+                data.setScheduledModules(scheduledModules);
+            }
+            return data;
+        } catch (RuntimeException e) {
+            // A truncated or corrupt file shows up as a buffer underflow or a bad index
+            throw new IOException("Corrupt problem snapshot: " + file, e);
+        }
+    }
+
+    private static <T> Map<T, Integer> indexOf(List<T> items) {
+        Map<T, Integer> index = new IdentityHashMap<>(items.size());
+        for (int i = 0; i < items.size(); ++i) {
+            index.put(items.get(i), i);
+        }
+        return index;
+    }
+
+    private static void writeStrings(Writer out, List<String> strings) {
+        int[] offsets = new int[strings.size() + 1];
+        List<byte[]> encoded = new ArrayList<>(strings.size());
+        for (int i = 0; i < strings.size(); ++i) {
+            byte[] bytes = strings.get(i) == null ? new byte[0] : strings.get(i).getBytes(StandardCharsets.UTF_8);
+            encoded.add(bytes);
+            offsets[i + 1] = offsets[i] + bytes.length;
+        }
+        byte[] blob = new byte[offsets[strings.size()]];
+        for (int i = 0; i < encoded.size(); ++i) {
+            System.arraycopy(encoded.get(i), 0, blob, offsets[i], encoded.get(i).length);
+        }
+        out.putInts(offsets);
+        out.putBytes(blob);
+    }
+
+    private static String[] readStrings(Reader in) {
+        int[] offsets = in.getInts();
+        byte[] blob = in.getBytes();
+        String[] strings = new String[offsets.length - 1];
+        for (int i = 0; i < strings.length; ++i) {
+            strings[i] = new String(blob, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+
+    private static void writeSets(Writer out, List<? extends Set<Long>> sets) {
+        int[] offsets = new int[sets.size() + 1];
+        for (int i = 0; i < sets.size(); ++i) {
+            offsets[i + 1] = offsets[i] + (sets.get(i) == null ? 0 : sets.get(i).size());
+        }
+        long[] values = new long[offsets[sets.size()]];
+        for (int i = 0; i < sets.size(); ++i) {
+            if (sets.get(i) != null) {
+                int at = offsets[i];
+                for (Long value : sets.get(i)) {
+                    values[at++] = value;
+                }
+            }
+        }
+        out.putInts(offsets);
+        out.putLongs(values);
+    }
+
+    private static List<HashSet<Long>> readSets(Reader in) {
+        int[] offsets = in.getInts();
+        long[] values = in.getLongs();
+        List<HashSet<Long>> sets = new ArrayList<>(offsets.length - 1);
+        for (int i = 0; i < offsets.length - 1; ++i) {
+            HashSet<Long> set = new HashSet<>();
+            for (int v = offsets[i]; v < offsets[i + 1]; ++v) {
+                set.add(values[v]);
+            }
+            sets.add(set);
+        }
+        return sets;
+    }
+
+    private static void writeMaps(Writer out, List<Map<Long, Integer>> maps) {
+        int[] offsets = new int[maps.size() + 1];
+        for (int i = 0; i < maps.size(); ++i) {
+            offsets[i + 1] = offsets[i] + (maps.get(i) == null ? 0 : maps.get(i).size());
+        }
+        long[] keys = new long[offsets[maps.size()]];
+        int[] values = new int[offsets[maps.size()]];
+        for (int i = 0; i < maps.size(); ++i) {
+            if (maps.get(i) != null) {
+                int at = offsets[i];
+                for (Map.Entry<Long, Integer> entry : maps.get(i).entrySet()) {
+                    keys[at] = entry.getKey();
+                    values[at] = entry.getValue();
+                    ++at;
+                }
+            }
+        }
+        out.putInts(offsets);
+        out.putLongs(keys);
+        out.putInts(values);
+    }
+
+    private static List<HashMap<Long, Integer>> readMaps(Reader in) {
+        int[] offsets = in.getInts();
+        long[] keys = in.getLongs();
+        int[] values = in.getInts();
+        List<HashMap<Long, Integer>> maps = new ArrayList<>(offsets.length - 1);
+        for (int i = 0; i < offsets.length - 1; ++i) {
+            HashMap<Long, Integer> map = new HashMap<>();
+            for (int v = offsets[i]; v < offsets[i + 1]; ++v) {
+                map.put(keys[v], values[v]);
+            }
+            maps.add(map);
+        }
+        return maps;
+    }
+
+    /**
+     * Builds the file in memory. Each array is queued up, so the exact file size is known before anything is written
+     */
+    private static final class Writer {
+        private final List<Object> items = new ArrayList<>();
+        private int size;
+
+        void putInt(int value) {
+            items.add(value);
+            size += Integer.BYTES;
+        }
+
+        void putLong(long value) {
+            items.add(value);
+            size += Long.BYTES;
+        }
+
+        void putFloat(float value) {
+            items.add(value);
+            size += Float.BYTES;
+        }
+
+        void putBytes(byte[] values) {
+            addArray(values, values.length);
+        }
+
+        void putInts(int[] values) {
+            addArray(values, values.length * Integer.BYTES);
+        }
+
+        void putLongs(long[] values) {
+            addArray(values, values.length * Long.BYTES);
+        }
+
+        void putDoubles(double[] values) {
+            addArray(values, values.length * Double.BYTES);
+        }
+
+        private void addArray(Object values, int bytes) {
+            size = align(size + Integer.BYTES); // Element count, then padding
+            items.add(values);
+            size += bytes;
+        }
+
+        ByteBuffer toBuffer() {
+            ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+            for (Object item : items) {
+                if (item instanceof Integer) {
+                    buffer.putInt((Integer) item);
+                } else if (item instanceof Long) {
+                    buffer.putLong((Long) item);
+                } else if (item instanceof Float) {
+                    buffer.putFloat((Float) item);
+                } else if (item instanceof byte[]) {
+                    byte[] values = (byte[]) item;
+                    buffer.putInt(values.length).position(align(buffer.position()));
+                    buffer.put(values);
+                } else if (item instanceof int[]) {
+                    int[] values = (int[]) item;
+                    buffer.putInt(values.length).position(align(buffer.position()));
+                    buffer.asIntBuffer().put(values);
+                    buffer.position(buffer.position() + values.length * Integer.BYTES);
+                } else if (item instanceof long[]) {
+                    long[] values = (long[]) item;
+                    buffer.putInt(values.length).position(align(buffer.position()));
+                    buffer.asLongBuffer().put(values);
+                    buffer.position(buffer.position() + values.length * Long.BYTES);
+                } else if (item instanceof double[]) {
+                    double[] values = (double[]) item;
+                    buffer.putInt(values.length).position(align(buffer.position()));
+                    buffer.asDoubleBuffer().put(values);
+                    buffer.position(buffer.position() + values.length * Double.BYTES);
+                }
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    /**
+     * Reads arrays back out of the mapped file, in the order {@link Writer} wrote them
+     */
+    private static final class Reader {
+        private final ByteBuffer buffer;
+
+        Reader(ByteBuffer buffer) {
+            this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        int getInt() {
+            return buffer.getInt();
+        }
+
+        long getLong() {
+            return buffer.getLong();
+        }
+
+        float getFloat() {
+            return buffer.getFloat();
+        }
+
+        private int startArray() {
+            final int length = buffer.getInt();
+            if (length < 0) {
+                throw new IllegalStateException("Negative array length");
+            }
+            buffer.position(align(buffer.position()));
+            return length;
+        }
+
+        byte[] getBytes() {
+            byte[] values = new byte[startArray()];
+            buffer.get(values);
+            return values;
+        }
+
+        int[] getInts() {
+            int[] values = new int[startArray()];
+            buffer.asIntBuffer().get(values);
+            buffer.position(buffer.position() + values.length * Integer.BYTES);
+            return values;
+        }
+
+        long[] getLongs() {
+            long[] values = new long[startArray()];
+            buffer.asLongBuffer().get(values);
+            buffer.position(buffer.position() + values.length * Long.BYTES);
+            return values;
+        }
+
+        double[] getDoubles() {
+            double[] values = new double[startArray()];
+            buffer.asDoubleBuffer().get(values);
+            buffer.position(buffer.position() + values.length * Double.BYTES);
+            return values;
+        }
+    }
+
+    private static int align(int position) {
+        return (position + 7) & ~7;
+    }
+}
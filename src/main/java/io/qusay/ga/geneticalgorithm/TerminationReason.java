@@ -0,0 +1,19 @@
+package io.qusay.ga.geneticalgorithm;
+
+/**
+ * Why a {@link GeneticAlgorithmJob} stopped running generations
+ */
+public enum TerminationReason {
+    // Ran all numGenerations
+    GENERATION_LIMIT,
+    // Found a valid solution, ran the extra "run down" generations, and still had a valid solution
+    VALID_SOLUTION,
+    // Best fitness didn't improve for stallGenerations generations
+    FITNESS_STALLED,
+    // The population became too uniform for crossover to find anything new
+    DIVERSITY_COLLAPSED,
+    // Ran out of wall-clock time budget
+    TIME_BUDGET,
+    // Stopped through the REST API
+    STOPPED
+}
@@ -1,8 +1,10 @@
 package io.qusay.ga.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.qusay.exception.DataNotFoundException;
 import io.qusay.ga.geneticalgorithm.*;
-import io.qusay.model.Module;
 import io.qusay.services.api.JobRepository;
 import io.qusay.services.api.LecturerTimeslotPreferenceRepository;
 import io.qusay.services.api.ModuleRepository;
@@ -10,15 +12,16 @@ import io.qusay.services.api.ScheduleRepository;
 import io.qusay.services.api.ScheduledModuleRepository;
 import io.qusay.services.api.TimeslotRepository;
 import io.qusay.services.api.VenueRepository;
-import io.qusay.model.CourseModule;
-import io.qusay.model.DepartmentBuilding;
 import io.qusay.model.Job;
-import io.qusay.model.LecturerTimeslotPreference;
 import io.qusay.model.Schedule;
-import io.qusay.model.ScheduledModule;
+import org.postgresql.geometric.PGpoint;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.Tuple;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.sql.Timestamp;
@@ -30,6 +33,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Gets all information needed for a Genetic Algorithm run from the database
@@ -59,28 +63,45 @@ public class DbToGaDeserializer {
     @Autowired
     private LecturerTimeslotPreferenceRepository lecturerTimeslotPreferenceRepository;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ProblemInstanceCache problemInstanceCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     /**
      * Build up all required data structures for the genetic algorithm by getting them from the database
      *
+     * Each table is read by one set-based query that selects only the columns the GA needs, rather than loading entities and walking their relations
+     * Only the schedule's own scheduled modules are read every time: everything else comes from the {@link ProblemInstanceCache}
+     * Read-only transaction: the queries stream their rows, which needs a transaction to stay open while they're read
+     *
      * @param scheduleId The schedule_id to record to get from the database
      */
+    @Transactional(readOnly = true)
     public GeneticAlgorithmJobData generateGADataFromDatabase(Long scheduleId) throws DataNotFoundException {
         // Find Schedule in database
         Schedule schedule = scheduleRepository.findById(scheduleId).orElseThrow(DataNotFoundException::new);
 
         GeneticAlgorithmJobData data = new GeneticAlgorithmJobData();
 
-        // Get all timeslots, venues, and modules from database
-        // They are not specific to this job (i.e. do not depend on database table "schedules")
-        data.setTimeslots(generateTimeslotsFromDatabase());
-        data.setModules(generateModulesFromDatabase());
-        data.setVenues(generateVenuesFromDatabase());
+        // Get all timeslots, venues, and modules
+        // They are not specific to this job (i.e. do not depend on database table "schedules"), so are only loaded from the database when they've changed
+        ProblemInstanceCache.ProblemInstance problemInstance = getProblemInstance();
+        data.setTimeslots(problemInstance.getTimeslots());
+        data.setModules(problemInstance.getModules());
+        data.setVenues(problemInstance.getVenues());
 
         // Find existing ScheduledModules objects, which are the genes that make up each chromosomes in the GA
         if (schedule.getWip()) {
             // This job is a "work in progress", therefore scheduled_modules already exist
-            data.setScheduledModules(generateScheduledModulesFromDatabase(schedule.getScheduleId(), data));
+            data.setScheduledModules(generateScheduledModulesFromDatabase(schedule.getScheduleId(), problemInstance, data));
             data.setModifyExistingJob(true);
+            // Remember what is in the database, so that only the modules the GA moves need writing back. See {@link GaToDbSerializer}
+            data.setPersistedScheduledModules(data.getScheduledModules().stream().map(gene -> gene.copyFor(data)).collect(Collectors.toList()));
 
             if (data.getScheduledModules().size() == 0) {
                 System.out.println("ERROR For preexisting schedule (id=" + scheduleId + "), there were no scheduled modules in the database"); // FUTURE: Logger error
@@ -100,19 +121,80 @@ public class DbToGaDeserializer {
         return data;
     }
 
+    /**
+     * For a job that was lost and is being run again: start from the best-so-far snapshot it staged (see {@link GaToDbSerializer#writeSnapshot}), if it staged one
+     * Locks are kept from the schedule's own scheduled modules. What the schedule holds is still what the final result is compared against when written back
+     * A snapshot which no longer places exactly the job's modules (e.g. a module has been added or removed since) is ignored
+     *
+     * @param data Loaded by {@link #generateGADataFromDatabase} for the job's schedule
+     */
+    public void applyStagedSnapshot(Long jobId, GeneticAlgorithmJobData data) {
+        // Looked up in the job's own lists, so that the genes share their modules, venues and timeslots
+        Map<Long, ModuleGA> modulesById = data.getModules().stream().collect(Collectors.toMap(ModuleGA::getId, module -> module));
+        Map<Long, VenueGA> venuesById = data.getVenues().stream().collect(Collectors.toMap(VenueGA::getId, venue -> venue));
+        Map<Long, TimeslotGA> timeslotsById = data.getTimeslots().stream().collect(Collectors.toMap(TimeslotGA::getId, timeslot -> timeslot));
+        Map<Long, Gene> scheduledByModuleId = new HashMap<>();
+        if (data.getScheduledModules() != null) {
+            for (Gene gene : data.getScheduledModules()) {
+                scheduledByModuleId.put(gene.getModule().getId(), gene);
+            }
+        }
+
+        List<Gene> staged = new ArrayList<>();
+        Set<Long> stagedModuleIds = new HashSet<>();
+        jdbcTemplate.query("SELECT module_id, venue_id, timeslot_id FROM scheduled_module_snapshots WHERE job_id = ?", row -> {
+            final long moduleId = row.getLong("module_id");
+            ModuleGA module = modulesById.get(moduleId);
+            VenueGA venue = venuesById.get(row.getLong("venue_id"));
+            TimeslotGA timeslot = timeslotsById.get(row.getLong("timeslot_id"));
+            if (module != null && venue != null && timeslot != null) {
+                Gene gene = new Gene(module, venue, timeslot, data);
+                Gene scheduled = scheduledByModuleId.get(moduleId);
+                if (scheduled != null) {
+                    gene.setLockedVenue(scheduled.isLockedVenue());
+                    gene.setLockedTimeslot(scheduled.isLockedTimeslot());
+                }
+                staged.add(gene);
+                stagedModuleIds.add(moduleId);
+            }
+        }, jobId);
+
+        if (staged.isEmpty()) {
+            return;
+        }
+        if (staged.size() != data.getModules().size() || stagedModuleIds.size() != staged.size()) {
+            System.out.println("Staged snapshot of job=" + jobId + " no longer matches the modules in the database, ignoring it"); // FUTURE: Logger warning
+            return;
+        }
+        data.setScheduledModules(staged);
+        data.setModifyExistingJob(true);
+        System.out.println("Job=" + jobId + " starts from its staged snapshot of " + staged.size() + " scheduled modules"); // FUTURE: Logger info
+    }
+
+    /**
+     * @return All timeslots, venues and modules, from the {@link ProblemInstanceCache}, or else freshly read from the database
+     */
+    @Transactional(readOnly = true)
+    public ProblemInstanceCache.ProblemInstance getProblemInstance() {
+        return problemInstanceCache.get(this::generateProblemInstanceFromDatabase);
+    }
+
+    private ProblemInstanceCache.ProblemInstance generateProblemInstanceFromDatabase() {
+        return new ProblemInstanceCache.ProblemInstance(generateTimeslotsFromDatabase(), generateVenuesFromDatabase(), generateModulesFromDatabase());
+    }
+
     private List<TimeslotGA> generateTimeslotsFromDatabase() {
-        Iterable<io.qusay.model.Timeslot> entities = timeslotRepository.findAll();
+        // Preferences of all lecturers for all timeslots, grouped by timeslot
+        Map<Long, HashMap<Long, Integer>> preferencesByTimeslotId = new HashMap<>();
+        try (Stream<Tuple> rows = lecturerTimeslotPreferenceRepository.streamPreferenceRows()) {
+            rows.forEach(row -> preferencesByTimeslotId.computeIfAbsent(row.get("timeslotId", Long.class), id -> new HashMap<>())
+                    .put(row.get("lecturerId", Long.class), row.get("rank", Integer.class)));
+        }
 
         // Translate all those timeslotGAS into GA Timeslots objects
         List<TimeslotGA> timeslotGAS = new ArrayList<>();
-        for (io.qusay.model.Timeslot entity : entities) {
-            // Get preferences of all lecturers for this timeslot
-            List<LecturerTimeslotPreference> preferences = lecturerTimeslotPreferenceRepository.findByTimeslot_TimeslotId(entity.getTimeslotId());
-            HashMap<Long, Integer> mapPreferencesByLecturerId = new HashMap<>();
-            for (LecturerTimeslotPreference pref : preferences) {
-                mapPreferencesByLecturerId.put(pref.getLecturer().getLecturerId(), pref.getRank());
-            }
-
+        for (io.qusay.model.Timeslot entity : timeslotRepository.findAll()) { // Timeslots have no eager relations, so this is one query
+            HashMap<Long, Integer> mapPreferencesByLecturerId = preferencesByTimeslotId.getOrDefault(entity.getTimeslotId(), new HashMap<>());
             timeslotGAS.add(new TimeslotGA(entity.getTimeslotId(), entity.getDay(), entity.getTime(), mapPreferencesByLecturerId));
         }
 
@@ -120,83 +202,87 @@ public class DbToGaDeserializer {
     }
 
     private List<VenueGA> generateVenuesFromDatabase() {
-        Iterable<io.qusay.model.Venue> entities = venueRepository.findAll();
+        // Any departments which have provided a score to a building, grouped by building
+        Map<Long, HashMap<Long, Integer>> departmentsScoresByBuildingId = new HashMap<>();
+        try (Stream<Tuple> rows = venueRepository.streamDepartmentScoreRows()) {
+            rows.forEach(row -> departmentsScoresByBuildingId.computeIfAbsent(row.get("buildingId", Long.class), id -> new HashMap<>())
+                    .put(row.get("departmentId", Long.class), row.get("score", Integer.class)));
+        }
 
         // Translate all those venueGAS into GA VenueGA objects
         List<VenueGA> venueGAS = new ArrayList<>();
-        for (io.qusay.model.Venue entity : entities) {
-            // Any departments which have provided a score to the building this venue is in, find all those scores
-            HashMap<Long, Integer> departmentsScores = new HashMap<>();
-            for (DepartmentBuilding deptScoreForBuilding : entity.getBuilding().getDepartmentBuildings()) {
-                departmentsScores.put(deptScoreForBuilding.getDepartment().getDepartmentId(),
-                        deptScoreForBuilding.getScore());
-            }
-
-            venueGAS.add(new VenueGA(entity.getVenueId(), entity.getName(), entity.getLab(), entity.getCapacity(),
-                    entity.getBuilding().getLocation().x, entity.getBuilding().getLocation().y, departmentsScores));
+        try (Stream<Tuple> rows = venueRepository.streamVenueRows()) {
+            rows.forEach(row -> {
+                // Each venue gets its own copy, since the GA treats them as separate
+                HashMap<Long, Integer> departmentsScores = new HashMap<>(departmentsScoresByBuildingId.getOrDefault(row.get("buildingId", Long.class), new HashMap<>()));
+                PGpoint location = row.get("location", PGpoint.class);
+                venueGAS.add(new VenueGA(row.get("venueId", Long.class), row.get("name", String.class), Boolean.TRUE.equals(row.get("lab", Boolean.class)), row.get("capacity", Integer.class),
+                        location == null ? 0 : location.x, location == null ? 0 : location.y, departmentsScores));
+            });
         }
 
         return venueGAS;
     }
 
     private List<ModuleGA> generateModulesFromDatabase() {
-        Iterable<Module> entities = moduleRepository.findAll();
+        // Courses offering each module, and their enrolments and departments, grouped by module
+        Map<Long, HashSet<Long>> coursesByModuleId = new HashMap<>();
+        Map<Long, Set<Long>> departmentIdsByModuleId = new HashMap<>();
+        Map<Long, Integer> totalEnrolledByModuleId = new HashMap<>();
+        try (Stream<Tuple> rows = moduleRepository.streamCourseModuleRows()) {
+            rows.forEach(row -> {
+                final Long moduleId = row.get("moduleId", Long.class);
+                final Long departmentId = row.get("departmentId", Long.class);
+                // Sum size of all courses which are offering this module
+                totalEnrolledByModuleId.merge(moduleId, row.get("numEnrolled", Integer.class), Integer::sum);
+                coursesByModuleId.computeIfAbsent(moduleId, id -> new HashSet<>()).add(row.get("courseId", Long.class));
+                if (departmentId != null) {
+                    departmentIdsByModuleId.computeIfAbsent(moduleId, id -> new HashSet<>()).add(departmentId);
+                }
+            });
+        }
 
         // Translate all those moduleGAS into GA ModuleGA objects
-        int totalEnrolled;
         List<ModuleGA> moduleGAS = new ArrayList<>();
-//        // DEBUG: LIMIT TO 3 MODULES ONLY
-//        // DEBUG: disabled the following line:
-        for (Module entity : entities) {
-//        // DEBUG: Makes the job VERY QUICK
-//        Iterator<ModuleGA> itr = entities.iterator(); // DEBUG
-//        for (int i = 0; i < 5; ++i) { // DEBUG
-//            ModuleGA entity; // DEBUG
-//            if (itr.hasNext()) { // DEBUG
-//                entity = itr.next(); // DEBUG
-//            } else {   // DEBUG
-//                break; // DEBUG
-//            }          // DEBUG
-            HashSet<Long> coursesOfferingModule = new HashSet<>();
-            Set<Long> departmentIdsOfferingModule = new HashSet<>();
-
-            // Sum size of all courses which are offering this module, get courses
-            totalEnrolled = 0;
-            for (CourseModule course : entity.getCourseModules()) {
-                totalEnrolled += course.getCourse().getNumEnrolled(); // FUTURE: This could be a COMPOSITE query in SQL
-                coursesOfferingModule.add(course.getId().getCourseId());
-                departmentIdsOfferingModule.add(course.getCourse().getDepartment().getDepartmentId());
-            }
-
-            moduleGAS.add(new ModuleGA(entity.getModuleId(), entity.getName(), totalEnrolled, entity.getLab(),
-                    entity.getLecturer().getLecturerId(), coursesOfferingModule, departmentIdsOfferingModule));
+        try (Stream<Tuple> rows = moduleRepository.streamModuleRows()) {
+            rows.forEach(row -> {
+                final Long moduleId = row.get("moduleId", Long.class);
+                final Long lecturerId = row.get("lecturerId", Long.class); // Null if no lecturer has been assigned yet
+                moduleGAS.add(new ModuleGA(moduleId, row.get("name", String.class), totalEnrolledByModuleId.getOrDefault(moduleId, 0),
+                        Boolean.TRUE.equals(row.get("lab", Boolean.class)), lecturerId != null ? lecturerId : ModuleGA.NO_LECTURER,
+                        coursesByModuleId.getOrDefault(moduleId, new HashSet<>()), departmentIdsByModuleId.getOrDefault(moduleId, new HashSet<>())));
+            });
         }
 
         return moduleGAS;
     }
 
-    private List<Gene> generateScheduledModulesFromDatabase(Long scheduleId, GeneticAlgorithmJobData data) {
-        List<ScheduledModule> entities = scheduledModuleRepository.findBySchedule_ScheduleId_OrderByTimeslot_TimeslotIdAsc(scheduleId);
-
-        // Build a set of indexes of already-found modules, venues, and timeslots s.t. creating each new Gene won't be a polynomial operation (n^3 at least)
-        // Map creation from Stream is based on method from: https://stackoverflow.com/a/20363874/5271224
-        Map<Long, ModuleGA> moduleIndex = data.getModules().stream().collect(Collectors.toMap(ModuleGA::getId, moduleGA -> moduleGA));
-        Map<Long, VenueGA> venueIndex = data.getVenues().stream().collect(Collectors.toMap(VenueGA::getId, venueGA -> venueGA));
-        Map<Long, TimeslotGA> timeslotIndex = data.getTimeslots().stream().collect(Collectors.toMap(TimeslotGA::getId, timeslotGA -> timeslotGA));
-
+    /**
+     * @param problemInstance Indexes already-found modules, venues, and timeslots s.t. creating each new Gene won't be a polynomial operation (n^3 at least)
+     */
+    private List<Gene> generateScheduledModulesFromDatabase(Long scheduleId, ProblemInstanceCache.ProblemInstance problemInstance, GeneticAlgorithmJobData data) {
         List<Gene> scheduledModules = new ArrayList<>();
-        for (ScheduledModule entity : entities) {
-            scheduledModules.add(new Gene(
-                    moduleIndex.get(entity.getModule().getModuleId()),
-                    venueIndex.get(entity.getVenue().getVenueId()),
-                    timeslotIndex.get(entity.getTimeslot().getTimeslotId()),
-                    data));
+        try (Stream<Tuple> rows = scheduledModuleRepository.streamRowsBySchedule(scheduleId)) {
+            rows.forEach(row -> {
+                Gene gene = new Gene(
+                        problemInstance.getModule(row.get("moduleId", Long.class)),
+                        problemInstance.getVenue(row.get("venueId", Long.class)),
+                        problemInstance.getTimeslot(row.get("timeslotId", Long.class)),
+                        data);
+                // Locks are nullable in the database, null meaning not locked
+                gene.setLockedVenue(Boolean.TRUE.equals(row.get("lockedVenue", Boolean.class)));
+                gene.setLockedTimeslot(Boolean.TRUE.equals(row.get("lockedTimeslot", Boolean.class)));
+                scheduledModules.add(gene);
+            });
         }
 
         return scheduledModules;
     }
 
-    public Job createJobForSchedule(Long scheduleId, int numGenerations) throws DataNotFoundException, ResponseStatusException {
+    /**
+     * @param parameters Saved with the job, see {@link #readJobParameters}
+     */
+    public Job createJobForSchedule(Long scheduleId, JobParameters parameters) throws DataNotFoundException, ResponseStatusException {
         // Find Schedule in database
         Schedule schedule = scheduleRepository.findById(scheduleId).orElseThrow(DataNotFoundException::new);
 
@@ -208,7 +294,13 @@ public class DbToGaDeserializer {
         // Create Job entity
         Job job = new Job();
         job.setStartDate(new Timestamp(new Date().getTime())); // Timestamp to now
-        job.setTotalGenerations(numGenerations);
+        job.setTotalGenerations(parameters.getNumGenerations());
+        try {
+            job.setParameters(objectMapper.writeValueAsString(parameters));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not write the parameters of a job for schedule=" + scheduleId, e);
+        }
+        job.setComputeWeightPercentage(parameters.getComputeWeightPercentage());
         // current_generation is being left as NULL (until the job has already been running)
         job.setSchedule(schedule);
         jobRepository.save(job);
@@ -219,4 +311,26 @@ public class DbToGaDeserializer {
 
         return job;
     }
+
+    /**
+     * @return The parameters a job was dispatched with, and its latest compute weight. Defaults for anything not saved,
+     * e.g. for jobs from before parameters were saved, or parameters which have since been added
+     */
+    public JobParameters readJobParameters(Job job) {
+        JobParameters parameters = new JobParameters();
+        if (job.getParameters() != null) {
+            try {
+                parameters = objectMapper.readerFor(JobParameters.class).without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES).readValue(job.getParameters());
+            } catch (JsonProcessingException e) {
+                System.out.println("ERROR: Could not read the parameters of job=" + job.getJobId() + ", using the defaults"); // FUTURE: Logger error
+                e.printStackTrace();
+            }
+        } else if (job.getTotalGenerations() != null) {
+            parameters.setNumGenerations(job.getTotalGenerations());
+        }
+        if (job.getComputeWeightPercentage() != null) {
+            parameters.setComputeWeightPercentage(job.getComputeWeightPercentage());
+        }
+        return parameters;
+    }
 }
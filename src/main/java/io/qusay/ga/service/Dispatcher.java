@@ -2,19 +2,35 @@ package io.qusay.ga.service;
 
 import io.qusay.exception.DataNotFoundException;
 import io.qusay.ga.geneticalgorithm.GeneticAlgorithmJobData;
+import io.qusay.ga.geneticalgorithm.JobParameters;
+import io.qusay.ga.geneticalgorithm.PopulationCheckpoint;
 import io.qusay.services.api.JobRepository;
 import io.qusay.model.Job;
+import io.qusay.model.JobMetricsDto;
+import io.qusay.model.Schedule;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.sql.Timestamp;
-import java.util.Date;
-import java.util.HashMap;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Dispatch genetic algorithm jobs
@@ -25,93 +41,297 @@ public class Dispatcher {
     @Autowired
     private DbToGaDeserializer dbToGaDeserializer;
 
+    @Autowired
+    private GaToDbSerializer gaToDbSerializer;
+
     @Autowired
     private JobRepository jobRepository;
 
-    // An in-memory datastore of current jobs, saved such that they can be queried or stopped later
-    // Why is in-memory is acceptable, don't need to go to database? If the server crashes, the job is lost anyway!
-    private static final HashMap<Long, GeneticAlgorithmRunner> runningJobHandles = new HashMap<>();
+    @Autowired
+    private SimpMessagingTemplate websocket;
+
+    // Every current job, such that they can be queried or stopped later
+    @Autowired
+    private JobRegistry jobRegistry;
+    // Schedules that a job is being dispatched for right now, see {@link #dispatchNewJobForSchedule}
+    private final Set<Long> dispatchingSchedules = ConcurrentHashMap.newKeySet();
+
+    // How many jobs may run at once. Any more wait in a FIFO queue, in the order they were dispatched
+    @Value("${ga.jobs.max-concurrent:2}")
+    private int maxConcurrentJobs;
+    // How many jobs may wait in the queue. Any more are turned away (HTTP 503), rather than piling up work that will never finish
+    @Value("${ga.jobs.max-queued:20}")
+    private int maxQueuedJobs;
+    // Threads for CPU-bound GA work (fitness, crossover). 0 means one per core
+    @Value("${ga.compute.threads:0}")
+    private int computeThreads;
+    // Where running jobs save their population, so they can be resumed after a restart. See {@link PopulationCheckpoint}
+    @Value("${ga.checkpoint.dir:checkpoints}")
+    private String checkpointDirectory;
+    // How often each job saves a checkpoint, in seconds. 0 turns checkpoints off
+    @Value("${ga.checkpoint.interval-seconds:60}")
+    private int checkpointIntervalSeconds;
+    // How often each job writes its best schedule so far into the database, in seconds, if it has improved. 0 to only write the final result
+    @Value("${ga.jobs.snapshot-interval-seconds:60}")
+    private int snapshotIntervalSeconds;
+    // A job isn't reported to the frontend as done until at least this long after it started running, in milliseconds. The frontend loses track of jobs that finish faster
+    // Only the report waits: the result is saved straight away. 0 to report at once
+    @Value("${ga.jobs.min-reported-running-ms:10000}")
+    private long minReportedRunningMillis;
 
-    // A thread pool to spawn dispatched worker tasks from
-    // Those tasks are also allowed to spawn tasks from the thread pool
-    private static final ExecutorService threadPool = Executors.newCachedThreadPool(); // CachedPool can: Makes new threads as need. After terminating, keeps threads available for reuse (for 60 seconds)
-    // DEBUG: There might be more justification for FixedThreadPool, maybe of 20 or so available threads
-    // DEBUG: the queue thing turned me off, but then I realised that having a queue is still better than calculating fitness synchronously
+    // Runs each job's driver thread (the generation loop, database write back). One thread per running job; the queue holds the rest
+    private ThreadPoolExecutor jobExecutor;
+    // Shared by all running jobs for their parallel subtasks. Fixed size, so that many concurrent jobs share the cores rather than thrash them
+    // Each job gets its own weighted share of it, so a huge job can't starve small ones
+    // Only ever given short tasks that never wait on other tasks in this pool, so it cannot deadlock
+    private FairShareExecutor computePool;
+    // Driver threads for the sub jobs of a decomposed job (see {@link io.qusay.ga.geneticalgorithm.ProblemDecomposer})
+    // Separate from jobExecutor, since a running job waiting on sub jobs queued behind it would never finish
+    private ExecutorService subJobPool;
+    // Saves each job's result and notifies the frontend, on its own thread so that job threads never wait on the database. Shared by all jobs
+    private ScheduleJobListener jobListener;
+
+    @PostConstruct
+    private void createThreadPools() {
+        jobListener = new ScheduleJobListener(gaToDbSerializer, websocket, this, minReportedRunningMillis);
+        jobExecutor = new ThreadPoolExecutor(maxConcurrentJobs, maxConcurrentJobs, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                OrchestrationThreads.factory("ga-job"));
+        computePool = new FairShareExecutor(computeThreads > 0 ? computeThreads : Runtime.getRuntime().availableProcessors(), "ga-compute");
+        subJobPool = Executors.newCachedThreadPool(OrchestrationThreads.factory("ga-subjob")); // Sub job drivers mostly wait on the compute pool, so letting these grow is cheap
+        System.out.println("GA jobs: " + maxConcurrentJobs + " concurrent, " + computePool.getNumThreads() + " compute threads"); // FUTURE: Logger info
+    }
+
+    @PreDestroy
+    private void shutdownThreadPools() {
+        jobExecutor.shutdownNow();
+        subJobPool.shutdownNow();
+        computePool.shutdownNow();
+        jobListener.shutdown();
+    }
 
     /**
      * Creates a dynamic GA job based on the static Schedule database record
      *
      * @param scheduleId Database record to fetch
+     * @param parameters How to run the job
      * @return The created Job's data
      */
-    public Job dispatchNewJobForSchedule(Long scheduleId, int numGenerations, int populationSize, int proportionRunDownGenerations, int crossoverPercentage, int mutatePercentage, int mutateGenesMax, int numEliteSurvivors, int queryRate) throws DataNotFoundException, ResponseStatusException {
-        // Save the to the database that we are starting a new job. Throws HTTP errors if such a job is already running
-        Job job = dbToGaDeserializer.createJobForSchedule(scheduleId, numGenerations);
+    public Job dispatchNewJobForSchedule(Long scheduleId, JobParameters parameters) throws DataNotFoundException, ResponseStatusException {
+        // Admission control: check before anything is written to the database. Checked again once the job is ready to start
+        if (isQueueFull()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many jobs are waiting to run (" + maxQueuedJobs + "), try again later");
+        }
+
+        if (parameters.getComputeWeightPercentage() <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "computeWeightPercentage must be positive");
+        }
+
+        // Loading the job's data can be slow, so it isn't done under a lock. Instead, two requests for the same schedule are kept from racing each other here
+        if (!dispatchingSchedules.add(scheduleId)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "A Job for that Schedule is already being started");
+        }
+        try {
+            // Save the to the database that we are starting a new job. Throws HTTP errors if such a job is already running
+            Job job = dbToGaDeserializer.createJobForSchedule(scheduleId, parameters);
+            try {
+                GeneticAlgorithmJobData geneticAlgorithmJobData = loadJobData(scheduleId, job, parameters);
+                synchronized (this) {
+                    if (isQueueFull()) {
+                        throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many jobs are waiting to run (" + maxQueuedJobs + "), try again later");
+                    }
+                    startJob(job, geneticAlgorithmJobData, parameters.getComputeWeightPercentage());
+                }
+            } catch (RuntimeException e) {
+                // The job will never run: don't leave its schedule looking busy
+                gaToDbSerializer.deleteJobForSchedule(scheduleId);
+                throw e;
+            }
+            return job;
+        } finally {
+            dispatchingSchedules.remove(scheduleId);
+        }
+    }
+
+    private boolean isQueueFull() {
+        return jobExecutor.getQueue().size() >= maxQueuedJobs;
+    }
 
-        // Get all the data the job will need from the database
+    /**
+     * Get all the data a new job will need from the database, and set its parameters
+     */
+    private GeneticAlgorithmJobData loadJobData(Long scheduleId, Job job, JobParameters parameters) throws DataNotFoundException {
         GeneticAlgorithmJobData geneticAlgorithmJobData = dbToGaDeserializer.generateGADataFromDatabase(scheduleId);
         geneticAlgorithmJobData.setScheduleId(scheduleId);
         geneticAlgorithmJobData.setJobId(job.getJobId());
-        geneticAlgorithmJobData.setNumGenerations(numGenerations);
-        geneticAlgorithmJobData.setPopulationSize(populationSize);
-        geneticAlgorithmJobData.setProportionRunDownGenerations(proportionRunDownGenerations / 100.0f);
-        geneticAlgorithmJobData.setCrossoverProbability(crossoverPercentage / 100.0f);
-        geneticAlgorithmJobData.setMutateProbability(mutatePercentage / 100.0f);
-        geneticAlgorithmJobData.setMutatedGenesMax(mutateGenesMax);
-        geneticAlgorithmJobData.setNumEliteSurvivors(numEliteSurvivors);
-        geneticAlgorithmJobData.setQueryRate(queryRate / 100.0f);
-
-        // Start the job!
-        GeneticAlgorithmRunner jobRunner = new GeneticAlgorithmRunner(geneticAlgorithmJobData, threadPool);
+        parameters.applyTo(geneticAlgorithmJobData);
+        return geneticAlgorithmJobData;
+    }
+
+    /**
+     * Register a job and start it running (or queue it, if enough jobs are running already)
+     */
+    private void startJob(Job job, GeneticAlgorithmJobData geneticAlgorithmJobData, int computeWeightPercentage) {
+        if (checkpointIntervalSeconds > 0) {
+            geneticAlgorithmJobData.setCheckpointDirectory(checkpointDirectory);
+            geneticAlgorithmJobData.setCheckpointIntervalMillis(checkpointIntervalSeconds * 1000L);
+        }
+        geneticAlgorithmJobData.setSnapshotIntervalMillis(snapshotIntervalSeconds * 1000L);
+
+        // Save a handle to the job in the in-memory datastore, before it can possibly finish
+        FairShareExecutor.Share computeShare = computePool.createShare("job-" + job.getJobId(), computeWeightPercentage / 100.0);
+        GeneticAlgorithmRunner jobRunner = new GeneticAlgorithmRunner(geneticAlgorithmJobData, job, jobExecutor, computeShare, subJobPool, jobListener);
+        jobRegistry.register(geneticAlgorithmJobData.getJobId(), jobRunner);
+
+        // Start the job! Or queue it, if enough jobs are running already
         jobRunner.start();
+        job.setQueuePosition(jobRunner.getQueuePosition());
+        if (job.getQueuePosition() > 0) {
+            System.out.println("Queued job=" + job.getJobId() + " at position " + job.getQueuePosition() + ", " + jobExecutor.getActiveCount() + " jobs running"); // FUTURE: Logger info
+        }
+    }
+
+    /**
+     * After a restart, every row left in the jobs table belongs to a job that died with the old server: it was either running or queued
+     * Jobs with a checkpoint resume from it. The others are queued again from the start, with the parameters saved in their row
+     * Either way, a job starts from the best-so-far snapshot it staged, if it staged one
+     * Both keep their compute weight. Done in job ID order, so that queued jobs keep their place in the queue
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void resumeOrphanedJobs() {
+        for (Job job : jobRepository.findAll(Sort.by("jobId"))) {
+            if (jobRegistry.get(job.getJobId()) != null) {
+                continue;
+            }
+            Schedule schedule = job.getSchedule();
+            if (schedule == null) {
+                System.out.println("Orphaned job=" + job.getJobId() + " has no schedule, leaving it alone"); // FUTURE: Logger warning
+                continue;
+            }
 
-        // Save a handle to the job in the in-memory datastore
-        runningJobHandles.put(geneticAlgorithmJobData.getJobId(), jobRunner);
+            PopulationCheckpoint checkpoint = null;
+            if (checkpointIntervalSeconds > 0) {
+                for (Path file : PopulationCheckpoint.filesForJob(checkpointDirectory, job.getJobId())) {
+                    try {
+                        checkpoint = PopulationCheckpoint.readFrom(file); // Every part of a job holds the same parameters, so any one will do
+                        break;
+                    } catch (IOException e) {
+                        System.out.println("ERROR: Could not read checkpoint " + file); // FUTURE: Logger error
+                        e.printStackTrace();
+                    }
+                }
+            }
 
-        return job;
+            try {
+                JobParameters parameters = dbToGaDeserializer.readJobParameters(job);
+                GeneticAlgorithmJobData geneticAlgorithmJobData = loadJobData(schedule.getScheduleId(), job, parameters);
+                // Whether or not it has a checkpoint, its best schedule so far may have been staged after the last one
+                dbToGaDeserializer.applyStagedSnapshot(job.getJobId(), geneticAlgorithmJobData);
+                if (checkpoint != null) {
+                    checkpoint.applyParametersTo(geneticAlgorithmJobData);
+                    geneticAlgorithmJobData.setResuming(true);
+                    System.out.println("Resuming orphaned job=" + job.getJobId() + " from generation " + checkpoint.getGeneration() + ", schedule=" + schedule.getScheduleId()); // FUTURE: Logger info
+                } else {
+                    // Never started, or no usable checkpoint: run it again from the start. Leftovers must not be mistaken for its checkpoints later
+                    PopulationCheckpoint.deleteForJob(checkpointDirectory, job.getJobId());
+                    System.out.println("Queueing orphaned job=" + job.getJobId() + " again from the start, schedule=" + schedule.getScheduleId()); // FUTURE: Logger info
+                }
+                startJob(job, geneticAlgorithmJobData, parameters.getComputeWeightPercentage());
+            } catch (RuntimeException e) {
+                // One broken job must not stop the others from resuming, nor the server from starting. Clean it up, so its schedule can be run again
+                System.out.println("ERROR: Could not resume job=" + job.getJobId() + ", cleaning it up, schedule=" + schedule.getScheduleId()); // FUTURE: Logger error
+                e.printStackTrace();
+                jobCompleted(job.getJobId());
+                PopulationCheckpoint.deleteForJob(checkpointDirectory, job.getJobId());
+                gaToDbSerializer.deleteJobForSchedule(schedule.getScheduleId());
+            }
+        }
     }
 
     /**
-     * A job has completed. Removed it from the datastore
+     * A job has completed. Removed it from the registry
      *
      * @param jobId The database ID of the job to remove
      */
     public void jobCompleted(Long jobId) {
-        runningJobHandles.remove(jobId);
+        GeneticAlgorithmRunner jobHandle = jobRegistry.remove(jobId);
+        if (jobHandle != null) {
+            jobHandle.releaseComputeShare();
+        }
     }
 
     /**
-     * Ask the running Job thread for the current generation number it is on
-     * It will also write this information into the database for this job
+     * Live metrics for a queued or running job, straight from memory
+     *
+     * @param jobId Database job_id
+     * @return Metrics, which will be serialized to JSON
+     */
+    public JobMetricsDto getMetricsForJob(Long jobId) {
+        JobMetricsDto metrics = jobRegistry.getMetrics(jobId);
+        if (metrics == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No handle to job with that ID exists to get its metrics", new DataNotFoundException());
+        }
+        return metrics;
+    }
+
+    /**
+     * @return Live metrics for every queued or running job
+     */
+    public List<JobMetricsDto> listJobMetrics() {
+        return jobRegistry.listMetrics();
+    }
+
+    /**
+     * Throttle or boost a job at runtime: change its share of the compute pool, relative to other running jobs
+     *
+     * @param jobId                   Database job_id to change
+     * @param computeWeightPercentage 100 is a normal share, 50 half that, 200 double
+     */
+    public void setComputeWeightForJob(Long jobId, int computeWeightPercentage) {
+        if (computeWeightPercentage <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "computeWeightPercentage must be positive");
+        }
+        GeneticAlgorithmRunner jobHandle = jobRegistry.get(jobId);
+        if (jobHandle != null) {
+            jobHandle.setComputeWeight(computeWeightPercentage / 100.0);
+            jobRepository.updateComputeWeight(jobId, computeWeightPercentage); // So that the job keeps it if it is resumed after a restart
+            System.out.println("Compute weight of job=" + jobId + " set to " + computeWeightPercentage + "%"); // FUTURE: Logger info
+        } else {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No handle to job with that ID exists to change its compute weight", new DataNotFoundException());
+        }
+    }
+
+    /**
+     * Ask the running Job thread for the current generation number it is on, or where it is in the queue if it hasn't started yet
      *
      * @param jobId
      * @return A {@link Job}, which will be serialized to JSON
      */
     public Job getStatusForJob(Long jobId) {
-        GeneticAlgorithmRunner jobHandle = runningJobHandles.get(jobId);
+        GeneticAlgorithmRunner jobHandle = jobRegistry.get(jobId);
         if (jobHandle != null) {
-            Job job = jobRepository.findById(jobId).orElseThrow(DataNotFoundException::new);
-
             // Query task runner, which uses an Atomic variable to query the running thread
-            job.setCurrentGeneration(jobHandle.getCurrentGeneration());
-            job.setLastStatusUpdateTime(new Timestamp(new Date().getTime())); // Timestamp of now
-            jobRepository.save(job);
-
-            return job;
+            // Served from memory: polling costs nothing on the database. {@link JobProgressWriter} saves progress every few seconds instead
+            return jobHandle.getStatus();
         } else {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No handle to job with that ID exists to check its status", new DataNotFoundException());
         }
     }
 
     /**
-     * This method should stop the Job thread, and then write its results to the DB
+     * This method should stop the Job thread (or take it out of the queue, if it hasn't started yet), and then write its results to the DB
      *
      * @param jobId Database job_id to stop
      */
     public void stopJob(Long jobId) {
-        GeneticAlgorithmRunner jobHandle = runningJobHandles.get(jobId);
+        GeneticAlgorithmRunner jobHandle = jobRegistry.get(jobId);
         if (jobHandle != null) {
-            jobHandle.stop();
+            if (jobHandle.cancelIfQueued()) {
+                // Never started, so there are no results to write back. Just clean up
+                jobCompleted(jobId);
+                gaToDbSerializer.deleteJobForSchedule(jobHandle.getScheduleId());
+            } else {
+                jobHandle.stop();
+            }
         } else {
             throw new ResponseStatusException(HttpStatus.NO_CONTENT, "No handle to job with that ID exists to be deleted", new DataNotFoundException());
         }
@@ -0,0 +1,283 @@
+package io.qusay.ga.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A fixed set of worker threads, shared fairly between GA jobs
+ *
+ * Each job submits its parallel subtasks to its own {@link Share}. Idle workers always take the next task from the share which has
+ * used the least CPU time so far, relative to its weight (stride scheduling, see: https://en.wikipedia.org/wiki/Stride_scheduling).
+ * So a job with a huge population can't starve a small one just by having more tasks queued: with equal weights, both get the same worker time.
+ * A share with weight 2 gets twice the worker time of one with weight 1, whenever both have work waiting.
+ *
+ * A share which has been idle doesn't bank credit: when it gets work again, it starts level with the busiest shares
+ */
+public class FairShareExecutor {
+    // Guards everything below, and is waited on by idle workers
+    private final Object lock = new Object();
+    private final List<Share> shares = new ArrayList<>();
+    private final List<Thread> workers;
+    private boolean isShutdown;
+
+    // Before a task has been timed, assume it takes this long. Corrected once it finishes
+    private static final long INITIAL_TASK_ESTIMATE_NANOS = 100_000;
+
+    public FairShareExecutor(int numThreads, String name) {
+        List<Thread> threads = new ArrayList<>(numThreads);
+        for (int i = 0; i < numThreads; ++i) {
+            Thread worker = new Thread(this::work, name + "-" + i);
+            worker.setDaemon(true);
+            threads.add(worker);
+            worker.start();
+        }
+        workers = Collections.unmodifiableList(threads);
+    }
+
+    /**
+     * @param name   Only for logging
+     * @param weight Relative share of worker time, compared to other shares with work waiting. Must be positive
+     * @return A new executor, for one job's subtasks. Shut it down when the job ends
+     */
+    public Share createShare(String name, double weight) {
+        Share share = new Share(name, weight);
+        synchronized (lock) {
+            if (isShutdown) {
+                throw new RejectedExecutionException("Executor has been shut down");
+            }
+            share.virtualTime = minimumVirtualTime();
+            shares.add(share);
+        }
+        return share;
+    }
+
+    public void shutdownNow() {
+        synchronized (lock) {
+            isShutdown = true;
+            shares.clear();
+            lock.notifyAll();
+        }
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    public int getNumThreads() {
+        return workers.size();
+    }
+
+    /**
+     * A worker thread's loop: pick the share that is furthest behind, run one of its tasks, charge the share for the time taken
+     */
+    private void work() {
+        while (true) {
+            Share share;
+            Runnable task;
+            long charged;
+            synchronized (lock) {
+                share = null;
+                while (!isShutdown && (share = nextShare()) == null) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (isShutdown) {
+                    return;
+                }
+                task = share.tasks.poll();
+                // Charge up front with an estimate, so that other workers picking at the same time see this share as busier
+                charged = share.averageTaskNanos;
+                share.virtualTime += charged / share.weight;
+                ++share.running;
+            }
+
+            final long start = System.nanoTime();
+            try {
+                task.run();
+            } catch (Throwable e) {
+                // Tasks from submit() hand whatever they throw, Errors included, to their Future. Anything else reaching here is only logged:
+                // it must not kill the worker, or the pool would shrink for good. Errors too, e.g. a StackOverflowError from one deep task
+                System.out.println("ERROR: Task failed in share " + share.name); // FUTURE: Logger error
+                e.printStackTrace();
+                if (task instanceof Future && !((Future<?>) task).isDone()) {
+                    ((Future<?>) task).cancel(false); // Don't leave anyone waiting on it forever
+                }
+            }
+            final long taken = System.nanoTime() - start;
+
+            synchronized (lock) {
+                share.virtualTime += (taken - charged) / share.weight;
+                share.averageTaskNanos += (taken - share.averageTaskNanos) / 8; // Moving average
+                --share.running;
+                share.cpuNanos += taken;
+                if (share.isShutdown && share.running == 0 && share.tasks.isEmpty()) {
+                    shares.remove(share);
+                    lock.notifyAll(); // Wake anyone in awaitTermination()
+                }
+            }
+        }
+    }
+
+    /**
+     * Must hold the lock
+     *
+     * @return The share with work waiting which has used the least weighted time, or null if nothing is waiting
+     */
+    private Share nextShare() {
+        Share next = null;
+        for (Share share : shares) {
+            if (!share.tasks.isEmpty() && (next == null || share.virtualTime < next.virtualTime)) {
+                next = share;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Must hold the lock
+     *
+     * @return The lowest virtual time of any share that is busy (has tasks waiting or running), or 0 if none are
+     */
+    private double minimumVirtualTime() {
+        double minimum = Double.MAX_VALUE;
+        for (Share share : shares) {
+            if (!share.tasks.isEmpty() || share.running > 0) {
+                minimum = Math.min(minimum, share.virtualTime);
+            }
+        }
+        return minimum == Double.MAX_VALUE ? 0 : minimum;
+    }
+
+    /**
+     * One job's view of the shared workers
+     */
+    public class Share extends AbstractExecutorService {
+        private final String name;
+
+        // All guarded by the outer lock
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private double weight;
+        // Worker time used, in nanoseconds, divided by weight
+        private double virtualTime;
+        private long averageTaskNanos = INITIAL_TASK_ESTIMATE_NANOS;
+        private int running;
+        private long cpuNanos;
+        private boolean isShutdown;
+
+        private Share(String name, double weight) {
+            this.name = name;
+            setWeight(weight);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            synchronized (lock) {
+                if (isShutdown) {
+                    throw new RejectedExecutionException("Share " + name + " has been shut down");
+                }
+                if (tasks.isEmpty() && running == 0) {
+                    // Waking up after being idle: no credit for the time spent idle
+                    virtualTime = Math.max(virtualTime, minimumVirtualTime());
+                }
+                tasks.add(command);
+                lock.notify();
+            }
+        }
+
+        /**
+         * Throttle (below 1) or boost (above 1) this share, relative to the others. Takes effect from the next task
+         */
+        public void setWeight(double weight) {
+            if (!(weight > 0)) {
+                throw new IllegalArgumentException("Weight must be positive: " + weight);
+            }
+            synchronized (lock) {
+                this.weight = weight;
+            }
+        }
+
+        public double getWeight() {
+            synchronized (lock) {
+                return weight;
+            }
+        }
+
+        /**
+         * @return Total worker time this share has used, in nanoseconds
+         */
+        public long getCpuNanos() {
+            synchronized (lock) {
+                return cpuNanos;
+            }
+        }
+
+        /**
+         * Stop accepting tasks. Tasks already submitted still run
+         */
+        @Override
+        public void shutdown() {
+            synchronized (lock) {
+                isShutdown = true;
+                if (tasks.isEmpty() && running == 0) {
+                    shares.remove(this);
+                }
+            }
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            synchronized (lock) {
+                isShutdown = true;
+                List<Runnable> notRun = new ArrayList<>(tasks);
+                tasks.clear();
+                shares.remove(this);
+                return notRun;
+            }
+        }
+
+        @Override
+        public boolean isShutdown() {
+            synchronized (lock) {
+                return isShutdown;
+            }
+        }
+
+        @Override
+        public boolean isTerminated() {
+            synchronized (lock) {
+                return isShutdown && tasks.isEmpty() && running == 0;
+            }
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            final long deadline = System.nanoTime() + unit.toNanos(timeout);
+            synchronized (lock) {
+                while (!isTerminated()) {
+                    final long left = deadline - System.nanoTime();
+                    if (left <= 0) {
+                        return false;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(lock, left);
+                }
+                shares.remove(this);
+                return true;
+            }
+        }
+
+        @Override
+        public String toString() {
+            synchronized (lock) {
+                return "Share{" + name + " weight=" + weight + " queued=" + tasks.size() + " running=" + running + " cpuMs=" + cpuNanos / 1_000_000 + "}";
+            }
+        }
+    }
+}
@@ -2,23 +2,26 @@ package io.qusay.ga.service;
 
 import io.qusay.exception.DataNotFoundException;
 import io.qusay.ga.geneticalgorithm.Gene;
-import io.qusay.ga.geneticalgorithm.GeneticAlgorithmJobData;
+import io.qusay.ga.geneticalgorithm.JobResult;
 import io.qusay.services.api.JobRepository;
 import io.qusay.services.api.ScheduleRepository;
-import io.qusay.services.api.ScheduledModuleRepository;
 import io.qusay.model.Job;
 import io.qusay.model.Schedule;
+import io.qusay.services.timetable.TimetableService;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-
-import static io.qusay.WebSocketConfiguration.MESSAGE_PREFIX;
+import java.util.Map;
 
 /**
  * Puts all information from a completed Genetic Algorithm job back into the database
+ * While a job runs, its best schedule so far is staged in scheduled_module_snapshots instead, see {@link #writeSnapshot}
  */
 @Service
 public class GaToDbSerializer {
@@ -29,30 +32,116 @@ public class GaToDbSerializer {
     private JobRepository jobRepository;
 
     @Autowired
-    private ScheduledModuleRepository scheduledModuleRepository;
+    private JdbcTemplate jdbcTemplate;
 
     @Autowired
-    private SimpMessagingTemplate websocket;
+    private TransactionTemplate transactionTemplate;
 
-    public void writeScheduleData(GeneticAlgorithmJobData gaData, Long scheduleId) {
-        Schedule schedule = scheduleRepository.findById(scheduleId).orElseThrow(DataNotFoundException::new);
-        // Anytime a schedule is modified by the GA, it is not longer new, therefore should be considered a "work-in-progress"
-        schedule.setWip(true);
-        schedule.setFitness(gaData.getFitness());
-        scheduleRepository.save(schedule);
-
-        // Send a WebSocket to the frontend: this schedule has been updated!
-        // FUTURE: Send to a different topic: One that uses the PAYLOAD field to know which schedule was updated. Then, go thorugh the list, and if that schedule is in the GUI, then it can ONLY GET THAT ONE
-        this.websocket.convertAndSend(MESSAGE_PREFIX + "/updateSchedule", "Job's done, m'lord");
-
-        // Update or create a database record for each scheduled module that the GA generated
-        List<Gene> scheduledModules = gaData.getScheduledModules();
-        int numUpdated;
-        for (Gene item : scheduledModules) {
-            numUpdated = scheduledModuleRepository.upsert(scheduleId, item.getModule().getId(), item.getTimeslot().getId(), item.getVenue().getId());
-            if (numUpdated != 1) {
-                System.out.println("Saved ScheduledModule to database, but incorrect no. of rows modified: " + numUpdated); // FUTURE: Logger critical
+    @Autowired
+    private TimetableService timetableService;
+
+    // Scheduled modules written per statement. 4 parameters each, well under Postgres' limit of 32767 parameters per statement
+    private static final int UPSERT_BATCH_SIZE = 1000;
+
+    /**
+     * Write a job's final result into the schedule and its scheduled modules in one transaction: a few multi-row statements rather than one statement and commit per module
+     * Only the modules that differ from what is already in the database are written
+     * The job's staged snapshot (see {@link #writeSnapshot}) is deleted in the same transaction, since the result replaces it
+     * Notifying the frontend is up to the caller, see {@link ScheduleJobListener}
+     *
+     * @param persistedScheduledModules What is already in the database for the schedule, or NULL if nothing is
+     */
+    public WriteBackResult writeScheduleData(JobResult result, List<Gene> persistedScheduledModules) {
+        final long startTime = System.nanoTime();
+        final long scheduleId = result.getScheduleId();
+        final List<Gene> changedModules = changedScheduledModules(result.getScheduledModules(), persistedScheduledModules);
+        transactionTemplate.executeWithoutResult(status -> {
+            Schedule schedule = scheduleRepository.findById(scheduleId).orElseThrow(DataNotFoundException::new);
+            // Anytime a schedule is modified by the GA, it is not longer new, therefore should be considered a "work-in-progress"
+            schedule.setWip(true);
+            schedule.setFitness(result.getFitness());
+            scheduleRepository.save(schedule);
+
+            // Update or create a database record for each scheduled module that the GA generated, or moved
+            for (int from = 0; from < changedModules.size(); from += UPSERT_BATCH_SIZE) {
+                upsertScheduledModules(Table.SCHEDULED_MODULES, scheduleId, changedModules.subList(from, Math.min(from + UPSERT_BATCH_SIZE, changedModules.size())));
             }
+            jdbcTemplate.update("DELETE FROM scheduled_module_snapshots WHERE job_id = ?", result.getJobId());
+        });
+        timetableService.invalidate(scheduleId); // Only once committed, so the next read can't cache what was there before
+        final long writeMillis = (System.nanoTime() - startTime) / 1_000_000;
+        System.out.println("Wrote " + changedModules.size() + " of " + result.getScheduledModules().size() + " scheduled modules for schedule_id=" + scheduleId +
+                " in " + writeMillis + "ms"); // FUTURE: Logger info
+        return new WriteBackResult(changedModules.size(), writeMillis);
+    }
+
+    /**
+     * Stage a running job's best schedule so far, in one transaction. The schedule's own scheduled modules are left alone,
+     * so that it stays as its user left it (hand-made edits and all) until the job's final result is written
+     * Only the modules that differ from the job's last staged snapshot are written
+     *
+     * @param stagedScheduledModules What the job last staged, or NULL if it hasn't staged anything yet
+     */
+    public WriteBackResult writeSnapshot(JobResult snapshot, List<Gene> stagedScheduledModules) {
+        final long startTime = System.nanoTime();
+        final List<Gene> changedModules = changedScheduledModules(snapshot.getScheduledModules(), stagedScheduledModules);
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int from = 0; from < changedModules.size(); from += UPSERT_BATCH_SIZE) {
+                upsertScheduledModules(Table.SCHEDULED_MODULE_SNAPSHOTS, snapshot.getJobId(), changedModules.subList(from, Math.min(from + UPSERT_BATCH_SIZE, changedModules.size())));
+            }
+        });
+        final long writeMillis = (System.nanoTime() - startTime) / 1_000_000;
+        System.out.println("Staged " + changedModules.size() + " of " + snapshot.getScheduledModules().size() + " scheduled modules for job=" + snapshot.getJobId() +
+                " in " + writeMillis + "ms"); // FUTURE: Logger info
+        return new WriteBackResult(changedModules.size(), writeMillis);
+    }
+
+    /**
+     * The GA's scheduled modules whose venue or timeslot differ from the database's. All of them, for a new schedule
+     */
+    private static List<Gene> changedScheduledModules(List<Gene> scheduledModules, List<Gene> persistedScheduledModules) {
+        if (persistedScheduledModules == null) {
+            return scheduledModules;
+        }
+        Map<Long, Gene> persistedByModule = new HashMap<>();
+        for (Gene gene : persistedScheduledModules) {
+            persistedByModule.put(gene.getModule().getId(), gene);
+        }
+
+        List<Gene> changed = new ArrayList<>();
+        for (Gene gene : scheduledModules) {
+            Gene persisted = persistedByModule.get(gene.getModule().getId());
+            if (persisted == null || persisted.getVenue().getId() != gene.getVenue().getId() || persisted.getTimeslot().getId() != gene.getTimeslot().getId()) {
+                changed.add(gene);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * "Upsert": Inserts new or updates existing (if key/moduleId record already exists), for many scheduled modules in one statement
+     * See: https://www.postgresql.org/docs/9.6/sql-insert.html
+     * Must be called within a transaction
+     *
+     * @param table A schedule's own scheduled modules, or a job's staged snapshot
+     * @param key   The schedule_id or job_id the rows belong to
+     */
+    private void upsertScheduledModules(Table table, Long key, List<Gene> genes) {
+        StringBuilder sql = new StringBuilder("INSERT INTO " + table.tableName + " (" + table.keyColumn + ", module_id, timeslot_id, venue_id) VALUES ");
+        Object[] parameters = new Object[genes.size() * 4];
+        for (int i = 0; i < genes.size(); ++i) {
+            Gene gene = genes.get(i);
+            sql.append(i == 0 ? "(?, ?, ?, ?)" : ", (?, ?, ?, ?)");
+            parameters[i * 4] = key;
+            parameters[i * 4 + 1] = gene.getModule().getId();
+            parameters[i * 4 + 2] = gene.getTimeslot().getId();
+            parameters[i * 4 + 3] = gene.getVenue().getId();
+        }
+        sql.append(" ON CONFLICT (" + table.keyColumn + ", module_id) DO UPDATE SET timeslot_id = EXCLUDED.timeslot_id, venue_id = EXCLUDED.venue_id");
+
+        final int numUpdated = jdbcTemplate.update(sql.toString(), parameters);
+        if (numUpdated != genes.size()) {
+            System.out.println("Saved ScheduledModules to database, but incorrect no. of rows modified: " + numUpdated + ", expected " + genes.size()); // FUTURE: Logger critical
         }
     }
 
@@ -73,4 +162,42 @@ public class GaToDbSerializer {
             jobRepository.delete(job);
         }
     }
+
+    /**
+     * Where scheduled modules are upserted: a schedule's own, or a running job's staged snapshot (created in schema.sql)
+     * Each table's rows are keyed by its key column and module_id
+     */
+    private enum Table {
+        SCHEDULED_MODULES("scheduled_modules", "schedule_id"),
+        SCHEDULED_MODULE_SNAPSHOTS("scheduled_module_snapshots", "job_id");
+
+        private final String tableName;
+        private final String keyColumn;
+
+        Table(String tableName, String keyColumn) {
+            this.tableName = tableName;
+            this.keyColumn = keyColumn;
+        }
+    }
+
+    /**
+     * What writing a job's solution back did, for reporting with the job's result
+     */
+    public static final class WriteBackResult {
+        private final int numScheduledModulesWritten;
+        private final long writeMillis;
+
+        WriteBackResult(int numScheduledModulesWritten, long writeMillis) {
+            this.numScheduledModulesWritten = numScheduledModulesWritten;
+            this.writeMillis = writeMillis;
+        }
+
+        public int getNumScheduledModulesWritten() {
+            return numScheduledModulesWritten;
+        }
+
+        public long getWriteMillis() {
+            return writeMillis;
+        }
+    }
 }
@@ -2,20 +2,42 @@ package io.qusay.ga.service;
 
 import io.qusay.ga.geneticalgorithm.GeneticAlgorithmJob;
 import io.qusay.ga.geneticalgorithm.GeneticAlgorithmJobData;
+import io.qusay.ga.geneticalgorithm.JobListener;
+import io.qusay.model.Job;
 
+import java.sql.Timestamp;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 
 public class GeneticAlgorithmRunner {
-    private final ExecutorService threadPool;
+    private final ThreadPoolExecutor jobExecutor;
+    private final FairShareExecutor.Share computeShare;
+    private final Long scheduleId;
     private GeneticAlgorithmJob job;
+    // The job's database record as it was created. Only its unchanging fields are used
+    private final Job jobRecord;
 
-    public GeneticAlgorithmRunner(GeneticAlgorithmJobData geneticAlgorithmJobData, ExecutorService threadPool) {
-        this.job = new GeneticAlgorithmJob(geneticAlgorithmJobData, threadPool);
-        this.threadPool = threadPool;
+    // Last progress written to the database by {@link JobProgressWriter}, so that unchanged progress isn't written again
+    private volatile int persistedGeneration = -1;
+    private volatile int persistedQueuePosition = -1;
+
+    /**
+     * @param jobRecord   The job's database record
+     * @param jobExecutor Runs the job itself, or queues it if all its threads are busy
+     * @param computeShare This job's share of the compute pool, for its parallel subtasks
+     * @param subJobPool   For the driver threads of the job's sub jobs, if it is decomposed
+     * @param listener     Saves the job's result, and reports its progress
+     */
+    public GeneticAlgorithmRunner(GeneticAlgorithmJobData geneticAlgorithmJobData, Job jobRecord, ThreadPoolExecutor jobExecutor, FairShareExecutor.Share computeShare, ExecutorService subJobPool, JobListener listener) {
+        this.job = new GeneticAlgorithmJob(geneticAlgorithmJobData, computeShare, subJobPool, listener);
+        this.jobExecutor = jobExecutor;
+        this.computeShare = computeShare;
+        this.scheduleId = geneticAlgorithmJobData.getScheduleId();
+        this.jobRecord = jobRecord;
     }
 
     public void start() {
-        threadPool.execute(job);
+        jobExecutor.execute(job);
     }
 
     // Control (start, interrupt, and get data from) a sub thread
@@ -25,7 +47,90 @@ public class GeneticAlgorithmRunner {
         job.setIsRunning(false);
     }
 
+    /**
+     * Take the job out of the queue, if it is still waiting there
+     *
+     * @return true if the job was queued, and now never will run. false if it has already started
+     */
+    public boolean cancelIfQueued() {
+        if (jobExecutor.remove(job)) {
+            job.markCancelled();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return 1 for the next job to start, 2 for the one after that, etc. 0 if the job has started
+     */
+    public int getQueuePosition() {
+        int position = 1;
+        for (Runnable queued : jobExecutor.getQueue()) { // Iterates in FIFO order
+            if (queued == job) {
+                return position;
+            }
+            ++position;
+        }
+        return 0;
+    }
+
+    public void setComputeWeight(double weight) {
+        computeShare.setWeight(weight);
+    }
+
+    public double getComputeWeight() {
+        return computeShare.getWeight();
+    }
+
+    /**
+     * The job is done with the compute pool. Its share stops being scheduled once any tasks left have finished
+     */
+    public void releaseComputeShare() {
+        computeShare.shutdown();
+    }
+
+    /**
+     * Build the job's current status from memory. The result is not attached to the database; see {@link JobProgressWriter} for that
+     *
+     * @return A {@link Job} with live progress
+     */
+    public Job getStatus() {
+        Job status = new Job();
+        status.setJobId(jobRecord.getJobId());
+        status.setStartDate(jobRecord.getStartDate());
+        status.setTotalGenerations(jobRecord.getTotalGenerations());
+        status.setCurrentGeneration(getCurrentGeneration());
+        status.setQueuePosition(getQueuePosition());
+        status.setLastStatusUpdateTime(new Timestamp(System.currentTimeMillis()));
+        return status;
+    }
+
+    public int getPersistedGeneration() {
+        return persistedGeneration;
+    }
+
+    public int getPersistedQueuePosition() {
+        return persistedQueuePosition;
+    }
+
+    public void setPersisted(int generation, int queuePosition) {
+        persistedGeneration = generation;
+        persistedQueuePosition = queuePosition;
+    }
+
+    public GeneticAlgorithmJob getJob() {
+        return job;
+    }
+
     public int getCurrentGeneration() {
         return job.getCurrentGeneration();
     }
+
+    public Long getJobId() {
+        return jobRecord.getJobId();
+    }
+
+    public Long getScheduleId() {
+        return scheduleId;
+    }
 }
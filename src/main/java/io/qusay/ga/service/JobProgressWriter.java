@@ -0,0 +1,79 @@
+package io.qusay.ga.service;
+
+import io.qusay.services.api.JobRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind persistence of job progress
+ *
+ * Job status requests are answered from memory (see {@link JobRegistry}), so a frontend polling every half second costs the database nothing.
+ * The jobs table is still kept roughly up to date for anything else reading it: every few seconds, each job whose progress has changed
+ * since it was last written gets one UPDATE. However often it is polled, a job is written at most once per interval
+ */
+@Service
+public class JobProgressWriter {
+    @Autowired
+    private JobRegistry jobRegistry;
+
+    @Autowired
+    private JobRepository jobRepository;
+
+    // How often to write progress to the database, in seconds. 0 turns write-behind off
+    @Value("${ga.jobs.progress-persist-seconds:5}")
+    private int persistIntervalSeconds;
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    private void start() {
+        if (persistIntervalSeconds <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(OrchestrationThreads.factory("ga-progress-writer"));
+        scheduler.scheduleWithFixedDelay(this::persistAll, persistIntervalSeconds, persistIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    private void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Write the progress of every job whose progress has changed since it was last written
+     */
+    private void persistAll() {
+        final Timestamp now = new Timestamp(System.currentTimeMillis());
+        int written = 0;
+        for (GeneticAlgorithmRunner runner : jobRegistry.getAll()) {
+            final int generation = runner.getCurrentGeneration();
+            final int queuePosition = runner.getQueuePosition();
+            if (generation == runner.getPersistedGeneration() && queuePosition == runner.getPersistedQueuePosition()) {
+                continue;
+            }
+            try {
+                jobRepository.updateProgress(runner.getJobId(), generation, queuePosition, now);
+                runner.setPersisted(generation, queuePosition);
+                ++written;
+            } catch (RuntimeException e) {
+                // Never let one failure stop the scheduler: it would silently never run again. Try again next interval
+                System.out.println("ERROR: Could not save progress of job=" + runner.getJobId()); // FUTURE: Logger error
+                e.printStackTrace();
+            }
+        }
+        if (written > 0) {
+            System.out.println("Saved progress of " + written + " jobs"); // FUTURE: Logger debug
+        }
+    }
+}
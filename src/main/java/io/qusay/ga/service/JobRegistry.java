@@ -0,0 +1,103 @@
+package io.qusay.ga.service;
+
+import io.qusay.ga.geneticalgorithm.GeneticAlgorithmJob;
+import io.qusay.model.JobMetricsDto;
+
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An in-memory registry of current jobs (queued or running), saved such that they can be queried or stopped later
+ * Written by request threads (dispatch, cancel) and job threads (job completed) at the same time, so it is a concurrent map
+ *
+ * Why is in-memory is acceptable, don't need to go to database? The handles are live threads, which can't outlive the server anyway.
+ * What a job needs to be run again is in the jobs table (its parameters and compute weight) and its checkpoints: after a restart,
+ * {@link Dispatcher#resumeOrphanedJobs} registers every job again, resuming running jobs and queueing the others in their old order
+ * Every lookup is O(1), and building metrics only reads volatile/atomic fields of the job: none of it touches the database
+ */
+@Service
+public class JobRegistry {
+    private final ConcurrentHashMap<Long, GeneticAlgorithmRunner> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * @throws IllegalStateException If a job with this ID is already registered
+     */
+    public void register(Long jobId, GeneticAlgorithmRunner runner) {
+        if (jobs.putIfAbsent(jobId, runner) != null) {
+            throw new IllegalStateException("A job with id=" + jobId + " is already registered");
+        }
+    }
+
+    /**
+     * @return The job's handle, or null if no such job is queued or running
+     */
+    public GeneticAlgorithmRunner get(Long jobId) {
+        return jobs.get(jobId);
+    }
+
+    /**
+     * @return The removed job's handle, or null if it was not registered (e.g. already removed)
+     */
+    public GeneticAlgorithmRunner remove(Long jobId) {
+        return jobs.remove(jobId);
+    }
+
+    /**
+     * @return A live view of every current job's handle. Safe to iterate while jobs come and go
+     */
+    public Collection<GeneticAlgorithmRunner> getAll() {
+        return jobs.values();
+    }
+
+    public int size() {
+        return jobs.size();
+    }
+
+    /**
+     * @return Live metrics for one job, or null if no such job is queued or running
+     */
+    public JobMetricsDto getMetrics(Long jobId) {
+        GeneticAlgorithmRunner runner = jobs.get(jobId);
+        return runner == null ? null : buildMetrics(jobId, runner);
+    }
+
+    /**
+     * @return Live metrics for every queued or running job, ordered by job ID
+     */
+    public List<JobMetricsDto> listMetrics() {
+        List<JobMetricsDto> metrics = new ArrayList<>(jobs.size());
+        jobs.forEach((jobId, runner) -> metrics.add(buildMetrics(jobId, runner)));
+        metrics.sort(Comparator.comparing(JobMetricsDto::getJobId));
+        return metrics;
+    }
+
+    private JobMetricsDto buildMetrics(Long jobId, GeneticAlgorithmRunner runner) {
+        GeneticAlgorithmJob job = runner.getJob();
+        final double runningSeconds = job.getRunningTimeNanos() * 1E-9;
+        final int generation = job.getCurrentGeneration();
+
+        JobMetricsDto metrics = new JobMetricsDto();
+        metrics.setJobId(jobId);
+        metrics.setScheduleId(runner.getScheduleId());
+        metrics.setState(job.getState().name());
+        metrics.setQueuePosition(runner.getQueuePosition());
+        metrics.setCurrentGeneration(generation);
+        metrics.setTotalGenerations(job.getNumGenerations());
+        metrics.setProgress(job.getProgress());
+        // Only the generations run since the job last started count: a resumed job's earlier generations took no time in this run
+        metrics.setGenerationsPerSecond(runningSeconds > 0 ? (generation - job.getResumeGeneration()) / runningSeconds : 0);
+        metrics.setEvaluationsPerSecond(runningSeconds > 0 ? job.getFitnessEvaluations() / runningSeconds : 0);
+        metrics.setBestFitness(job.getEstimatedFitness());
+        metrics.setHasValidSolution(job.hasValidSolution());
+        metrics.setMemoryEstimateBytes(job.getMemoryEstimateBytes());
+        metrics.setComputeWeight(runner.getComputeWeight());
+        metrics.setStartTime(job.getStartTimeMillis() == 0 ? null : new Timestamp(job.getStartTimeMillis()));
+        return metrics;
+    }
+}
@@ -0,0 +1,28 @@
+package io.qusay.ga.service;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads for job orchestration: the job driver loops, sub job drivers, database write back and WebSocket notifications
+ *
+ * Named daemon platform threads. Virtual threads would suit these better, since they spend nearly all their time blocked,
+ * but they need Java 21, and Spring 5.3 (Spring Boot 2.6) can't read Java 21 class files
+ * CPU-bound GA work never runs here: it stays on the bounded {@link FairShareExecutor}
+ */
+public final class OrchestrationThreads {
+    private OrchestrationThreads() {
+    }
+
+    /**
+     * @param name Prefix for thread names
+     */
+    public static ThreadFactory factory(String name) {
+        AtomicInteger count = new AtomicInteger(0);
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,118 @@
+package io.qusay.ga.service;
+
+import io.qusay.ga.geneticalgorithm.ModuleGA;
+import io.qusay.ga.geneticalgorithm.TimeslotGA;
+import io.qusay.ga.geneticalgorithm.VenueGA;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * The global part of every GA job's data: all timeslots, venues and modules, and lookups of them by ID
+ * These are the same for every schedule, and rarely change, so they are loaded from the database once and shared by all jobs
+ *
+ * Invalidated when any of the tables they're built from are changed through the REST API,
+ * see {@link io.qusay.services.data.restevent.ProblemInstanceEventHandler}. Changes made directly in the database aren't seen until then
+ */
+@Service
+public class ProblemInstanceCache {
+    // Guards both fields below
+    private final Object lock = new Object();
+    private ProblemInstance current;
+    // Bumped on every invalidation, so that a load which started before a change is never cached
+    private long version;
+
+    /**
+     * @param loader Loads a fresh instance from the database, if none is cached. Called without holding any lock,
+     *               so jobs for different schedules aren't held up by each other's loads
+     * @return The cached instance, or a newly loaded one
+     */
+    public ProblemInstance get(Supplier<ProblemInstance> loader) {
+        final long loadingVersion;
+        synchronized (lock) {
+            if (current != null) {
+                return current;
+            }
+            loadingVersion = version;
+        }
+
+        ProblemInstance loaded = loader.get();
+        synchronized (lock) {
+            if (version == loadingVersion && current == null) {
+                current = loaded;
+                System.out.println("Cached problem instance v" + version + ": " + loaded.getModules().size() + " modules, " +
+                        loaded.getVenues().size() + " venues, " + loaded.getTimeslots().size() + " timeslots"); // FUTURE: Logger info
+            }
+        }
+        return loaded; // Possibly already stale, if something changed while loading: but no staler than if this job had started a moment earlier
+    }
+
+    /**
+     * Forget the cached instance. The next job loads it again. Jobs already running keep the instance they started with
+     */
+    public void invalidate() {
+        synchronized (lock) {
+            ++version;
+            current = null;
+        }
+    }
+
+    /**
+     * An immutable snapshot of the problem: shared, read-only, by every job started while it was current
+     */
+    public static final class ProblemInstance {
+        private static final AtomicLong nextId = new AtomicLong();
+
+        // Unique to this instance, so that anything worked out from it can tell when it has been replaced
+        private final long id = nextId.incrementAndGet();
+        private final List<TimeslotGA> timeslots;
+        private final List<VenueGA> venues;
+        private final List<ModuleGA> modules;
+        // By database ID, for building a schedule's existing genes
+        private final Map<Long, TimeslotGA> timeslotsById = new HashMap<>();
+        private final Map<Long, VenueGA> venuesById = new HashMap<>();
+        private final Map<Long, ModuleGA> modulesById = new HashMap<>();
+
+        public ProblemInstance(List<TimeslotGA> timeslots, List<VenueGA> venues, List<ModuleGA> modules) {
+            this.timeslots = Collections.unmodifiableList(timeslots);
+            this.venues = Collections.unmodifiableList(venues);
+            this.modules = Collections.unmodifiableList(modules);
+            timeslots.forEach(timeslot -> timeslotsById.put(timeslot.getId(), timeslot));
+            venues.forEach(venue -> venuesById.put(venue.getId(), venue));
+            modules.forEach(module -> modulesById.put(module.getId(), module));
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public List<TimeslotGA> getTimeslots() {
+            return timeslots;
+        }
+
+        public List<VenueGA> getVenues() {
+            return venues;
+        }
+
+        public List<ModuleGA> getModules() {
+            return modules;
+        }
+
+        public TimeslotGA getTimeslot(long id) {
+            return timeslotsById.get(id);
+        }
+
+        public VenueGA getVenue(long id) {
+            return venuesById.get(id);
+        }
+
+        public ModuleGA getModule(long id) {
+            return modulesById.get(id);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package io.qusay.ga.service;
+
+import io.qusay.exception.DataNotFoundException;
+import io.qusay.ga.geneticalgorithm.Chromosome;
+import io.qusay.ga.geneticalgorithm.FitnessBreakdown;
+import io.qusay.ga.geneticalgorithm.Gene;
+import io.qusay.ga.geneticalgorithm.GeneticAlgorithmJobData;
+import io.qusay.ga.geneticalgorithm.ModuleGA;
+import io.qusay.ga.geneticalgorithm.TimeslotGA;
+import io.qusay.ga.geneticalgorithm.VenueGA;
+import io.qusay.model.ScheduleEvaluationDto;
+import io.qusay.model.TimetableDto;
+import io.qusay.services.timetable.TimetableService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates a schedule as it is in the database (e.g. after editing it by hand) with the GA's own fitness function, without running a job
+ *
+ * The scheduled modules come from the {@link TimetableService}'s cached timetable, and everything else from the {@link ProblemInstanceCache},
+ * so evaluating a schedule doesn't read the database unless one of those has changed. Each evaluation is kept until either of them changes
+ */
+@Service
+public class ScheduleEvaluator {
+    // How many schedules' evaluations to keep. The least recently read is dropped first
+    private static final int MAX_CACHED_SCHEDULES = 100;
+
+    @Autowired
+    private TimetableService timetableService;
+
+    @Autowired
+    private DbToGaDeserializer dbToGaDeserializer;
+
+    // Guarded by itself
+    private final Map<Long, Evaluation> cache = new LinkedHashMap<Long, Evaluation>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Evaluation> eldest) {
+            return size() > MAX_CACHED_SCHEDULES;
+        }
+    };
+
+    /**
+     * @return The schedule's fitness, hard/soft breakdown and validity, from the cache if the schedule and problem haven't changed since it was last evaluated
+     * @throws DataNotFoundException If there's no such schedule
+     */
+    public ScheduleEvaluationDto evaluate(Long scheduleId) {
+        TimetableService.View timetable = timetableService.getTimetable(scheduleId);
+        ProblemInstanceCache.ProblemInstance problemInstance = dbToGaDeserializer.getProblemInstance();
+
+        Evaluation evaluation;
+        synchronized (cache) {
+            evaluation = cache.get(scheduleId);
+        }
+        if (evaluation == null || !evaluation.isFor(timetable, problemInstance)) {
+            // Not under the lock: two requests for a changed schedule may both evaluate it, but neither waits for another schedule's evaluation
+            evaluation = evaluate(timetable, problemInstance);
+            synchronized (cache) {
+                cache.put(scheduleId, evaluation);
+            }
+        }
+
+        return buildDto(scheduleId, evaluation);
+    }
+
+    private static Evaluation evaluate(TimetableService.View timetable, ProblemInstanceCache.ProblemInstance problemInstance) {
+        final long start = System.nanoTime();
+
+        GeneticAlgorithmJobData data = new GeneticAlgorithmJobData();
+        data.setTimeslots(problemInstance.getTimeslots());
+        data.setVenues(problemInstance.getVenues());
+        data.setModules(problemInstance.getModules()); // Also the chromosome size, which the soft constraints are weighted by
+
+        List<Gene> genes = new ArrayList<>(timetable.getEntries().size());
+        int numUnplaced = 0;
+        for (TimetableDto.Entry entry : timetable.getEntries()) {
+            ModuleGA module = problemInstance.getModule(entry.getModuleId());
+            VenueGA venue = entry.getVenueId() == null ? null : problemInstance.getVenue(entry.getVenueId());
+            TimeslotGA timeslot = entry.getTimeslotId() == null ? null : problemInstance.getTimeslot(entry.getTimeslotId());
+            if (module == null || venue == null || timeslot == null) {
+                ++numUnplaced;
+                continue;
+            }
+            genes.add(new Gene(module, venue, timeslot, data));
+        }
+
+        FitnessBreakdown breakdown = Chromosome.calculateFitness(data, genes.toArray(new Gene[0]));
+        return new Evaluation(timetable.getETag(), problemInstance.getId(), breakdown, genes.size(), numUnplaced, (System.nanoTime() - start) / 1_000_000.0);
+    }
+
+    private static ScheduleEvaluationDto buildDto(Long scheduleId, Evaluation evaluation) {
+        FitnessBreakdown breakdown = evaluation.breakdown;
+        ScheduleEvaluationDto dto = new ScheduleEvaluationDto();
+        dto.setScheduleId(scheduleId);
+        dto.setScheduleVersion(evaluation.scheduleVersion);
+        dto.setFitness(breakdown.getFitness());
+        dto.setHardFitness(breakdown.getHardFitness());
+        dto.setSoftFitness(breakdown.getSoftFitness());
+        dto.setOverlappingClassesFitness(breakdown.getOverlappingClassesFitness());
+        dto.setInvalidVenuesFitness(breakdown.getInvalidVenuesFitness());
+        dto.setBuildingPreferenceFitness(breakdown.getBuildingPreferenceFitness());
+        dto.setTimeslotPreferenceFitness(breakdown.getTimeslotPreferenceFitness());
+        dto.setConflicts(breakdown.getNumConflicts());
+        dto.setInvalidVenues(breakdown.getNumInvalidVenues());
+        dto.setHardConstraintViolations(breakdown.getHardConstraintViolations());
+        dto.setValidSolution(breakdown.isValidSolution());
+        dto.setScheduledModules(evaluation.numScheduledModules);
+        dto.setUnplacedModules(evaluation.numUnplacedModules);
+        dto.setEvaluationMillis(evaluation.evaluationMillis);
+        return dto;
+    }
+
+    /**
+     * One schedule's evaluation, and the versions of the schedule and problem it was worked out from
+     */
+    private static final class Evaluation {
+        // ETag of the schedule's timetable, which is a hash of its contents
+        private final String scheduleVersion;
+        private final long problemInstanceId;
+        private final FitnessBreakdown breakdown;
+        private final int numScheduledModules;
+        private final int numUnplacedModules;
+        private final double evaluationMillis;
+
+        Evaluation(String scheduleVersion, long problemInstanceId, FitnessBreakdown breakdown, int numScheduledModules, int numUnplacedModules, double evaluationMillis) {
+            this.scheduleVersion = scheduleVersion;
+            this.problemInstanceId = problemInstanceId;
+            this.breakdown = breakdown;
+            this.numScheduledModules = numScheduledModules;
+            this.numUnplacedModules = numUnplacedModules;
+            this.evaluationMillis = evaluationMillis;
+        }
+
+        boolean isFor(TimetableService.View timetable, ProblemInstanceCache.ProblemInstance problemInstance) {
+            return scheduleVersion.equals(timetable.getETag()) && problemInstanceId == problemInstance.getId();
+        }
+    }
+}
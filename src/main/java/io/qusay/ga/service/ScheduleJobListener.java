@@ -0,0 +1,240 @@
+package io.qusay.ga.service;
+
+import io.qusay.ga.geneticalgorithm.Gene;
+import io.qusay.ga.geneticalgorithm.GeneticAlgorithmJob;
+import io.qusay.ga.geneticalgorithm.JobListener;
+import io.qusay.ga.geneticalgorithm.JobResult;
+import io.qusay.ga.geneticalgorithm.PopulationCheckpoint;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static io.qusay.WebSocketConfiguration.MESSAGE_PREFIX;
+
+/**
+ * Connects a running GA job to the rest of the web app: progress goes to the frontend over WebSocket,
+ * the solution is written into the database, and the {@link Dispatcher} is told when the job is over
+ *
+ * A finished job's result is saved by one completion thread, shared by all jobs, so a job's own thread is free for the next job as soon as it has stopped.
+ * For each job, in order: the solution is committed, its checkpoints deleted, its Job row deleted, and only then is the frontend told it's done
+ * A job that failed has nothing to commit: its Job row is deleted, and the frontend is told. So is a job whose result still can't be committed after a few retries
+ *
+ * While a job runs, snapshots of its best so far are staged on the same thread, so that they're never written after the final result
+ * They're kept apart from the schedule's own scheduled modules (see {@link GaToDbSerializer#writeSnapshot}), which only the final result changes
+ */
+class ScheduleJobListener implements JobListener {
+    // A result that can't be written back is tried this many times in all, waiting twice as long before each retry
+    private static final int WRITE_BACK_ATTEMPTS = 5;
+    private static final long WRITE_BACK_RETRY_MILLIS = 2000;
+
+    private final GaToDbSerializer gaToDbSerializer;
+    private final SimpMessagingTemplate websocket;
+    private final Dispatcher dispatcher;
+    // A job isn't reported as done until at least this long after it started running. See {@link #complete}
+    private final long minReportedRunningMillis;
+    // Saves results one at a time, in the order jobs finished. Delayed reports wait here without holding up anyone else's
+    private final ScheduledExecutorService completionExecutor;
+    // Per job, the latest snapshot not yet written. A newer one replaces it, rather than queueing up behind it
+    private final Map<Long, JobResult> pendingSnapshots = new ConcurrentHashMap<>();
+    // Per job, the scheduled modules last staged by a snapshot, for the next snapshot to be compared against. Only used on the completion thread
+    private final Map<Long, List<Gene>> stagedScheduledModules = new HashMap<>();
+
+    ScheduleJobListener(GaToDbSerializer gaToDbSerializer, SimpMessagingTemplate websocket, Dispatcher dispatcher, long minReportedRunningMillis) {
+        this.gaToDbSerializer = gaToDbSerializer;
+        this.websocket = websocket;
+        this.dispatcher = dispatcher;
+        this.minReportedRunningMillis = minReportedRunningMillis;
+        this.completionExecutor = new ScheduledThreadPoolExecutor(1, OrchestrationThreads.factory("ga-completion"));
+    }
+
+    @Override
+    public void onEstimate(GeneticAlgorithmJob job) {
+        websocket.convertAndSend(MESSAGE_PREFIX + "/jobEstimate",
+                "{\"jobId\":" + job.getData().getJobId() +
+                        ",\"scheduleId\":" + job.getData().getScheduleId() +
+                        ",\"estimatedGenerations\":" + job.getEstimatedGenerationsInBudget() +
+                        ",\"validSolutionLikely\":" + job.isValidSolutionLikelyInBudget() + "}");
+    }
+
+    @Override
+    public void onProgress(GeneticAlgorithmJob job, float progress, long fitnessEstimate) {
+        sendJobStatus(job.getData().getJobId(), job.getData().getScheduleId(), progress, fitnessEstimate, job.getDiversity(),
+                job.getCurrentCrossoverProbability(), job.getCurrentMutateProbability(), job.getCurrentMutatedGenesMax(), false);
+    }
+
+    @Override
+    public void onBestSoFar(GeneticAlgorithmJob job, JobResult snapshot) {
+        if (pendingSnapshots.put(snapshot.getJobId(), snapshot) == null) {
+            completionExecutor.execute(() -> writeSnapshot(snapshot.getJobId()));
+        }
+    }
+
+    @Override
+    public void onSolved(GeneticAlgorithmJob job, JobResult result) {
+        completionExecutor.execute(() -> complete(job, result, 1));
+    }
+
+    @Override
+    public void onFailed(GeneticAlgorithmJob job, RuntimeException cause) {
+        completionExecutor.execute(() -> fail(job));
+    }
+
+    /**
+     * On the completion thread: a job failed. Clean it up, so its schedule can be run again, and tell the frontend
+     * The schedule is left as it was: a staged snapshot is deleted along with the Job row, and any not yet written are dropped
+     */
+    private void fail(GeneticAlgorithmJob job) {
+        final long jobId = job.getData().getJobId();
+        final long scheduleId = job.getData().getScheduleId();
+        pendingSnapshots.remove(jobId);
+        stagedScheduledModules.remove(jobId);
+        try {
+            dispatcher.jobCompleted(jobId);
+            gaToDbSerializer.deleteJobForSchedule(scheduleId);
+        } catch (RuntimeException e) {
+            System.out.println("ERROR: Could not delete failed job=" + jobId + ", schedule=" + scheduleId); // FUTURE: Logger error
+            e.printStackTrace();
+        }
+
+        sendJobStatus(jobId, scheduleId, job.getProgress(), job.getEstimatedFitness(), job.getDiversity(),
+                job.getCurrentCrossoverProbability(), job.getCurrentMutateProbability(), job.getCurrentMutatedGenesMax(), true);
+        websocket.convertAndSend(MESSAGE_PREFIX + "/jobComplete",
+                "{\"scheduleId\":" + scheduleId +
+                        ",\"foundValidSolution\":false" +
+                        ",\"failed\":true}");
+    }
+
+    /**
+     * On the completion thread: stage the latest snapshot of a job, so it can be looked at mid-run (see {@link io.qusay.services.timetable.TimetableService#getSnapshotTimetable}),
+     * and a resumed job can carry on from it
+     */
+    private void writeSnapshot(long jobId) {
+        final JobResult snapshot = pendingSnapshots.remove(jobId);
+        if (snapshot == null) {
+            return;
+        }
+        final GaToDbSerializer.WriteBackResult writeBack;
+        try {
+            writeBack = gaToDbSerializer.writeSnapshot(snapshot, stagedScheduledModules.get(jobId));
+        } catch (RuntimeException e) {
+            // Rolled back, so the next snapshot is compared against what was staged before
+            System.out.println("ERROR: Could not write snapshot of job=" + jobId + ", schedule=" + snapshot.getScheduleId()); // FUTURE: Logger error
+            e.printStackTrace();
+            return;
+        }
+        stagedScheduledModules.put(jobId, snapshot.getScheduledModules());
+
+        // Not "/updateSchedule": the frontend loses track of a running job if its schedule is reloaded under it
+        websocket.convertAndSend(MESSAGE_PREFIX + "/jobSnapshot",
+                "{\"jobId\":" + jobId +
+                        ",\"scheduleId\":" + snapshot.getScheduleId() +
+                        ",\"fitness\":" + snapshot.getFitness() +
+                        ",\"foundValidSolution\":" + snapshot.isHasValidSolution() +
+                        ",\"generationNumber\":" + snapshot.getFinalGenerationNumber() +
+                        ",\"scheduledModulesWritten\":" + writeBack.getNumScheduledModulesWritten() +
+                        ",\"writeBackMillis\":" + writeBack.getWriteMillis() + "}");
+    }
+
+    /**
+     * On the completion thread: save the result, then report it
+     * A failed write is tried again after a while (the database may be back by then), and after the last attempt the job is failed
+     *
+     * @param attempt 1 for the first try
+     */
+    private void complete(GeneticAlgorithmJob job, JobResult result, int attempt) {
+        final GaToDbSerializer.WriteBackResult writeBack;
+        try {
+            writeBack = gaToDbSerializer.writeScheduleData(result, result.getPersistedScheduledModules());
+        } catch (RuntimeException e) {
+            // Rolled back, so a retry is compared against the same scheduled modules as this attempt
+            System.out.println("ERROR: Could not write back job=" + result.getJobId() + ", schedule=" + result.getScheduleId() + ", attempt " + attempt + " of " + WRITE_BACK_ATTEMPTS); // FUTURE: Logger error
+            e.printStackTrace();
+            if (completionExecutor.isShutdown()) {
+                // Shutting down: its checkpoints and Job row are left alone, so the job is resumed (and written back again) after a restart
+                dispatcher.jobCompleted(result.getJobId());
+            } else if (attempt < WRITE_BACK_ATTEMPTS) {
+                completionExecutor.schedule(() -> complete(job, result, attempt + 1), WRITE_BACK_RETRY_MILLIS << (attempt - 1), TimeUnit.MILLISECONDS);
+            } else {
+                // Give up, and free the schedule to be run again. The result can't be saved, so neither can its checkpoints be resumed
+                if (job.getData().getCheckpointDirectory() != null) {
+                    PopulationCheckpoint.deleteForJob(job.getData().getCheckpointDirectory(), result.getJobId());
+                }
+                fail(job);
+            }
+            return;
+        }
+        stagedScheduledModules.remove(result.getJobId());
+        job.finish();
+
+        // DEBUG: If the algorithm converged TOO FAST, then delay reporting it. This is to make up for failings in the front end (breaks state if updates too fast).
+        // DEBUG: ...this is definitely a hack. But the result is already saved, and no thread sleeps on it
+        final long delayMillis = Math.max(minReportedRunningMillis - result.getRunningTimeNanos() / 1_000_000, 0);
+        completionExecutor.schedule(() -> close(result, writeBack), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * On the completion thread: the job is over. Clean it up, then tell the frontend, which may start another job for the schedule straight away
+     */
+    private void close(JobResult result, GaToDbSerializer.WriteBackResult writeBack) {
+        try {
+            dispatcher.jobCompleted(result.getJobId());
+            gaToDbSerializer.deleteJobForSchedule(result.getScheduleId());
+        } catch (RuntimeException e) {
+            System.out.println("ERROR: Could not delete finished job=" + result.getJobId() + ", schedule=" + result.getScheduleId()); // FUTURE: Logger error
+            e.printStackTrace();
+        }
+
+        // Send a WebSocket to the frontend: this schedule has been updated!
+        // FUTURE: Send to a different topic: One that uses the PAYLOAD field to know which schedule was updated. Then, go thorugh the list, and if that schedule is in the GUI, then it can ONLY GET THAT ONE
+        websocket.convertAndSend(MESSAGE_PREFIX + "/updateSchedule", "Job's done, m'lord");
+        sendJobStatus(result.getJobId(), result.getScheduleId(), 1.0f, result.getFitness(), result.getDiversity(),
+                result.getCrossoverProbability(), result.getMutateProbability(), result.getMutatedGenesMax(), true);
+
+        // Send a WebSocket publication to subscribers on the frontend web app, notifying "A job has finished for this schedule and has been written into the DB"
+        websocket.convertAndSend(MESSAGE_PREFIX + "/jobComplete",
+                "{\"scheduleId\":" + result.getScheduleId() +
+                        ",\"foundValidSolution\":" + result.isHasValidSolution() +
+                        ",\"terminationReason\":\"" + result.getTerminationReason() + "\"" +
+                        ",\"fitnessCacheHitRate\":" + result.getFitnessCacheHitRate() +
+                        ",\"finalGenerationNumber\":" + result.getFinalGenerationNumber() +
+                        ",\"scheduledModulesWritten\":" + writeBack.getNumScheduledModulesWritten() +
+                        ",\"writeBackMillis\":" + writeBack.getWriteMillis() + "}");
+    }
+
+    /**
+     * Send a WebSocket publication to subscribers on the frontend web app, notifying of progress of a job
+     */
+    private void sendJobStatus(long jobId, long scheduleId, float progress, long fitnessEstimate, float diversity, float crossoverRate, float mutateRate, int mutatedGenesMax, boolean isDone) {
+        websocket.convertAndSend(MESSAGE_PREFIX + "/jobStatus",
+                "{\"jobId\":" + jobId +
+                        ",\"scheduleId\":" + scheduleId +
+                        ",\"progressPercent\":" + progress +
+                        ",\"fitnessEstimate\":" + fitnessEstimate +
+                        ",\"diversity\":" + diversity +
+                        ",\"crossoverRate\":" + crossoverRate +
+                        ",\"mutateRate\":" + mutateRate +
+                        ",\"mutatedGenesMax\":" + mutatedGenesMax +
+                        ",\"isDone\": " + isDone + "}");
+    }
+
+    /**
+     * Finish saving the results of jobs that have already stopped, then stop the completion thread
+     * Delayed reports are still sent. Anything not saved in time is resumed from its checkpoint after a restart
+     */
+    void shutdown() {
+        completionExecutor.shutdown();
+        try {
+            if (!completionExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                System.out.println("WARNING: Gave up waiting for finished jobs to be written back"); // FUTURE: Logger warn
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package io.qusay.model;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.Type;
 import org.hibernate.annotations.TypeDef;
 import org.postgresql.geometric.PGpoint;
 
 import javax.persistence.Basic;
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
@@ -17,6 +20,8 @@ import java.util.List;
 import java.util.Objects;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @TypeDef(name = "CustomPGPoint", typeClass = PGPointType.class)
 @Table(name = "buildings", schema = "public", catalog = "ga_dev")
 public class Building {
@@ -4,6 +4,7 @@ import javax.persistence.Basic;
 import javax.persistence.Column;
 import javax.persistence.EmbeddedId;
 import javax.persistence.Entity;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.MapsId;
@@ -11,7 +12,8 @@ import javax.persistence.Table;
 import java.util.Objects;
 
 @Entity
-@Table(name = "course_module", schema = "public", catalog = "ga_dev")
+// The primary key (course_id, module_id) serves a course's modules. This serves a module's courses
+@Table(name = "course_module", schema = "public", catalog = "ga_dev", indexes = @Index(name = "course_module_module_idx", columnList = "module_id"))
 public class CourseModule {
     @EmbeddedId
     private CourseModulePK id;
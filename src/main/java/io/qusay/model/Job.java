@@ -1,5 +1,7 @@
 package io.qusay.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import javax.persistence.*;
 import java.sql.Timestamp;
 import java.util.Date;
@@ -31,6 +33,22 @@ public class Job {
     @Column(name = "last_status_update_time", nullable = true)
     private Timestamp lastStatusUpdateTime;
 
+    // 0 once the job is running. While it waits for a free slot: 1 is next to run, 2 after that, etc.
+    @Basic
+    @Column(name = "queue_position", nullable = true)
+    private Integer queuePosition;
+
+    // How the job was asked to run: {@link io.qusay.ga.geneticalgorithm.JobParameters} as JSON. Kept so that after a restart, a job can be run again exactly as asked
+    @Basic
+    @Column(name = "parameters", nullable = true, length = -1)
+    @JsonIgnore
+    private String parameters;
+
+    // The job's share of the compute threads, in percent. Kept up to date when it is changed while running, so that a resumed job gets the same share
+    @Basic
+    @Column(name = "compute_weight_percentage", nullable = true)
+    private Integer computeWeightPercentage;
+
     @OneToOne(mappedBy = "job")
     private Schedule schedule;
 
@@ -74,6 +92,30 @@ public class Job {
         this.lastStatusUpdateTime = lastStatusUpdateTime;
     }
 
+    public Integer getQueuePosition() {
+        return queuePosition;
+    }
+
+    public void setQueuePosition(Integer queuePosition) {
+        this.queuePosition = queuePosition;
+    }
+
+    public String getParameters() {
+        return parameters;
+    }
+
+    public void setParameters(String parameters) {
+        this.parameters = parameters;
+    }
+
+    public Integer getComputeWeightPercentage() {
+        return computeWeightPercentage;
+    }
+
+    public void setComputeWeightPercentage(Integer computeWeightPercentage) {
+        this.computeWeightPercentage = computeWeightPercentage;
+    }
+
     public Schedule getSchedule() {
         return schedule;
     }
@@ -92,11 +134,14 @@ public class Job {
                 Objects.equals(totalGenerations, job.totalGenerations) &&
                 Objects.equals(currentGeneration, job.currentGeneration) &&
                 Objects.equals(lastStatusUpdateTime, job.lastStatusUpdateTime) &&
+                Objects.equals(queuePosition, job.queuePosition) &&
+                Objects.equals(parameters, job.parameters) &&
+                Objects.equals(computeWeightPercentage, job.computeWeightPercentage) &&
                 Objects.equals(schedule, job.schedule);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(jobId, startDate, totalGenerations, currentGeneration, lastStatusUpdateTime, schedule);
+        return Objects.hash(jobId, startDate, totalGenerations, currentGeneration, lastStatusUpdateTime, queuePosition, parameters, computeWeightPercentage, schedule);
     }
 }
@@ -22,6 +22,8 @@ public class JobDto extends RepresentationModel<JobDto> {
     private Integer currentGeneration;
     @JsonProperty("lastStatusUpdateTime")
     private Timestamp lastStatusUpdateTime;
+    @JsonProperty("queuePosition")
+    private Integer queuePosition;
 
     @JsonCreator
     public JobDto(Job job) {
@@ -30,6 +32,7 @@ public class JobDto extends RepresentationModel<JobDto> {
         totalGenerations = job.getTotalGenerations();
         currentGeneration = job.getCurrentGeneration();
         lastStatusUpdateTime = job.getLastStatusUpdateTime();
+        queuePosition = job.getQueuePosition();
     }
 
     public Long getJobId() {
@@ -71,4 +74,12 @@ public class JobDto extends RepresentationModel<JobDto> {
     public void setLastStatusUpdateTime(Timestamp lastStatusUpdateTime) {
         this.lastStatusUpdateTime = lastStatusUpdateTime;
     }
+
+    public Integer getQueuePosition() {
+        return queuePosition;
+    }
+
+    public void setQueuePosition(Integer queuePosition) {
+        this.queuePosition = queuePosition;
+    }
 }
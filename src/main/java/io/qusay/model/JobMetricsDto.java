@@ -0,0 +1,156 @@
+package io.qusay.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.springframework.hateoas.RepresentationModel;
+
+import java.sql.Timestamp;
+
+/**
+ * Live metrics of a queued or running GA job, from memory rather than the database. For an ops dashboard
+ * Building a HATEOAS JSON object: https://docs.spring.io/spring-hateoas/docs/current/reference/html/
+ */
+public class JobMetricsDto extends RepresentationModel<JobMetricsDto> {
+    @JsonProperty("jobId")
+    private Long jobId;
+    @JsonProperty("scheduleId")
+    private Long scheduleId;
+    // One of {@link io.qusay.ga.geneticalgorithm.JobState}
+    @JsonProperty("state")
+    private String state;
+    @JsonProperty("queuePosition")
+    private Integer queuePosition;
+    @JsonProperty("currentGeneration")
+    private Integer currentGeneration;
+    @JsonProperty("totalGenerations")
+    private Integer totalGenerations;
+    @JsonProperty("progress")
+    private Float progress;
+    // Averaged over the time the job has been running
+    @JsonProperty("generationsPerSecond")
+    private Double generationsPerSecond;
+    @JsonProperty("evaluationsPerSecond")
+    private Double evaluationsPerSecond;
+    @JsonProperty("bestFitness")
+    private Long bestFitness;
+    @JsonProperty("hasValidSolution")
+    private Boolean hasValidSolution;
+    @JsonProperty("memoryEstimateBytes")
+    private Long memoryEstimateBytes;
+    @JsonProperty("computeWeight")
+    private Double computeWeight;
+    // When the job started running. Null while queued
+    @JsonProperty("startTime")
+    private Timestamp startTime;
+
+    public Long getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(Long jobId) {
+        this.jobId = jobId;
+    }
+
+    public Long getScheduleId() {
+        return scheduleId;
+    }
+
+    public void setScheduleId(Long scheduleId) {
+        this.scheduleId = scheduleId;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public Integer getQueuePosition() {
+        return queuePosition;
+    }
+
+    public void setQueuePosition(Integer queuePosition) {
+        this.queuePosition = queuePosition;
+    }
+
+    public Integer getCurrentGeneration() {
+        return currentGeneration;
+    }
+
+    public void setCurrentGeneration(Integer currentGeneration) {
+        this.currentGeneration = currentGeneration;
+    }
+
+    public Integer getTotalGenerations() {
+        return totalGenerations;
+    }
+
+    public void setTotalGenerations(Integer totalGenerations) {
+        this.totalGenerations = totalGenerations;
+    }
+
+    public Float getProgress() {
+        return progress;
+    }
+
+    public void setProgress(Float progress) {
+        this.progress = progress;
+    }
+
+    public Double getGenerationsPerSecond() {
+        return generationsPerSecond;
+    }
+
+    public void setGenerationsPerSecond(Double generationsPerSecond) {
+        this.generationsPerSecond = generationsPerSecond;
+    }
+
+    public Double getEvaluationsPerSecond() {
+        return evaluationsPerSecond;
+    }
+
+    public void setEvaluationsPerSecond(Double evaluationsPerSecond) {
+        this.evaluationsPerSecond = evaluationsPerSecond;
+    }
+
+    public Long getBestFitness() {
+        return bestFitness;
+    }
+
+    public void setBestFitness(Long bestFitness) {
+        this.bestFitness = bestFitness;
+    }
+
+    public Boolean getHasValidSolution() {
+        return hasValidSolution;
+    }
+
+    public void setHasValidSolution(Boolean hasValidSolution) {
+        this.hasValidSolution = hasValidSolution;
+    }
+
+    public Long getMemoryEstimateBytes() {
+        return memoryEstimateBytes;
+    }
+
+    public void setMemoryEstimateBytes(Long memoryEstimateBytes) {
+        this.memoryEstimateBytes = memoryEstimateBytes;
+    }
+
+    public Double getComputeWeight() {
+        return computeWeight;
+    }
+
+    public void setComputeWeight(Double computeWeight) {
+        this.computeWeight = computeWeight;
+    }
+
+    public Timestamp getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(Timestamp startTime) {
+        this.startTime = startTime;
+    }
+}
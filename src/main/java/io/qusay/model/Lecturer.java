@@ -1,10 +1,15 @@
 package io.qusay.model;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import javax.persistence.*;
 import java.util.List;
 import java.util.Objects;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Table(name = "lecturers", schema = "public", catalog = "ga_dev")
 public class Lecturer {
     @Id
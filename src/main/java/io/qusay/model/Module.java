@@ -5,7 +5,7 @@ import java.util.List;
 import java.util.Objects;
 
 @Entity
-@Table(name = "modules", schema = "public", catalog = "ga_dev")
+@Table(name = "modules", schema = "public", catalog = "ga_dev", indexes = @Index(name = "modules_lecturer_idx", columnList = "lecturer_id"))
 public class Module {
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "module_generator")
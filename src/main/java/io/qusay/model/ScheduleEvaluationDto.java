@@ -0,0 +1,180 @@
+package io.qusay.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.springframework.hateoas.RepresentationModel;
+
+/**
+ * Fitness of a schedule as it is in the database, worked out the same way as by a GA job, but without running one
+ * See {@link io.qusay.ga.service.ScheduleEvaluator}
+ */
+public class ScheduleEvaluationDto extends RepresentationModel<ScheduleEvaluationDto> {
+    @JsonProperty("scheduleId")
+    private Long scheduleId;
+    // Changes whenever the schedule's timetable does. The same version always has the same evaluation
+    @JsonProperty("scheduleVersion")
+    private String scheduleVersion;
+    @JsonProperty("fitness")
+    private Integer fitness;
+    @JsonProperty("hardFitness")
+    private Integer hardFitness;
+    @JsonProperty("softFitness")
+    private Integer softFitness;
+    // Parts of hardFitness
+    @JsonProperty("overlappingClassesFitness")
+    private Integer overlappingClassesFitness;
+    @JsonProperty("invalidVenuesFitness")
+    private Integer invalidVenuesFitness;
+    // Parts of softFitness
+    @JsonProperty("buildingPreferenceFitness")
+    private Integer buildingPreferenceFitness;
+    @JsonProperty("timeslotPreferenceFitness")
+    private Integer timeslotPreferenceFitness;
+    // Pairs of modules at the same time, sharing a venue, lecturer or course
+    @JsonProperty("conflicts")
+    private Integer conflicts;
+    // Modules in a venue of the wrong type, or too small
+    @JsonProperty("invalidVenues")
+    private Integer invalidVenues;
+    // Zero exactly when validSolution
+    @JsonProperty("hardConstraintViolations")
+    private Integer hardConstraintViolations;
+    @JsonProperty("validSolution")
+    private Boolean validSolution;
+    // Scheduled modules evaluated
+    @JsonProperty("scheduledModules")
+    private Integer scheduledModules;
+    // Scheduled modules with no venue or timeslot, which can't be evaluated, and are left out
+    @JsonProperty("unplacedModules")
+    private Integer unplacedModules;
+    // How long the evaluation took, when it was worked out. The same for every response from the cache
+    @JsonProperty("evaluationMillis")
+    private Double evaluationMillis;
+
+    public Long getScheduleId() {
+        return scheduleId;
+    }
+
+    public void setScheduleId(Long scheduleId) {
+        this.scheduleId = scheduleId;
+    }
+
+    public String getScheduleVersion() {
+        return scheduleVersion;
+    }
+
+    public void setScheduleVersion(String scheduleVersion) {
+        this.scheduleVersion = scheduleVersion;
+    }
+
+    public Integer getFitness() {
+        return fitness;
+    }
+
+    public void setFitness(Integer fitness) {
+        this.fitness = fitness;
+    }
+
+    public Integer getHardFitness() {
+        return hardFitness;
+    }
+
+    public void setHardFitness(Integer hardFitness) {
+        this.hardFitness = hardFitness;
+    }
+
+    public Integer getSoftFitness() {
+        return softFitness;
+    }
+
+    public void setSoftFitness(Integer softFitness) {
+        this.softFitness = softFitness;
+    }
+
+    public Integer getOverlappingClassesFitness() {
+        return overlappingClassesFitness;
+    }
+
+    public void setOverlappingClassesFitness(Integer overlappingClassesFitness) {
+        this.overlappingClassesFitness = overlappingClassesFitness;
+    }
+
+    public Integer getInvalidVenuesFitness() {
+        return invalidVenuesFitness;
+    }
+
+    public void setInvalidVenuesFitness(Integer invalidVenuesFitness) {
+        this.invalidVenuesFitness = invalidVenuesFitness;
+    }
+
+    public Integer getBuildingPreferenceFitness() {
+        return buildingPreferenceFitness;
+    }
+
+    public void setBuildingPreferenceFitness(Integer buildingPreferenceFitness) {
+        this.buildingPreferenceFitness = buildingPreferenceFitness;
+    }
+
+    public Integer getTimeslotPreferenceFitness() {
+        return timeslotPreferenceFitness;
+    }
+
+    public void setTimeslotPreferenceFitness(Integer timeslotPreferenceFitness) {
+        this.timeslotPreferenceFitness = timeslotPreferenceFitness;
+    }
+
+    public Integer getConflicts() {
+        return conflicts;
+    }
+
+    public void setConflicts(Integer conflicts) {
+        this.conflicts = conflicts;
+    }
+
+    public Integer getInvalidVenues() {
+        return invalidVenues;
+    }
+
+    public void setInvalidVenues(Integer invalidVenues) {
+        this.invalidVenues = invalidVenues;
+    }
+
+    public Integer getHardConstraintViolations() {
+        return hardConstraintViolations;
+    }
+
+    public void setHardConstraintViolations(Integer hardConstraintViolations) {
+        this.hardConstraintViolations = hardConstraintViolations;
+    }
+
+    public Boolean getValidSolution() {
+        return validSolution;
+    }
+
+    public void setValidSolution(Boolean validSolution) {
+        this.validSolution = validSolution;
+    }
+
+    public Integer getScheduledModules() {
+        return scheduledModules;
+    }
+
+    public void setScheduledModules(Integer scheduledModules) {
+        this.scheduledModules = scheduledModules;
+    }
+
+    public Integer getUnplacedModules() {
+        return unplacedModules;
+    }
+
+    public void setUnplacedModules(Integer unplacedModules) {
+        this.unplacedModules = unplacedModules;
+    }
+
+    public Double getEvaluationMillis() {
+        return evaluationMillis;
+    }
+
+    public void setEvaluationMillis(Double evaluationMillis) {
+        this.evaluationMillis = evaluationMillis;
+    }
+}
@@ -4,6 +4,7 @@ import javax.persistence.Basic;
 import javax.persistence.Column;
 import javax.persistence.EmbeddedId;
 import javax.persistence.Entity;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.MapsId;
@@ -11,7 +12,11 @@ import javax.persistence.Table;
 import java.util.Objects;
 
 @Entity
-@Table(name = "scheduled_modules", schema = "public", catalog = "ga_dev")
+// The primary key (schedule_id, module_id) already serves a schedule's whole timetable. These serve a venue's, or a timeslot's, slice of one
+@Table(name = "scheduled_modules", schema = "public", catalog = "ga_dev", indexes = {
+        @Index(name = "scheduled_modules_schedule_venue_idx", columnList = "schedule_id, venue_id"),
+        @Index(name = "scheduled_modules_schedule_timeslot_idx", columnList = "schedule_id, timeslot_id")
+})
 public class ScheduledModule {
     @EmbeddedId
     private ScheduledModulePK id;
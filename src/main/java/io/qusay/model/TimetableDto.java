@@ -0,0 +1,109 @@
+package io.qusay.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * DTO of a whole schedule's timetable: every scheduled module, with the names needed to show it, in one object
+ * Built by {@link io.qusay.services.timetable.TimetableService} from a single query, rather than walking each ScheduledModule's links
+ */
+public class TimetableDto {
+    @JsonProperty("scheduleId")
+    private final Long scheduleId;
+    // Ordered by day, then time, then module name
+    @JsonProperty("scheduledModules")
+    private final List<Entry> scheduledModules;
+
+    public TimetableDto(Long scheduleId, List<Entry> scheduledModules) {
+        this.scheduleId = scheduleId;
+        this.scheduledModules = scheduledModules;
+    }
+
+    public Long getScheduleId() {
+        return scheduleId;
+    }
+
+    public List<Entry> getScheduledModules() {
+        return scheduledModules;
+    }
+
+    /**
+     * One module, and where and when it is scheduled
+     */
+    public static class Entry {
+        @JsonProperty("moduleId")
+        private final Long moduleId;
+        @JsonProperty("moduleName")
+        private final String moduleName;
+        @JsonProperty("lecturerId")
+        private final Long lecturerId;
+        @JsonProperty("timeslotId")
+        private final Long timeslotId;
+        @JsonProperty("day")
+        private final Integer day;
+        @JsonProperty("time")
+        private final Integer time;
+        @JsonProperty("venueId")
+        private final Long venueId;
+        @JsonProperty("venueName")
+        private final String venueName;
+        @JsonProperty("lockedVenue") // Same names as the ScheduledModule REST resource
+        private final Boolean isLockedVenue;
+        @JsonProperty("lockedTimeslot")
+        private final Boolean isLockedTimeslot;
+
+        public Entry(Long moduleId, String moduleName, Long lecturerId, Long timeslotId, Integer day, Integer time, Long venueId, String venueName, Boolean isLockedVenue, Boolean isLockedTimeslot) {
+            this.moduleId = moduleId;
+            this.moduleName = moduleName;
+            this.lecturerId = lecturerId;
+            this.timeslotId = timeslotId;
+            this.day = day;
+            this.time = time;
+            this.venueId = venueId;
+            this.venueName = venueName;
+            this.isLockedVenue = isLockedVenue;
+            this.isLockedTimeslot = isLockedTimeslot;
+        }
+
+        public Long getModuleId() {
+            return moduleId;
+        }
+
+        public String getModuleName() {
+            return moduleName;
+        }
+
+        public Long getLecturerId() {
+            return lecturerId;
+        }
+
+        public Long getTimeslotId() {
+            return timeslotId;
+        }
+
+        public Integer getDay() {
+            return day;
+        }
+
+        public Integer getTime() {
+            return time;
+        }
+
+        public Long getVenueId() {
+            return venueId;
+        }
+
+        public String getVenueName() {
+            return venueName;
+        }
+
+        public Boolean getLockedVenue() {
+            return isLockedVenue;
+        }
+
+        public Boolean getLockedTimeslot() {
+            return isLockedTimeslot;
+        }
+    }
+}
@@ -1,12 +1,18 @@
 package io.qusay.services.api;
 
 import io.qusay.model.Building;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 import org.springframework.data.rest.core.annotation.RestResource;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+
 /*
 Create and edit "location" field in JSON:
 "location": {
@@ -18,6 +24,13 @@ N.b. Can't just set x or y, have to set both at once
 
 @RepositoryRestResource(collectionResourceRel = "buildings", path = "buildings")
 public interface BuildingRepository extends PagingAndSortingRepository<Building, Long> {
+    /**
+     * Every page of buildings, from Hibernate's query cache until a building is saved. See {@link TimeslotRepository#findAll(Pageable)}
+     */
+    @Override
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    Page<Building> findAll(Pageable pageable);
+
     @RestResource(path = "name", rel = "name")
     List<Building> findByName(String name);
 
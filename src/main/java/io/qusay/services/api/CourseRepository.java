@@ -2,12 +2,18 @@ package io.qusay.services.api;
 
 import io.qusay.model.Course;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 import org.springframework.data.rest.core.annotation.RestResource;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+
 // See: https://spring.io/guides/gs/accessing-data-rest/
 // Also includes details on what GET/POST/PATCH/DELETE methods work
 // /course gets all
@@ -38,6 +44,13 @@ body: "http://localhost:5000/department/3"
 @RepositoryRestResource(collectionResourceRel = "courses", path = "courses")
 // I believe the purpose of this is to skip the need for a separate @RestController. Contrast to: https://spring.io/guides/tutorials/bookmarks/
 public interface CourseRepository extends PagingAndSortingRepository<Course, Long> {
+    /**
+     * Every page of courses, from Hibernate's query cache until a course is saved. See {@link TimeslotRepository#findAll(Pageable)}
+     */
+    @Override
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    Page<Course> findAll(Pageable pageable);
+
     // /course/{ID} is created implicitly
     // All */search/* queries go here:
 
@@ -2,15 +2,28 @@ package io.qusay.services.api;
 
 import io.qusay.model.Department;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 import org.springframework.data.rest.core.annotation.RestResource;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+
 @RepositoryRestResource(collectionResourceRel = "departments", path = "departments")
 // I believe the purpose of this is to skip the need for a separate @RestController. Contrast to: https://spring.io/guides/tutorials/bookmarks/
 public interface DepartmentRepository extends PagingAndSortingRepository<Department, Long> {
+    /**
+     * Every page of departments, from Hibernate's query cache until a department is saved. See {@link TimeslotRepository#findAll(Pageable)}
+     */
+    @Override
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    Page<Department> findAll(Pageable pageable);
+
     @RestResource(path = "name", rel = "name")
     List<Department> findByName(String name);
 
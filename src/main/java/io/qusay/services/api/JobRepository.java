@@ -2,10 +2,15 @@ package io.qusay.services.api;
 
 import io.qusay.model.Job;
 
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 import org.springframework.data.rest.core.annotation.RestResource;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
 import java.util.List;
 
 @RepositoryRestResource(collectionResourceRel = "jobs", path = "jobs")
@@ -16,4 +21,26 @@ public interface JobRepository extends PagingAndSortingRepository<Job, Long> {
     // Find if a user has a job running (empty result if they do not)
     @RestResource(path = "user", rel = "user")
     List<Job> findBySchedule_Creator_UserId(Long id);
+
+    /**
+     * Write a running job's progress, without loading the entity first
+     *
+     * @return number of modified rows (0 if the job has already finished and been deleted)
+     */
+    @Modifying
+    @Query("UPDATE Job j SET j.currentGeneration = :currentGeneration, j.queuePosition = :queuePosition, j.lastStatusUpdateTime = :lastStatusUpdateTime WHERE j.jobId = :jobId")
+    @Transactional
+    @RestResource(exported = false)
+    int updateProgress(@Param("jobId") Long jobId, @Param("currentGeneration") Integer currentGeneration, @Param("queuePosition") Integer queuePosition, @Param("lastStatusUpdateTime") Timestamp lastStatusUpdateTime);
+
+    /**
+     * Save a job's new compute weight, without loading the entity first
+     *
+     * @return number of modified rows (0 if the job has already finished and been deleted)
+     */
+    @Modifying
+    @Query("UPDATE Job j SET j.computeWeightPercentage = :computeWeightPercentage WHERE j.jobId = :jobId")
+    @Transactional
+    @RestResource(exported = false)
+    int updateComputeWeight(@Param("jobId") Long jobId, @Param("computeWeightPercentage") Integer computeWeightPercentage);
 }
@@ -2,14 +2,27 @@ package io.qusay.services.api;
 
 import io.qusay.model.Lecturer;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 import org.springframework.data.rest.core.annotation.RestResource;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+
 @RepositoryRestResource(collectionResourceRel = "lecturers", path = "lecturers")
 public interface LecturerRepository extends PagingAndSortingRepository<Lecturer, Long> {
+    /**
+     * Every page of lecturers, from Hibernate's query cache until a lecturer is saved. See {@link TimeslotRepository#findAll(Pageable)}
+     */
+    @Override
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    Page<Lecturer> findAll(Pageable pageable);
+
     @RestResource(path = "name", rel = "name")
     List<Lecturer> findByName(String name);
 
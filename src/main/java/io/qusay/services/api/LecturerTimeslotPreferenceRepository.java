@@ -4,10 +4,17 @@ import io.qusay.model.LecturerTimeslotPreference;
 import io.qusay.model.LecturerTimeslotPreferencePK;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 import org.springframework.data.rest.core.annotation.RestResource;
 
+import javax.persistence.QueryHint;
+import javax.persistence.Tuple;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @RepositoryRestResource(collectionResourceRel = "lecturerTimeslotPreferences", path = "lecturerTimeslotPreferences")
 public interface LecturerTimeslotPreferenceRepository extends JpaRepository<LecturerTimeslotPreference, LecturerTimeslotPreferencePK> {
@@ -16,4 +23,12 @@ public interface LecturerTimeslotPreferenceRepository extends JpaRepository<Lect
 
     @RestResource(path = "lecturer", rel = "lecturer")
     List<LecturerTimeslotPreference> findByLecturer_LecturerId(Long id);
+
+    /**
+     * Every lecturer's preference for every timeslot, in one query. Must be read inside a transaction
+     */
+    @Query("SELECT p.id.timeslotId AS timeslotId, p.id.lecturerId AS lecturerId, p.rank AS rank FROM LecturerTimeslotPreference p")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @RestResource(exported = false)
+    Stream<Tuple> streamPreferenceRows();
 }
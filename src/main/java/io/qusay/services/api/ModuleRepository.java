@@ -2,11 +2,18 @@ package io.qusay.services.api;
 
 import io.qusay.model.Module;
 
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 import org.springframework.data.rest.core.annotation.RestResource;
 
+import javax.persistence.QueryHint;
+import javax.persistence.Tuple;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @RepositoryRestResource(collectionResourceRel = "modules", path = "modules")
 public interface ModuleRepository extends PagingAndSortingRepository<Module, Long> {
@@ -33,9 +40,27 @@ public interface ModuleRepository extends PagingAndSortingRepository<Module, Lon
      * This is the key REST call for getting the details of a schedule
      * Gets ALL the modules for a certain schedule (by schedule_id)
      * Those can then be queried to find details
-     * TODO: make one custom SQL query: input schedule ID; output: module name + ID, timeslots, venue name
+     * For the whole timetable (module name + ID, timeslots, venue name) in one request, see {@link io.qusay.services.timetable.TimetableRestController}
      * TODO: other related query: same, but limited to one Course's timetable
      */
     @RestResource(path = "scheduledModule", rel = "scheduledModule")
     List<Module> findByScheduledModules_Schedule_ScheduleId(Long id);
+
+    /**
+     * Every module, as just the columns the GA needs, in one query. Must be read inside a transaction
+     * Modules without a lecturer are included, with a null lecturerId
+     */
+    @Query("SELECT m.moduleId AS moduleId, m.name AS name, m.isLab AS lab, l.lecturerId AS lecturerId FROM Module m LEFT JOIN m.lecturer l ORDER BY m.moduleId")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @RestResource(exported = false)
+    Stream<Tuple> streamModuleRows();
+
+    /**
+     * Every (module, course) pair, with the course's enrolment and department, in one query. Must be read inside a transaction
+     */
+    @Query("SELECT cm.id.moduleId AS moduleId, c.courseId AS courseId, c.numEnrolled AS numEnrolled, d.departmentId AS departmentId " +
+            "FROM CourseModule cm JOIN cm.course c LEFT JOIN c.department d")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @RestResource(exported = false)
+    Stream<Tuple> streamCourseModuleRows();
 }
@@ -4,14 +4,18 @@ import io.qusay.model.ScheduledModule;
 import io.qusay.model.ScheduledModulePK;
 
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 import org.springframework.data.rest.core.annotation.RestResource;
-import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
+import javax.persistence.Tuple;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @RepositoryRestResource(collectionResourceRel = "scheduledModules", path = "scheduledModules")
 public interface ScheduledModuleRepository extends JpaRepository<ScheduledModule, ScheduledModulePK> {
@@ -19,18 +23,24 @@ public interface ScheduledModuleRepository extends JpaRepository<ScheduledModule
     List<ScheduledModule> findBySchedule_ScheduleId_OrderByTimeslot_TimeslotIdAsc(Long id);
 
     /**
-     * "Upsert": Inserts new or updates existing (if scheduleId/moduleId record already exists)
-     * See: https://www.postgresql.org/docs/9.6/sql-insert.html
-     *
-     * @return number of modified rows
+     * The placement of every module in a schedule, as IDs only, in one query. Must be read inside a transaction
      */
-    @Modifying
-    @Query(value = "INSERT INTO scheduled_modules (schedule_id, module_id, timeslot_id, venue_id) " +
-            "VALUES (:scheduleId, :moduleId, :timeslotId, :venueId) " +
-            "ON CONFLICT (schedule_id, module_id) DO UPDATE SET timeslot_id = :timeslotId, venue_id = :venueId",
-            nativeQuery = true)
-    @Transactional
-    int upsert(@Param("scheduleId") Long scheduleId, @Param("moduleId") Long moduleId, @Param("timeslotId") Long timeslotId, @Param("venueId") Long venueId);
+    @Query("SELECT sm.id.moduleId AS moduleId, sm.venue.id AS venueId, sm.timeslot.id AS timeslotId, sm.isLockedVenue AS lockedVenue, sm.isLockedTimeslot AS lockedTimeslot " +
+            "FROM ScheduledModule sm WHERE sm.id.scheduleId = :scheduleId ORDER BY sm.timeslot.id")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @RestResource(exported = false)
+    Stream<Tuple> streamRowsBySchedule(@Param("scheduleId") Long scheduleId);
+
+    /**
+     * A schedule's whole timetable, with the names to show, in one query. See {@link io.qusay.services.timetable.TimetableService}
+     */
+    @Query("SELECT m.moduleId AS moduleId, m.name AS moduleName, l.lecturerId AS lecturerId, t.timeslotId AS timeslotId, t.day AS day, t.time AS time, v.venueId AS venueId, v.name AS venueName, " +
+            "sm.isLockedVenue AS lockedVenue, sm.isLockedTimeslot AS lockedTimeslot " +
+            "FROM ScheduledModule sm JOIN sm.module m LEFT JOIN m.lecturer l LEFT JOIN sm.timeslot t LEFT JOIN sm.venue v WHERE sm.id.scheduleId = :scheduleId ORDER BY t.day, t.time, m.name")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @RestResource(exported = false)
+    List<Tuple> findTimetableRowsBySchedule(@Param("scheduleId") Long scheduleId);
+
 }
 
 // DEBUG: note: SELECT DISTINCT a FROM Author a INNER JOIN a.books b WHERE b.publisher.name = 'XYZ Press'
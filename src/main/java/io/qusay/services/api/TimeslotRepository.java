@@ -2,14 +2,34 @@ package io.qusay.services.api;
 
 import io.qusay.model.Timeslot;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 import org.springframework.data.rest.core.annotation.RestResource;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+
 @RepositoryRestResource(collectionResourceRel = "timeslots", path = "timeslots")
 public interface TimeslotRepository extends PagingAndSortingRepository<Timeslot, Long> {
+    /**
+     * Every page of timeslots, e.g. GET /api/timeslots. Hibernate's query cache holds the IDs, and its second-level cache the timeslots themselves, until a timeslot is saved
+     */
+    @Override
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    Page<Timeslot> findAll(Pageable pageable);
+
+    /**
+     * Every timeslot, as read by the GA's loader. Cached like {@link #findAll(Pageable)}
+     */
+    @Override
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    Iterable<Timeslot> findAll();
+
     @RestResource(path = "day", rel = "day")
     List<Timeslot> findByDay(Integer day);
 
@@ -2,15 +2,32 @@ package io.qusay.services.api;
 
 import io.qusay.model.Venue;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 import org.springframework.data.rest.core.annotation.RestResource;
 
+import javax.persistence.QueryHint;
+import javax.persistence.Tuple;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @RepositoryRestResource(collectionResourceRel = "venues", path = "venues")
 public interface VenueRepository extends PagingAndSortingRepository<Venue, Long> {
+    /**
+     * Every page of venues, from Hibernate's query cache until a venue is saved. See {@link TimeslotRepository#findAll(Pageable)}
+     */
+    @Override
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    Page<Venue> findAll(Pageable pageable);
+
     @RestResource(path = "name", rel = "name")
     List<Venue> findByName(String name);
 
@@ -30,4 +47,21 @@ public interface VenueRepository extends PagingAndSortingRepository<Venue, Long>
 
     @RestResource(path = "classrooms", rel = "classrooms")
     List<Venue> findByIsLabFalse();
+
+    /**
+     * Every venue, with its building's location, as just the columns the GA needs, in one query. Must be read inside a transaction
+     */
+    @Query("SELECT v.venueId AS venueId, v.name AS name, v.isLab AS lab, v.capacity AS capacity, b.buildingId AS buildingId, b.location AS location " +
+            "FROM Venue v LEFT JOIN v.building b ORDER BY v.venueId")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @RestResource(exported = false)
+    Stream<Tuple> streamVenueRows();
+
+    /**
+     * Every department's score for every building, in one query. Must be read inside a transaction
+     */
+    @Query("SELECT db.id.buildingId AS buildingId, db.id.departmentId AS departmentId, db.score AS score FROM DepartmentBuilding db")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @RestResource(exported = false)
+    Stream<Tuple> streamDepartmentScoreRows();
 }
@@ -0,0 +1,71 @@
+package io.qusay.services.data.restevent;
+
+import io.qusay.ga.service.ProblemInstanceCache;
+import io.qusay.model.Building;
+import io.qusay.model.Course;
+import io.qusay.model.DepartmentBuilding;
+import io.qusay.model.LecturerTimeslotPreference;
+import io.qusay.model.Module;
+import io.qusay.model.Timeslot;
+import io.qusay.model.Venue;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.rest.core.annotation.HandleAfterCreate;
+import org.springframework.data.rest.core.annotation.HandleAfterDelete;
+import org.springframework.data.rest.core.annotation.HandleAfterLinkDelete;
+import org.springframework.data.rest.core.annotation.HandleAfterLinkSave;
+import org.springframework.data.rest.core.annotation.HandleAfterSave;
+import org.springframework.data.rest.core.annotation.RepositoryEventHandler;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Whenever anything the GA's problem instance is built from is changed via the REST repositories, drop the cached instance
+ * so that the next job sees the change. See {@link ProblemInstanceCache}
+ */
+@Component
+@RepositoryEventHandler
+public class ProblemInstanceEventHandler {
+    // Entities that timeslots, venues and modules are built from. Buildings are included for their location
+    private static final List<Class<?>> PROBLEM_INSTANCE_ENTITIES = Arrays.asList(
+            Module.class, Venue.class, Timeslot.class, Course.class, DepartmentBuilding.class, LecturerTimeslotPreference.class, Building.class);
+
+    private final ProblemInstanceCache problemInstanceCache;
+
+    @Autowired
+    public ProblemInstanceEventHandler(ProblemInstanceCache problemInstanceCache) {
+        this.problemInstanceCache = problemInstanceCache;
+    }
+
+    /**
+     * Receives events for every entity type: only those in the problem instance invalidate it
+     */
+    @HandleAfterCreate
+    @HandleAfterSave
+    @HandleAfterDelete
+    public void entityChanged(Object entity) {
+        if (isPartOfProblemInstance(entity)) {
+            problemInstanceCache.invalidate();
+        }
+    }
+
+    /**
+     * An association was changed, e.g. a module was given a new lecturer
+     */
+    @HandleAfterLinkSave
+    @HandleAfterLinkDelete
+    public void linkChanged(Object entity, Object linked) {
+        entityChanged(entity);
+    }
+
+    private static boolean isPartOfProblemInstance(Object entity) {
+        for (Class<?> entityClass : PROBLEM_INSTANCE_ENTITIES) {
+            if (entityClass.isInstance(entity)) { // Also matches Hibernate proxies, which are subclasses
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,68 @@
+package io.qusay.services.data.restevent;
+
+import io.qusay.model.Course;
+import io.qusay.model.Lecturer;
+import io.qusay.model.Module;
+import io.qusay.model.Schedule;
+import io.qusay.model.ScheduledModule;
+import io.qusay.model.Timeslot;
+import io.qusay.model.Venue;
+import io.qusay.services.timetable.TimetableService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.rest.core.annotation.HandleAfterCreate;
+import org.springframework.data.rest.core.annotation.HandleAfterDelete;
+import org.springframework.data.rest.core.annotation.HandleAfterLinkDelete;
+import org.springframework.data.rest.core.annotation.HandleAfterLinkSave;
+import org.springframework.data.rest.core.annotation.HandleAfterSave;
+import org.springframework.data.rest.core.annotation.RepositoryEventHandler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Whenever a timetable changes via the REST repositories, drop it from the {@link TimetableService}'s cache
+ * A scheduled module or schedule only changes its own schedule's timetable. A module, venue or timeslot (e.g. renamed) may be in all of them,
+ * as may a course or lecturer, by changing which modules are in a course's, department's or lecturer's slice of them
+ * Which courses teach a module (course_module) has no REST repository, and can't be changed through a course or module either
+ * (both sides are mapped by CourseModule), so it only changes directly in the database: see {@link TimetableService}
+ */
+@Component
+@RepositoryEventHandler
+public class TimetableEventHandler {
+    private final TimetableService timetableService;
+
+    @Autowired
+    public TimetableEventHandler(TimetableService timetableService) {
+        this.timetableService = timetableService;
+    }
+
+    /**
+     * Receives events for every entity type: only those shown in a timetable invalidate it
+     */
+    @HandleAfterCreate
+    @HandleAfterSave
+    @HandleAfterDelete
+    public void entityChanged(Object entity) {
+        if (entity instanceof ScheduledModule) {
+            ScheduledModule scheduledModule = (ScheduledModule) entity;
+            if (scheduledModule.getId() != null && scheduledModule.getId().getScheduleId() != null) {
+                timetableService.invalidate(scheduledModule.getId().getScheduleId());
+            } else {
+                timetableService.invalidateAll();
+            }
+        } else if (entity instanceof Schedule) {
+            timetableService.invalidate(((Schedule) entity).getScheduleId());
+        } else if (entity instanceof Module || entity instanceof Venue || entity instanceof Timeslot
+                || entity instanceof Course || entity instanceof Lecturer) {
+            timetableService.invalidateAll();
+        }
+    }
+
+    /**
+     * An association was changed, e.g. a scheduled module was moved to another venue
+     */
+    @HandleAfterLinkSave
+    @HandleAfterLinkDelete
+    public void linkChanged(Object entity, Object linked) {
+        entityChanged(entity);
+    }
+}
@@ -0,0 +1,85 @@
+package io.qusay.services.timetable;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+@RestController
+@RequestMapping("/timetable-api")
+// Like /genetic-algorithm-api, runs from /timetable-api rather than under the data REST repositories' /api
+public class TimetableRestController {
+    @Autowired
+    TimetableService timetableService;
+
+    /**
+     * A schedule's whole timetable in one response: each module's name, timeslot and venue name. See {@link io.qusay.model.TimetableDto}
+     * Replaces walking the links of each ScheduledModule in /api/scheduledModules/search/schedule
+     *
+     * Has an ETag. Send it back as If-None-Match to get an empty HTTP 304 Not Modified if the timetable hasn't changed since
+     *
+     * @param scheduleId Primary key of an existing record in the Schedules Table
+     */
+    @GetMapping(value = "/schedule/{scheduleId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getTimetable(@PathVariable Long scheduleId, WebRequest request) {
+        return respond(timetableService.getTimetable(scheduleId), request);
+    }
+
+    /**
+     * Only the modules taught on one course. Same format and ETags as {@link #getTimetable}
+     * An ID with no modules in the schedule gets an empty list, not HTTP 404
+     */
+    @GetMapping(value = "/schedule/{scheduleId}/course/{courseId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getCourseTimetable(@PathVariable Long scheduleId, @PathVariable Long courseId, WebRequest request) {
+        return respond(timetableService.getTimetable(scheduleId, TimetableService.Filter.COURSE, courseId), request);
+    }
+
+    /**
+     * Only the modules taught by one lecturer. Same format and ETags as {@link #getTimetable}
+     */
+    @GetMapping(value = "/schedule/{scheduleId}/lecturer/{lecturerId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getLecturerTimetable(@PathVariable Long scheduleId, @PathVariable Long lecturerId, WebRequest request) {
+        return respond(timetableService.getTimetable(scheduleId, TimetableService.Filter.LECTURER, lecturerId), request);
+    }
+
+    /**
+     * Only the modules held in one venue. Same format and ETags as {@link #getTimetable}
+     */
+    @GetMapping(value = "/schedule/{scheduleId}/venue/{venueId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getVenueTimetable(@PathVariable Long scheduleId, @PathVariable Long venueId, WebRequest request) {
+        return respond(timetableService.getTimetable(scheduleId, TimetableService.Filter.VENUE, venueId), request);
+    }
+
+    /**
+     * Only the modules taught on any of one department's courses. Same format and ETags as {@link #getTimetable}
+     */
+    @GetMapping(value = "/schedule/{scheduleId}/department/{departmentId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getDepartmentTimetable(@PathVariable Long scheduleId, @PathVariable Long departmentId, WebRequest request) {
+        return respond(timetableService.getTimetable(scheduleId, TimetableService.Filter.DEPARTMENT, departmentId), request);
+    }
+
+    /**
+     * The best so far of the job running on the schedule, as of its last snapshot, so a long job's partial timetable can be opened mid-run
+     * The schedule itself only changes once the job is done. Same format and ETags as {@link #getTimetable}, and empty if there's no snapshot
+     */
+    @GetMapping(value = "/schedule/{scheduleId}/snapshot", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getSnapshotTimetable(@PathVariable Long scheduleId, WebRequest request) {
+        return respond(timetableService.getSnapshotTimetable(scheduleId), request);
+    }
+
+    private static ResponseEntity<byte[]> respond(TimetableService.View timetable, WebRequest request) {
+        if (request.checkNotModified(timetable.getETag())) {
+            return null; // HTTP 304, with the ETag header already set
+        }
+        return ResponseEntity.ok()
+                .eTag(timetable.getETag())
+                .cacheControl(CacheControl.noCache()) // Browsers may keep it, but must check it's still current each time
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(timetable.getJson());
+    }
+}
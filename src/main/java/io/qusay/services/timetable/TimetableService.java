@@ -0,0 +1,310 @@
+package io.qusay.services.timetable;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.qusay.exception.DataNotFoundException;
+import io.qusay.model.TimetableDto;
+import io.qusay.services.api.ModuleRepository;
+import io.qusay.services.api.ScheduleRepository;
+import io.qusay.services.api.ScheduledModuleRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.DigestUtils;
+
+import javax.persistence.Tuple;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Whole timetables of schedules, read by one query each, and kept ready as JSON until the schedule changes
+ * Each is indexed by course, lecturer, venue and department too, so that one person's slice of it is a lookup rather than a query
+ *
+ * Invalidated by the GA's write back (see {@link io.qusay.ga.service.GaToDbSerializer}), and by changes made through the REST API
+ * (see {@link io.qusay.services.data.restevent.TimetableEventHandler}). Changes made directly in the database aren't seen until then
+ */
+@Service
+public class TimetableService {
+    // How many schedules' timetables to keep. The least recently read is dropped first
+    private static final int MAX_CACHED_SCHEDULES = 100;
+
+    /**
+     * Ways to slice a timetable. A module is in a course's or department's slice if it's taught on that course, or on one of that department's courses
+     */
+    public enum Filter {
+        COURSE, LECTURER, VENUE, DEPARTMENT
+    }
+
+    @Autowired
+    private ScheduleRepository scheduleRepository;
+
+    @Autowired
+    private ScheduledModuleRepository scheduledModuleRepository;
+
+    @Autowired
+    private ModuleRepository moduleRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Guards both fields below
+    private final Object lock = new Object();
+    private final Map<Long, Timetable> cache = new LinkedHashMap<Long, Timetable>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Timetable> eldest) {
+            return size() > MAX_CACHED_SCHEDULES;
+        }
+    };
+    // Bumped on every invalidation, so that a load which started before a change is never cached
+    private long version;
+
+    /**
+     * @return The schedule's whole timetable, from the cache, or else freshly read from the database
+     * @throws DataNotFoundException If there's no such schedule
+     */
+    public View getTimetable(Long scheduleId) {
+        return getIndexedTimetable(scheduleId).whole;
+    }
+
+    /**
+     * @param id ID of the course, lecturer, venue or department. One with no modules in the schedule gets an empty timetable
+     * @return One slice of the schedule's timetable. Worked out once, then kept with the timetable until it changes
+     * @throws DataNotFoundException If there's no such schedule
+     */
+    public View getTimetable(Long scheduleId, Filter filter, Long id) {
+        Timetable timetable = getIndexedTimetable(scheduleId);
+        final int[] positions = timetable.index.get(filter).get(id);
+        if (positions == null) {
+            // Only IDs in the index get a slice of their own. Otherwise every made-up ID anyone asked for would be kept until the timetable changes
+            return timetable.empty;
+        }
+        return timetable.slices.get(filter).computeIfAbsent(id, key -> {
+            List<TimetableDto.Entry> entries = new ArrayList<>(positions.length);
+            for (int position : positions) {
+                entries.add(timetable.whole.getEntries().get(position));
+            }
+            return serialize(scheduleId, entries);
+        });
+    }
+
+    /**
+     * The best so far of the job running on a schedule, as staged by its last snapshot (see {@link io.qusay.ga.service.GaToDbSerializer#writeSnapshot}), with the schedule's locks
+     * Read fresh every time rather than cached, since it changes while the job runs
+     *
+     * @return Empty if no job is running on the schedule, or it hasn't staged a snapshot yet
+     * @throws DataNotFoundException If there's no such schedule
+     */
+    public View getSnapshotTimetable(Long scheduleId) {
+        if (!scheduleRepository.existsById(scheduleId)) {
+            throw new DataNotFoundException("No schedule with ID " + scheduleId);
+        }
+
+        // No entity for the staging table, so plain SQL. Locks are nullable in the database, null meaning not locked
+        List<TimetableDto.Entry> entries = jdbcTemplate.query(
+                "SELECT s.module_id, m.name AS module_name, m.lecturer_id, s.timeslot_id, t.day, t.time, s.venue_id, v.name AS venue_name, sm.is_locked_venue, sm.is_locked_timeslot " +
+                        "FROM schedules sc JOIN scheduled_module_snapshots s ON s.job_id = sc.job_id JOIN modules m ON m.module_id = s.module_id " +
+                        "LEFT JOIN timeslots t ON t.timeslot_id = s.timeslot_id LEFT JOIN venues v ON v.venue_id = s.venue_id " +
+                        "LEFT JOIN scheduled_modules sm ON sm.schedule_id = sc.schedule_id AND sm.module_id = s.module_id " +
+                        "WHERE sc.schedule_id = ? ORDER BY t.day, t.time, m.name",
+                (row, rowNumber) -> new TimetableDto.Entry(
+                        row.getLong("module_id"), row.getString("module_name"), row.getObject("lecturer_id", Long.class),
+                        row.getObject("timeslot_id", Long.class), row.getObject("day", Integer.class), row.getObject("time", Integer.class),
+                        row.getObject("venue_id", Long.class), row.getString("venue_name"),
+                        row.getBoolean("is_locked_venue"), row.getBoolean("is_locked_timeslot")),
+                scheduleId);
+        return serialize(scheduleId, entries);
+    }
+
+    /**
+     * Forget one schedule's timetable, once a change to it has been committed
+     */
+    public void invalidate(Long scheduleId) {
+        synchronized (lock) {
+            ++version;
+            cache.remove(scheduleId);
+        }
+    }
+
+    /**
+     * Forget every timetable, e.g. when a module is renamed
+     */
+    public void invalidateAll() {
+        synchronized (lock) {
+            ++version;
+            cache.clear();
+        }
+    }
+
+    private Timetable getIndexedTimetable(Long scheduleId) {
+        final long loadingVersion;
+        synchronized (lock) {
+            Timetable cached = cache.get(scheduleId);
+            if (cached != null) {
+                return cached;
+            }
+            loadingVersion = version;
+        }
+
+        Timetable loaded = loadTimetable(scheduleId);
+        synchronized (lock) {
+            if (version == loadingVersion) {
+                cache.put(scheduleId, loaded);
+            }
+        }
+        return loaded;
+    }
+
+    private Timetable loadTimetable(Long scheduleId) {
+        if (!scheduleRepository.existsById(scheduleId)) {
+            throw new DataNotFoundException("No schedule with ID " + scheduleId);
+        }
+
+        List<Tuple> rows = scheduledModuleRepository.findTimetableRowsBySchedule(scheduleId);
+        List<TimetableDto.Entry> entries = new ArrayList<>(rows.size());
+        for (Tuple row : rows) {
+            entries.add(new TimetableDto.Entry(
+                    row.get("moduleId", Long.class), row.get("moduleName", String.class), row.get("lecturerId", Long.class),
+                    row.get("timeslotId", Long.class), row.get("day", Integer.class), row.get("time", Integer.class),
+                    row.get("venueId", Long.class), row.get("venueName", String.class),
+                    // Locks are nullable in the database, null meaning not locked
+                    Boolean.TRUE.equals(row.get("lockedVenue", Boolean.class)), Boolean.TRUE.equals(row.get("lockedTimeslot", Boolean.class))));
+        }
+
+        return new Timetable(serialize(scheduleId, entries), buildIndex(entries), serialize(scheduleId, new ArrayList<>()));
+    }
+
+    /**
+     * For each filter, the positions in the timetable of the modules in each course/lecturer/venue/department's slice. Positions are ascending, so slices keep the timetable's order
+     */
+    private Map<Filter, Map<Long, int[]>> buildIndex(List<TimetableDto.Entry> entries) {
+        // Courses, and departments through their courses, of every module. Not per schedule, but cheap to read again, and only read when a timetable changes
+        Map<Long, Set<Long>> coursesByModule = new HashMap<>();
+        Map<Long, Set<Long>> departmentsByModule = new HashMap<>();
+        readCourseModules(coursesByModule, departmentsByModule);
+
+        Map<Filter, Map<Long, List<Integer>>> positions = new EnumMap<>(Filter.class);
+        for (Filter filter : Filter.values()) {
+            positions.put(filter, new HashMap<>());
+        }
+        for (int i = 0; i < entries.size(); ++i) {
+            TimetableDto.Entry entry = entries.get(i);
+            addPosition(positions.get(Filter.LECTURER), entry.getLecturerId(), i);
+            addPosition(positions.get(Filter.VENUE), entry.getVenueId(), i);
+            for (Long courseId : coursesByModule.getOrDefault(entry.getModuleId(), Collections.emptySet())) {
+                addPosition(positions.get(Filter.COURSE), courseId, i);
+            }
+            for (Long departmentId : departmentsByModule.getOrDefault(entry.getModuleId(), Collections.emptySet())) {
+                addPosition(positions.get(Filter.DEPARTMENT), departmentId, i);
+            }
+        }
+
+        Map<Filter, Map<Long, int[]>> index = new EnumMap<>(Filter.class);
+        positions.forEach((filter, byId) -> {
+            Map<Long, int[]> arrays = new HashMap<>(byId.size() * 2);
+            byId.forEach((id, list) -> arrays.put(id, list.stream().mapToInt(Integer::intValue).toArray()));
+            index.put(filter, arrays);
+        });
+        return index;
+    }
+
+    private void readCourseModules(Map<Long, Set<Long>> coursesByModule, Map<Long, Set<Long>> departmentsByModule) {
+        // The rows are streamed, so must be read inside a transaction
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<Tuple> rows = moduleRepository.streamCourseModuleRows()) {
+                rows.forEach(row -> {
+                    Long moduleId = row.get("moduleId", Long.class);
+                    coursesByModule.computeIfAbsent(moduleId, key -> new HashSet<>()).add(row.get("courseId", Long.class));
+                    Long departmentId = row.get("departmentId", Long.class);
+                    if (departmentId != null) {
+                        departmentsByModule.computeIfAbsent(moduleId, key -> new HashSet<>()).add(departmentId);
+                    }
+                });
+            }
+        });
+    }
+
+    private static void addPosition(Map<Long, List<Integer>> byId, Long id, int position) {
+        if (id != null) {
+            byId.computeIfAbsent(id, key -> new ArrayList<>()).add(position);
+        }
+    }
+
+    private View serialize(Long scheduleId, List<TimetableDto.Entry> entries) {
+        try {
+            return new View(Collections.unmodifiableList(entries), objectMapper.writeValueAsBytes(new TimetableDto(scheduleId, entries)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize timetable of schedule " + scheduleId, e);
+        }
+    }
+
+    /**
+     * One schedule's timetable, its indexes, and the slices of it that have been asked for so far
+     */
+    private static final class Timetable {
+        private final View whole;
+        private final Map<Filter, Map<Long, int[]>> index;
+        private final Map<Filter, Map<Long, View>> slices = new EnumMap<>(Filter.class);
+        // The slice for every ID with no modules in this schedule
+        private final View empty;
+
+        Timetable(View whole, Map<Filter, Map<Long, int[]>> index, View empty) {
+            this.whole = whole;
+            this.index = index;
+            this.empty = empty;
+            for (Filter filter : Filter.values()) {
+                slices.put(filter, new ConcurrentHashMap<>());
+            }
+        }
+    }
+
+    /**
+     * A timetable, or a slice of one, serialized once for every request that reads it
+     */
+    public static final class View {
+        private final List<TimetableDto.Entry> entries;
+        private final byte[] json;
+        // A hash of the JSON, so it's the same after a restart, or on another server, for the same timetable
+        private final String eTag;
+
+        View(List<TimetableDto.Entry> entries, byte[] json) {
+            this.entries = entries;
+            this.json = json;
+            this.eTag = DigestUtils.md5DigestAsHex(json);
+        }
+
+        /**
+         * @return What the JSON was made from. Unmodifiable
+         */
+        public List<TimetableDto.Entry> getEntries() {
+            return entries;
+        }
+
+        /**
+         * @return The JSON of a {@link TimetableDto}. Shared: must not be modified
+         */
+        public byte[] getJson() {
+            return json;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+-- Nothing creates or updates the tables from the entities (there's no ddl-auto), so columns and indexes the app needs beyond the original schema are added here
+-- Run against the database on every startup (spring.sql.init.mode=always), so every statement must be safe to run again
+
+-- jobs.queue_position: where a waiting job is in the queue, see Job.queuePosition
+ALTER TABLE public.jobs ADD COLUMN IF NOT EXISTS queue_position integer;
+
+-- jobs.parameters and jobs.compute_weight_percentage: how each job was asked to run, so that jobs can be resumed or queued again after a restart
+ALTER TABLE public.jobs ADD COLUMN IF NOT EXISTS parameters text;
+ALTER TABLE public.jobs ADD COLUMN IF NOT EXISTS compute_weight_percentage integer;
+
+-- Indexes for the timetable and GA queries. Also declared on the entities (ScheduledModule, Module, CourseModule), but only created here
+CREATE INDEX IF NOT EXISTS scheduled_modules_schedule_venue_idx ON public.scheduled_modules (schedule_id, venue_id);
+CREATE INDEX IF NOT EXISTS scheduled_modules_schedule_timeslot_idx ON public.scheduled_modules (schedule_id, timeslot_id);
+CREATE INDEX IF NOT EXISTS modules_lecturer_idx ON public.modules (lecturer_id);
+CREATE INDEX IF NOT EXISTS course_module_module_idx ON public.course_module (module_id);
+
+-- scheduled_module_snapshots: each running job's best schedule so far, staged apart from the schedule's own scheduled_modules (which may hold hand-made edits)
+-- Replaced by the job's final result when that is written, and deleted with the job. See GaToDbSerializer
+CREATE TABLE IF NOT EXISTS public.scheduled_module_snapshots (
+    job_id bigint NOT NULL REFERENCES public.jobs (job_id) ON DELETE CASCADE,
+    module_id bigint NOT NULL,
+    timeslot_id bigint,
+    venue_id bigint,
+    PRIMARY KEY (job_id, module_id)
+);
@@ -0,0 +1,70 @@
+package io.qusay.ga.geneticalgorithm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static io.qusay.ga.geneticalgorithm.TestProblems.randomGenes;
+import static io.qusay.ga.geneticalgorithm.TestProblems.randomProblem;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChromosomeFitnessTest {
+    @Test
+    void sameFitnessAsComparingEveryPair() {
+        for (long seed = 1; seed <= 20; ++seed) {
+            Random random = new Random(seed);
+            GeneticAlgorithmJobData data = randomProblem(random, 4, 15);
+            Gene[] genes = randomGenes(data, random);
+
+            FitnessBreakdown breakdown = Chromosome.calculateFitness(data, genes);
+            int[] allPairs = FitnessBenchmark.calculateFitnessAllPairs(data, genes);
+
+            assertEquals(allPairs[0], breakdown.getFitness(), "fitness, seed=" + seed);
+            assertEquals(allPairs[1], breakdown.getHardConstraintViolations(), "hard constraint violations, seed=" + seed);
+            assertEquals(breakdown.getFitness(), breakdown.getHardFitness() + breakdown.getSoftFitness());
+            assertEquals(breakdown.getHardConstraintViolations(), breakdown.getNumConflicts() + breakdown.getNumInvalidVenues());
+            assertEquals(breakdown.getHardConstraintViolations() == 0, breakdown.isValidSolution());
+        }
+    }
+
+    @Test
+    void chromosomeUsesTheSameFitness() {
+        Random random = new Random(7);
+        GeneticAlgorithmJobData data = randomProblem(random, 4, 15);
+        Gene[] genes = randomGenes(data, random);
+
+        Chromosome chromosome = new Chromosome(data, Arrays.asList(genes));
+
+        assertEquals(FitnessBenchmark.calculateFitnessAllPairs(data, genes)[0], chromosome.getCachedFitness());
+        assertEquals(FitnessBenchmark.calculateFitnessAllPairs(data, genes)[1], chromosome.getHardConstraintViolations());
+    }
+
+    @Test
+    void eachConflictingPairCountsOnce() {
+        GeneticAlgorithmJobData data = randomProblem(new Random(1), 4, 15);
+        VenueGA venue = data.getVenues().get(1);
+        TimeslotGA timeslot = data.getTimeslots().get(0);
+        // Three modules in the same venue and timeslot: three conflicting pairs
+        Gene[] genes = new Gene[3];
+        for (int i = 0; i < genes.length; ++i) {
+            genes[i] = new Gene(data.getModules().get(i + 1), venue, timeslot, data);
+        }
+
+        FitnessBreakdown breakdown = Chromosome.calculateFitness(data, genes);
+
+        assertEquals(3, breakdown.getNumConflicts());
+        assertEquals(FitnessBenchmark.calculateFitnessAllPairs(data, genes)[0], breakdown.getFitness());
+        assertFalse(breakdown.isValidSolution());
+    }
+
+    @Test
+    void emptyScheduleIsValid() {
+        FitnessBreakdown breakdown = Chromosome.calculateFitness(randomProblem(new Random(1), 4, 15), new Gene[0]);
+
+        assertEquals(0, breakdown.getFitness());
+        assertTrue(breakdown.isValidSolution());
+    }
+}
@@ -0,0 +1,80 @@
+package io.qusay.ga.geneticalgorithm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static io.qusay.ga.geneticalgorithm.TestProblems.randomProblem;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class ChromosomeHashTest {
+    @Test
+    void clonesHaveTheSameHashes() {
+        GeneticAlgorithmJobData data = problem();
+        Chromosome original = new Chromosome(data);
+        Chromosome clone = new Chromosome(original);
+
+        assertEquals(original.getHash(), clone.getHash());
+        assertEquals(original.getVerificationHash(), clone.getVerificationHash());
+    }
+
+    @Test
+    void mutationKeepsTheHashesUpToDate() {
+        GeneticAlgorithmJobData data = problem();
+        Chromosome chromosome = new Chromosome(data);
+        for (int i = 0; i < 100; ++i) {
+            chromosome = chromosome.mutate(3);
+            assertHashesMatchAFreshChromosome(data, chromosome);
+        }
+    }
+
+    @Test
+    void crossoverKeepsTheHashesUpToDate() {
+        GeneticAlgorithmJobData data = problem();
+        for (int i = 0; i < 100; ++i) {
+            Chromosome child = new Chromosome(data);
+            Chromosome other = new Chromosome(data);
+            switch (i % 3) {
+                case 0:
+                    child.crossoverBinary(other);
+                    break;
+                case 1:
+                    child.crossoverPiece(other);
+                    break;
+                default:
+                    child.crossoverTwoPieces(other);
+                    break;
+            }
+            assertHashesMatchAFreshChromosome(data, child);
+        }
+    }
+
+    @Test
+    void placementAndPositionBothChangeTheHash() {
+        GeneticAlgorithmJobData data = problem();
+        ModuleGA first = data.getIndexedModule(0);
+        ModuleGA second = data.getIndexedModule(1);
+        VenueGA venueA = data.getIndexedVenue(0);
+        VenueGA venueB = data.getIndexedVenue(1);
+        TimeslotGA timeslot = data.getIndexedTimeslot(0);
+
+        Chromosome chromosome = new Chromosome(data, Arrays.asList(new Gene(first, venueA, timeslot, data), new Gene(second, venueB, timeslot, data)));
+        Chromosome moved = new Chromosome(data, Arrays.asList(new Gene(first, venueB, timeslot, data), new Gene(second, venueB, timeslot, data)));
+        Chromosome swapped = new Chromosome(data, Arrays.asList(new Gene(first, venueB, timeslot, data), new Gene(second, venueA, timeslot, data)));
+
+        assertNotEquals(chromosome.getHash(), moved.getHash());
+        assertNotEquals(chromosome.getHash(), swapped.getHash());
+    }
+
+    private static void assertHashesMatchAFreshChromosome(GeneticAlgorithmJobData data, Chromosome chromosome) {
+        Chromosome fresh = new Chromosome(data, Arrays.asList(chromosome.getGenes()));
+        assertEquals(fresh.getHash(), chromosome.getHash());
+        assertEquals(fresh.getVerificationHash(), chromosome.getVerificationHash());
+    }
+
+    private static GeneticAlgorithmJobData problem() {
+        return randomProblem(new Random(1), 2, 4);
+    }
+}
@@ -0,0 +1,121 @@
+package io.qusay.ga.geneticalgorithm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static io.qusay.ga.geneticalgorithm.TestProblems.module;
+import static io.qusay.ga.geneticalgorithm.TestProblems.timeslots;
+import static io.qusay.ga.geneticalgorithm.TestProblems.venue;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DomainPrunerTest {
+    private final VenueGA classroom = venue(1, false, 50);
+    private final VenueGA lab = venue(2, true, 50);
+    private final VenueGA hall = venue(3, false, 500);
+
+    @Test
+    void invalidVenuesAreRemoved() {
+        ModuleGA lecture = module(1, false, 100, 1, 10);
+        GeneticAlgorithmJobData data = problem(lecture);
+
+        DomainPruner.prune(data);
+
+        ModuleDomain domain = data.getModuleDomains().get(lecture);
+        assertArrayEquals(new int[]{2}, domain.getVenueIndexes());
+        assertEquals(3, domain.size());
+    }
+
+    @Test
+    void timeslotsTheLecturerCannotTeachAreRemoved() {
+        ModuleGA lecture = module(1, false, 10, 7, 10);
+        GeneticAlgorithmJobData data = problem(lecture);
+        data.getTimeslots().get(1).getLecturerPreferences().put(7L, 0);
+
+        DomainPruner.prune(data);
+
+        assertArrayEquals(new int[]{0, 2}, data.getModuleDomains().get(lecture).getTimeslotIndexes());
+    }
+
+    @Test
+    void lockedModulesBlockTheirLecturerCourseAndCell() {
+        ModuleGA locked = module(1, false, 10, 1, 10);
+        ModuleGA sameLecturer = module(2, false, 10, 1, 11);
+        ModuleGA sameCourse = module(3, false, 10, 2, 10);
+        ModuleGA other = module(4, false, 10, 3, 12);
+        GeneticAlgorithmJobData data = problem(locked, sameLecturer, sameCourse, other);
+        Gene lockedGene = new Gene(locked, classroom, data.getTimeslots().get(0), data);
+        lockedGene.setLockedVenue(true);
+        lockedGene.setLockedTimeslot(true);
+        data.setScheduledModules(Arrays.asList(lockedGene,
+                new Gene(sameLecturer, hall, data.getTimeslots().get(1), data),
+                new Gene(sameCourse, hall, data.getTimeslots().get(2), data),
+                new Gene(other, hall, data.getTimeslots().get(2), data)));
+        data.setModifyExistingJob(true);
+
+        DomainPruner.prune(data);
+
+        ModuleDomain lockedDomain = data.getModuleDomains().get(locked);
+        assertEquals(1, lockedDomain.size());
+        assertTrue(lockedDomain.contains(0, 0));
+        assertArrayEquals(new int[]{1, 2}, data.getModuleDomains().get(sameLecturer).getTimeslotIndexes());
+        assertArrayEquals(new int[]{1, 2}, data.getModuleDomains().get(sameCourse).getTimeslotIndexes());
+
+        ModuleDomain otherDomain = data.getModuleDomains().get(other);
+        assertFalse(otherDomain.contains(0, 0));
+        assertTrue(otherDomain.contains(2, 0));
+        assertEquals(5, otherDomain.size());
+    }
+
+    @Test
+    void overConstrainedModulesKeepEverything() {
+        ModuleGA tooBig = module(1, true, 1000, 1, 10);
+        GeneticAlgorithmJobData data = problem(tooBig);
+        for (TimeslotGA timeslot : data.getTimeslots()) {
+            timeslot.getLecturerPreferences().put(1L, 0);
+        }
+
+        DomainPruner.prune(data);
+
+        assertEquals(9, data.getModuleDomains().get(tooBig).size());
+    }
+
+    @Test
+    void onlyTheRuleThatEmptiesTheTimeslotsIsSkipped() {
+        ModuleGA locked = module(1, false, 10, 1, 10);
+        ModuleGA sameLecturer = module(2, false, 10, 1, 11);
+        GeneticAlgorithmJobData data = problem(locked, sameLecturer);
+        Gene lockedGene = new Gene(locked, classroom, data.getTimeslots().get(0), data);
+        lockedGene.setLockedTimeslot(true);
+        data.setScheduledModules(Arrays.asList(lockedGene, new Gene(sameLecturer, hall, data.getTimeslots().get(1), data)));
+        data.setModifyExistingJob(true);
+        // The lecturer is only free in the timeslot their locked module already takes
+        data.getTimeslots().get(1).getLecturerPreferences().put(1L, 0);
+        data.getTimeslots().get(2).getLecturerPreferences().put(1L, 0);
+
+        DomainPruner.prune(data);
+
+        assertArrayEquals(new int[]{1, 2}, data.getModuleDomains().get(sameLecturer).getTimeslotIndexes());
+    }
+
+    @Test
+    void randomPlacementsStayInsideTheDomain() {
+        ModuleGA lecture = module(1, false, 100, 7, 10);
+        GeneticAlgorithmJobData data = problem(lecture);
+        data.getTimeslots().get(0).getLecturerPreferences().put(7L, 0);
+        DomainPruner.prune(data);
+
+        for (int i = 0; i < 100; ++i) {
+            Gene gene = new Gene(lecture, data);
+            assertEquals(hall, gene.getVenue());
+            assertFalse(gene.getTimeslot() == data.getTimeslots().get(0));
+        }
+    }
+
+    private GeneticAlgorithmJobData problem(ModuleGA... modules) {
+        return TestProblems.problem(Arrays.asList(classroom, lab, hall), timeslots(3), modules);
+    }
+}
@@ -0,0 +1,124 @@
+package io.qusay.ga.geneticalgorithm;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark: evaluate a synthetic schedule of 5,000 modules with {@link Chromosome#calculateFitness(GeneticAlgorithmJobData, Gene[])},
+ * which only compares genes in the same timeslot, against comparing every pair of genes
+ *
+ * Also checks that both give exactly the same result.
+ *
+ * Not a unit test (surefire won't pick it up): run its main() by hand
+ */
+public class FitnessBenchmark {
+    private static final int DEPARTMENTS = 50;
+    private static final int MODULES_PER_DEPARTMENT = 100;
+    private static final int VENUES_PER_DEPARTMENT = 4;
+    private static final int RUNS = 20;
+
+    public static void main(String[] args) {
+        Random random = new Random(1);
+        GeneticAlgorithmJobData data = createProblem(random);
+        Gene[] genes = new Gene[data.getChromosomeSize()];
+        for (int i = 0; i < genes.length; ++i) {
+            genes[i] = new Gene(data.getIndexedModule(i), data.getRandomVenue(), data.getRandomTimeslot(), data);
+        }
+
+        FitnessBreakdown indexed = null;
+        int[] allPairs = null;
+        long bestIndexedNanos = Long.MAX_VALUE;
+        long bestAllPairsNanos = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; ++run) {
+            long start = System.nanoTime();
+            indexed = Chromosome.calculateFitness(data, genes);
+            bestIndexedNanos = Math.min(bestIndexedNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            allPairs = calculateFitnessAllPairs(data, genes);
+            bestAllPairsNanos = Math.min(bestAllPairsNanos, System.nanoTime() - start);
+        }
+
+        System.out.println("Modules=" + genes.length + ", venues=" + data.getVenues().size() + ", timeslots=" + data.getTimeslots().size()
+                + ", fitness=" + indexed.getFitness() + " (hard=" + indexed.getHardFitness() + ", soft=" + indexed.getSoftFitness() + "), conflicts=" + indexed.getNumConflicts()
+                + ", invalid venues=" + indexed.getNumInvalidVenues());
+        System.out.println("Best of " + RUNS + ": indexed=" + bestIndexedNanos / 1_000_000.0 + "ms, all pairs=" + bestAllPairsNanos / 1_000_000.0 + "ms");
+        if (indexed.getFitness() != allPairs[0] || indexed.getHardConstraintViolations() != allPairs[1]) {
+            throw new AssertionError("Indexed fitness " + indexed.getFitness() + "/" + indexed.getHardConstraintViolations()
+                    + " differs from all pairs " + allPairs[0] + "/" + allPairs[1]);
+        }
+        System.out.println("Same result OK");
+    }
+
+    /**
+     * The fitness function as it was before genes were grouped by timeslot. Also the reference for {@link ChromosomeFitnessTest}
+     *
+     * @return {fitness, hard constraint violations}
+     */
+    static int[] calculateFitnessAllPairs(GeneticAlgorithmJobData data, Gene[] genes) {
+        final int EACH_SOFT_CONSTRAINT = Chromosome.ONE_HARD_CONSTRAINT / (2 * data.getChromosomeSize());
+        int fitnessFromOverlappingClasses = genes.length * Chromosome.ONE_HARD_CONSTRAINT;
+        int fitnessFromInvalidVenues = genes.length * Chromosome.ONE_HARD_CONSTRAINT;
+        int fitnessFromBuildingPreference = 0;
+        int fitnessFromTimeslotPreference = 0;
+        int hardConstraintViolations = 0;
+        for (int i = 0; i < genes.length; ++i) {
+            if (!genes[i].isInValidVenue()) {
+                fitnessFromInvalidVenues -= Chromosome.ONE_HARD_CONSTRAINT;
+                ++hardConstraintViolations;
+            }
+            fitnessFromBuildingPreference += EACH_SOFT_CONSTRAINT * genes[i].getDepartmentsBuildingPreferenceAverage() / Gene.MAX_BUILDING_PREF_SCORE;
+            fitnessFromTimeslotPreference += 0.25f * EACH_SOFT_CONSTRAINT * genes[i].getLecturerTimeslotPreference() / Gene.MAX_TIMESLOT_PREF_SCORE;
+            for (int j = i + 1; j < genes.length; ++j) {
+                if (genes[i].conflictsWithTimeOrPlaceOrLecturerOf(genes[j])) {
+                    fitnessFromOverlappingClasses -= Chromosome.ONE_HARD_CONSTRAINT;
+                    ++hardConstraintViolations;
+                }
+            }
+        }
+        return new int[]{fitnessFromOverlappingClasses + fitnessFromInvalidVenues + fitnessFromBuildingPreference + fitnessFromTimeslotPreference, hardConstraintViolations};
+    }
+
+    private static GeneticAlgorithmJobData createProblem(Random random) {
+        List<TimeslotGA> timeslots = new ArrayList<>();
+        for (int day = 0; day < 5; ++day) {
+            for (int time = 9; time < 18; ++time) {
+                HashMap<Long, Integer> preferences = new HashMap<>();
+                for (int i = 0; i < 20; ++i) {
+                    preferences.put((long) random.nextInt(DEPARTMENTS * 10), random.nextInt(21));
+                }
+                timeslots.add(new TimeslotGA(timeslots.size() + 1, day, time, preferences));
+            }
+        }
+
+        List<VenueGA> venues = new ArrayList<>();
+        List<ModuleGA> modules = new ArrayList<>();
+        for (int department = 0; department < DEPARTMENTS; ++department) {
+            for (int v = 0; v < VENUES_PER_DEPARTMENT; ++v) {
+                HashMap<Long, Integer> scores = new HashMap<>();
+                scores.put((long) department, 20);
+                scores.put((long) random.nextInt(DEPARTMENTS), random.nextInt(21));
+                venues.add(new VenueGA(venues.size() + 1, "Room " + department + "." + v, v == 0, 30 + random.nextInt(200),
+                        random.nextDouble() * 1000, random.nextDouble() * 1000, scores));
+            }
+            for (int m = 0; m < MODULES_PER_DEPARTMENT; ++m) {
+                HashSet<Long> courseIds = new HashSet<>();
+                courseIds.add((long) department * 10 + random.nextInt(5));
+                courseIds.add((long) department * 10 + random.nextInt(5));
+                HashSet<Long> departmentIds = new HashSet<>();
+                departmentIds.add((long) department);
+                modules.add(new ModuleGA(modules.size() + 1, "Module " + department + "-" + m, 10 + random.nextInt(200), m % 10 == 0,
+                        department * 10 + random.nextInt(10), courseIds, departmentIds));
+            }
+        }
+
+        GeneticAlgorithmJobData data = new GeneticAlgorithmJobData();
+        data.setModules(modules);
+        data.setVenues(venues);
+        data.setTimeslots(timeslots);
+        return data;
+    }
+}
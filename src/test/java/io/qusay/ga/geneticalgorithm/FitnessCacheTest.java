@@ -0,0 +1,62 @@
+package io.qusay.ga.geneticalgorithm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static io.qusay.ga.geneticalgorithm.TestProblems.module;
+import static io.qusay.ga.geneticalgorithm.TestProblems.timeslots;
+import static io.qusay.ga.geneticalgorithm.TestProblems.venue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class FitnessCacheTest {
+    @Test
+    void hitsNeedBothHashesToMatch() {
+        FitnessCache cache = new FitnessCache(100);
+        cache.put(42, new FitnessCache.Entry(7, -1000, false, 1));
+
+        FitnessCache.Entry hit = cache.get(42, 7);
+        assertNotNull(hit);
+        assertEquals(-1000, hit.fitness);
+        assertEquals(1, hit.hardConstraintViolations);
+
+        assertNull(cache.get(42, 8));
+        assertNull(cache.get(43, 7));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(1, cache.getCollisions());
+    }
+
+    @Test
+    void collidingEntryIsReplacedByTheNewerChromosome() {
+        GeneticAlgorithmJobData data = problem();
+        data.setFitnessCache(new FitnessCache(100));
+        Chromosome chromosome = new Chromosome(data);
+        final int fitness = chromosome.getCachedFitness();
+
+        // Pretend a different chromosome with the same hash got there first, with a fitness this one can't have
+        data.getFitnessCache().put(chromosome.getHash(), new FitnessCache.Entry(~chromosome.getVerificationHash(), fitness + 1, true, 0));
+        chromosome.evaluateFitness();
+
+        assertEquals(fitness, chromosome.getCachedFitness());
+        assertEquals(1, data.getFitnessCache().getCollisions());
+        assertEquals(fitness, data.getFitnessCache().get(chromosome.getHash(), chromosome.getVerificationHash()).fitness);
+    }
+
+    @Test
+    void leastRecentlyUsedEntriesAreDropped() {
+        // One entry per segment. Both hashes have the same high bits, so land in the same segment
+        FitnessCache cache = new FitnessCache(16);
+        cache.put(1, new FitnessCache.Entry(1, 1, true, 0));
+        cache.put(2, new FitnessCache.Entry(2, 2, true, 0));
+
+        assertNull(cache.get(1, 1));
+        assertNotNull(cache.get(2, 2));
+    }
+
+    private static GeneticAlgorithmJobData problem() {
+        return TestProblems.problem(Arrays.asList(venue(1, false, 50)), timeslots(2), module(1, false, 20, 1, 10), module(2, false, 20, 1, 10));
+    }
+}
@@ -0,0 +1,44 @@
+package io.qusay.ga.geneticalgorithm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static io.qusay.ga.geneticalgorithm.TestProblems.randomGenes;
+import static io.qusay.ga.geneticalgorithm.TestProblems.randomProblem;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PopulationTest {
+    @Test
+    void repeatPicksAreMutatedRatherThanCloned() {
+        Random random = new Random(3);
+        GeneticAlgorithmJobData data = randomProblem(random, 2, 4);
+        data.setPopulationSize(20);
+        data.setScheduledModules(Arrays.asList(randomGenes(data, random)));
+        data.setModifyExistingJob(true);
+        ExecutorService threadPool = Executors.newFixedThreadPool(2);
+        try {
+            // Every individual starts as a clone of the existing schedule, so the wheel can only land on copies of it
+            Population population = new Population(data, threadPool);
+            assertEquals(20, population.getIndividuals().size());
+
+            population.select(1, 3);
+
+            Set<Long> hashes = new HashSet<>();
+            for (Chromosome individual : population.getIndividuals()) {
+                hashes.add(individual.getHash());
+            }
+            assertTrue(population.getIndividuals().size() > 1);
+            assertEquals(population.getIndividuals().size(), hashes.size());
+            assertEquals(1.0f, population.getDiversity());
+        } finally {
+            threadPool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package io.qusay.ga.geneticalgorithm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static io.qusay.ga.geneticalgorithm.TestProblems.module;
+import static io.qusay.ga.geneticalgorithm.TestProblems.timeslots;
+import static io.qusay.ga.geneticalgorithm.TestProblems.venue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProblemDecomposerTest {
+    // Classrooms fit the lectures below, the lab fits only the labs
+    private final VenueGA classroom = venue(1, false, 50);
+    private final VenueGA hall = venue(2, false, 500);
+    private final VenueGA lab = venue(3, true, 50);
+
+    @Test
+    void modulesThatCanNeverConflictAreSplitApart() {
+        ModuleGA lectureA = module(1, false, 40, 1, 10);
+        ModuleGA lectureB = module(2, false, 30, 2, 11);
+        ModuleGA labC = module(3, true, 20, 3, 12);
+        ModuleGA labD = module(4, true, 20, 4, 13);
+
+        List<GeneticAlgorithmJobData> components = ProblemDecomposer.decompose(problem(lectureA, lectureB, labC, labD));
+
+        assertEquals(2, components.size());
+        assertEquals(Arrays.asList(lectureA, lectureB), components.get(0).getModules());
+        assertEquals(Arrays.asList(classroom, hall), components.get(0).getVenues());
+        assertEquals(Arrays.asList(labC, labD), components.get(1).getModules());
+        assertEquals(Arrays.asList(lab), components.get(1).getVenues());
+    }
+
+    @Test
+    void sharedLecturerOrCourseJoinsComponents() {
+        ModuleGA lecture = module(1, false, 40, 1, 10);
+        ModuleGA labSameLecturer = module(2, true, 20, 1, 11);
+        ModuleGA labSameCourse = module(3, true, 20, 3, 10);
+        GeneticAlgorithmJobData data = problem(lecture, labSameLecturer, labSameCourse);
+
+        List<GeneticAlgorithmJobData> components = ProblemDecomposer.decompose(data);
+
+        assertEquals(1, components.size());
+        assertSame(data, components.get(0));
+    }
+
+    @Test
+    void modulesWithoutLecturersAreNotJoinedByIt() {
+        ModuleGA lecture = module(1, false, 40, ModuleGA.NO_LECTURER, 10);
+        ModuleGA labModule = module(2, true, 20, ModuleGA.NO_LECTURER, 11);
+
+        assertEquals(2, ProblemDecomposer.decompose(problem(lecture, labModule)).size());
+    }
+
+    @Test
+    void moduleThatFitsNowhereJoinsTheSmallestComponentOnly() {
+        ModuleGA lectureA = module(1, false, 40, 1, 10);
+        ModuleGA lectureB = module(2, false, 30, 2, 11);
+        ModuleGA lectureC = module(3, false, 30, 3, 12);
+        ModuleGA labD = module(4, true, 20, 4, 13);
+        ModuleGA tooBig = module(5, true, 1000, 5, 14);
+
+        List<GeneticAlgorithmJobData> components = ProblemDecomposer.decompose(problem(lectureA, lectureB, lectureC, labD, tooBig));
+
+        assertEquals(2, components.size());
+        assertEquals(Arrays.asList(labD, tooBig), components.get(1).getModules());
+        assertEquals(Arrays.asList(lab), components.get(1).getVenues());
+
+        // Every module is in exactly one component, and no venue is in two
+        Set<ModuleGA> modules = new HashSet<>();
+        Set<VenueGA> venues = new HashSet<>();
+        int numModules = 0;
+        int numVenues = 0;
+        for (GeneticAlgorithmJobData component : components) {
+            modules.addAll(component.getModules());
+            venues.addAll(component.getVenues());
+            numModules += component.getModules().size();
+            numVenues += component.getVenues().size();
+        }
+        assertEquals(5, numModules);
+        assertEquals(5, modules.size());
+        assertEquals(venues.size(), numVenues);
+    }
+
+    @Test
+    void existingGenesFollowTheirModules() {
+        ModuleGA lecture = module(1, false, 40, 1, 10);
+        ModuleGA labModule = module(2, true, 20, 2, 11);
+        GeneticAlgorithmJobData data = problem(lecture, labModule);
+        data.setScheduledModules(Arrays.asList(
+                new Gene(lecture, hall, data.getTimeslots().get(1), data),
+                new Gene(labModule, lab, data.getTimeslots().get(0), data)));
+        data.setModifyExistingJob(true);
+
+        List<GeneticAlgorithmJobData> components = ProblemDecomposer.decompose(data);
+
+        assertEquals(2, components.size());
+        for (GeneticAlgorithmJobData component : components) {
+            assertEquals(1, component.getScheduledModules().size());
+            Gene gene = component.getScheduledModules().get(0);
+            assertSame(component.getModules().get(0), gene.getModule());
+            assertTrue(component.getVenues().contains(gene.getVenue()));
+        }
+        assertEquals(hall, components.get(0).getScheduledModules().get(0).getVenue());
+    }
+
+    @Test
+    void existingGenesInAnotherComponentsVenueMoveUnlessLocked() {
+        ModuleGA lecture = module(1, false, 40, 1, 10);
+        ModuleGA labInHall = module(2, true, 20, 2, 11);
+        ModuleGA lockedLabInHall = module(3, true, 20, 3, 12);
+        GeneticAlgorithmJobData data = problem(lecture, labInHall, lockedLabInHall);
+        Gene lockedGene = new Gene(lockedLabInHall, hall, data.getTimeslots().get(0), data);
+        lockedGene.setLockedVenue(true);
+        data.setScheduledModules(Arrays.asList(
+                new Gene(lecture, classroom, data.getTimeslots().get(0), data),
+                new Gene(labInHall, hall, data.getTimeslots().get(1), data),
+                lockedGene));
+        data.setModifyExistingJob(true);
+
+        List<GeneticAlgorithmJobData> components = ProblemDecomposer.decompose(data);
+
+        assertEquals(2, components.size());
+        assertEquals(classroom, components.get(0).getScheduledModules().get(0).getVenue());
+        Gene moved = components.get(1).getScheduledModules().get(0);
+        assertEquals(lab, moved.getVenue());
+        assertEquals(data.getTimeslots().get(1), moved.getTimeslot());
+        assertEquals(hall, components.get(1).getScheduledModules().get(1).getVenue());
+    }
+
+    private GeneticAlgorithmJobData problem(ModuleGA... modules) {
+        return TestProblems.problem(Arrays.asList(classroom, hall, lab), timeslots(2), modules);
+    }
+}
@@ -0,0 +1,141 @@
+package io.qusay.ga.geneticalgorithm;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark: write and read back a {@link ProblemSnapshot} of a synthetic problem with 10,000 modules
+ *
+ * Also checks the round trip: the problem read back must match the one written.
+ *
+ * Not a unit test (surefire won't pick it up): run its main() by hand
+ */
+public class ProblemSnapshotBenchmark {
+    private static final int DEPARTMENTS = 100;
+    private static final int MODULES_PER_DEPARTMENT = 100;
+    private static final int VENUES_PER_DEPARTMENT = 10;
+    private static final int RUNS = 20;
+
+    public static void main(String[] args) throws Exception {
+        GeneticAlgorithmJobData data = createProblem(new Random(1));
+        Path file = Files.createTempFile("problem", ".snapshot");
+
+        GeneticAlgorithmJobData read = null;
+        long bestWriteNanos = Long.MAX_VALUE;
+        long bestReadNanos = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; ++run) {
+            long start = System.nanoTime();
+            ProblemSnapshot.write(data, file);
+            bestWriteNanos = Math.min(bestWriteNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            read = ProblemSnapshot.read(file);
+            bestReadNanos = Math.min(bestReadNanos, System.nanoTime() - start);
+        }
+
+        System.out.println("Modules=" + data.getModules().size() + ", venues=" + data.getVenues().size() + ", timeslots=" + data.getTimeslots().size()
+                + ", scheduled=" + data.getScheduledModules().size() + ", file=" + Files.size(file) / 1024 + "KB");
+        System.out.println("Best of " + RUNS + ": write=" + bestWriteNanos / 1_000_000.0 + "ms, read=" + bestReadNanos / 1_000_000.0 + "ms");
+        check(data, read);
+        System.out.println("Round trip OK");
+        Files.delete(file);
+    }
+
+    private static GeneticAlgorithmJobData createProblem(Random random) {
+        List<TimeslotGA> timeslots = new ArrayList<>();
+        for (int day = 0; day < 5; ++day) {
+            for (int time = 9; time < 18; ++time) {
+                HashMap<Long, Integer> preferences = new HashMap<>();
+                for (int i = 0; i < 20; ++i) {
+                    preferences.put((long) random.nextInt(DEPARTMENTS * 10), random.nextInt(3));
+                }
+                timeslots.add(new TimeslotGA(timeslots.size() + 1, day, time, preferences));
+            }
+        }
+
+        List<VenueGA> venues = new ArrayList<>();
+        List<ModuleGA> modules = new ArrayList<>();
+        for (int department = 0; department < DEPARTMENTS; ++department) {
+            for (int v = 0; v < VENUES_PER_DEPARTMENT; ++v) {
+                HashMap<Long, Integer> scores = new HashMap<>();
+                scores.put((long) department, 100);
+                scores.put((long) random.nextInt(DEPARTMENTS), random.nextInt(100));
+                venues.add(new VenueGA(venues.size() + 1, "Room " + department + "." + v, v == 0, 30 + random.nextInt(200),
+                        random.nextDouble() * 1000, random.nextDouble() * 1000, scores));
+            }
+            for (int m = 0; m < MODULES_PER_DEPARTMENT; ++m) {
+                HashSet<Long> courseIds = new HashSet<>();
+                courseIds.add((long) department * 10 + random.nextInt(5));
+                courseIds.add((long) department * 10 + random.nextInt(5));
+                HashSet<Long> departmentIds = new HashSet<>();
+                departmentIds.add((long) department);
+                modules.add(new ModuleGA(modules.size() + 1, "Module " + department + "-" + m, 10 + random.nextInt(200), m % 10 == 0,
+                        department * 10 + random.nextInt(10), courseIds, departmentIds));
+            }
+        }
+
+        GeneticAlgorithmJobData data = new GeneticAlgorithmJobData();
+        data.setScheduleId(7);
+        data.setJobId(42);
+        data.setModules(modules);
+        data.setVenues(venues);
+        data.setTimeslots(timeslots);
+        data.setNumGenerations(500);
+        data.setPopulationSize(50);
+        data.setCrossoverProbability(0.1f);
+        data.setMutateProbability(0.05f);
+        data.setMutatedGenesMax(5);
+
+        // Every tenth module is already scheduled, some locked
+        List<Gene> scheduledModules = new ArrayList<>();
+        for (int i = 0; i < modules.size(); i += 10) {
+            Gene gene = new Gene(modules.get(i), venues.get(random.nextInt(venues.size())), timeslots.get(random.nextInt(timeslots.size())), data);
+            gene.setLockedVenue(random.nextBoolean());
+            gene.setLockedTimeslot(random.nextBoolean());
+            scheduledModules.add(gene);
+        }
+        data.setScheduledModules(scheduledModules);
+        data.setModifyExistingJob(true);
+        return data;
+    }
+
+    private static void check(GeneticAlgorithmJobData expected, GeneticAlgorithmJobData actual) {
+        require(expected.getScheduleId() == actual.getScheduleId() && expected.getJobId() == actual.getJobId(), "IDs");
+        require(expected.getNumGenerations() == actual.getNumGenerations() && expected.getPopulationSize() == actual.getPopulationSize()
+                && expected.getCrossoverProbability() == actual.getCrossoverProbability() && expected.isModifyExistingJob() == actual.isModifyExistingJob(), "parameters");
+        for (int i = 0; i < expected.getModules().size(); ++i) {
+            ModuleGA a = expected.getModules().get(i);
+            ModuleGA b = actual.getModules().get(i);
+            require(a.getId() == b.getId() && a.getName().equals(b.getName()) && a.getNumEnrolled() == b.getNumEnrolled() && a.isLab() == b.isLab()
+                    && a.getLecturerId() == b.getLecturerId() && a.getCourseIds().equals(b.getCourseIds()) && a.getDepartmentIds().equals(b.getDepartmentIds()), "module " + i);
+        }
+        for (int i = 0; i < expected.getVenues().size(); ++i) {
+            VenueGA a = expected.getVenues().get(i);
+            VenueGA b = actual.getVenues().get(i);
+            require(a.getId() == b.getId() && a.getName().equals(b.getName()) && a.getCapacity() == b.getCapacity() && a.getLocationX() == b.getLocationX()
+                    && a.getDepartmentsScores().equals(b.getDepartmentsScores()), "venue " + i);
+        }
+        for (int i = 0; i < expected.getTimeslots().size(); ++i) {
+            TimeslotGA a = expected.getTimeslots().get(i);
+            TimeslotGA b = actual.getTimeslots().get(i);
+            require(a.getId() == b.getId() && a.getDay() == b.getDay() && a.getTime() == b.getTime() && a.getLecturerPreferences().equals(b.getLecturerPreferences()), "timeslot " + i);
+        }
+        for (int i = 0; i < expected.getScheduledModules().size(); ++i) {
+            Gene a = expected.getScheduledModules().get(i);
+            Gene b = actual.getScheduledModules().get(i);
+            require(a.getModule().getId() == b.getModule().getId() && a.getVenue().getId() == b.getVenue().getId() && a.getTimeslot().getId() == b.getTimeslot().getId()
+                    && a.isLockedVenue() == b.isLockedVenue() && a.isLockedTimeslot() == b.isLockedTimeslot(), "scheduled module " + i);
+        }
+    }
+
+    private static void require(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError("Round trip changed " + what);
+        }
+    }
+}
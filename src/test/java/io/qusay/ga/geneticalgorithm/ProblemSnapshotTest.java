@@ -0,0 +1,147 @@
+package io.qusay.ga.geneticalgorithm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static io.qusay.ga.geneticalgorithm.TestProblems.randomGenes;
+import static io.qusay.ga.geneticalgorithm.TestProblems.randomProblem;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProblemSnapshotTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTripKeepsTheWholeProblem() throws IOException {
+        GeneticAlgorithmJobData data = problem();
+        Path file = directory.resolve("problem.snapshot");
+
+        ProblemSnapshot.write(data, file);
+        GeneticAlgorithmJobData read = ProblemSnapshot.read(file);
+
+        assertEquals(7, read.getScheduleId());
+        assertEquals(42, read.getJobId());
+        assertTrue(read.isModifyExistingJob());
+        assertEquals(300, read.getNumGenerations());
+        assertEquals(40, read.getPopulationSize());
+        assertEquals(0.25f, read.getCrossoverProbability());
+        assertEquals(0.05f, read.getMutateProbability());
+        assertEquals(4, read.getMutatedGenesMax());
+        assertTrue(read.isAdaptiveRates());
+        assertEquals(250, read.getAdaptiveStallWindow());
+        assertEquals(60_000, read.getTimeBudgetMillis());
+        assertEquals(5000, read.getFitnessCacheSize());
+
+        assertEquals(data.getModules().size(), read.getModules().size());
+        for (int i = 0; i < data.getModules().size(); ++i) {
+            ModuleGA expected = data.getModules().get(i);
+            ModuleGA actual = read.getModules().get(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getNumEnrolled(), actual.getNumEnrolled());
+            assertEquals(expected.isLab(), actual.isLab());
+            assertEquals(expected.getLecturerId(), actual.getLecturerId());
+            assertEquals(expected.getCourseIds(), actual.getCourseIds());
+            assertEquals(expected.getDepartmentIds(), actual.getDepartmentIds());
+        }
+        assertFalse(read.getModules().get(6).hasLecturer());
+
+        assertEquals(data.getVenues().size(), read.getVenues().size());
+        for (int i = 0; i < data.getVenues().size(); ++i) {
+            VenueGA expected = data.getVenues().get(i);
+            VenueGA actual = read.getVenues().get(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getCapacity(), actual.getCapacity());
+            assertEquals(expected.getLocationX(), actual.getLocationX());
+            assertEquals(expected.getLocationY(), actual.getLocationY());
+            assertEquals(expected.getDepartmentsScores(), actual.getDepartmentsScores());
+        }
+
+        assertEquals(data.getTimeslots().size(), read.getTimeslots().size());
+        for (int i = 0; i < data.getTimeslots().size(); ++i) {
+            TimeslotGA expected = data.getTimeslots().get(i);
+            TimeslotGA actual = read.getTimeslots().get(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getDay(), actual.getDay());
+            assertEquals(expected.getTime(), actual.getTime());
+            assertEquals(expected.getLecturerPreferences(), actual.getLecturerPreferences());
+        }
+
+        assertEquals(data.getScheduledModules().size(), read.getScheduledModules().size());
+        for (int i = 0; i < data.getScheduledModules().size(); ++i) {
+            Gene expected = data.getScheduledModules().get(i);
+            Gene actual = read.getScheduledModules().get(i);
+            assertEquals(expected.getModule().getId(), actual.getModule().getId());
+            assertEquals(expected.getVenue().getId(), actual.getVenue().getId());
+            assertEquals(expected.getTimeslot().getId(), actual.getTimeslot().getId());
+            assertEquals(expected.isLockedVenue(), actual.isLockedVenue());
+            assertEquals(expected.isLockedTimeslot(), actual.isLockedTimeslot());
+            // Genes point at the problem read back, not copies of it
+            assertTrue(read.getModules().contains(actual.getModule()));
+            assertTrue(read.getVenues().contains(actual.getVenue()));
+        }
+    }
+
+    @Test
+    void otherFilesAreRejected() throws IOException {
+        Path file = directory.resolve("not.snapshot");
+        Files.write(file, "{\"modules\": []}".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(IOException.class, () -> ProblemSnapshot.read(file));
+    }
+
+    @Test
+    void truncatedSnapshotsAreRejected() throws IOException {
+        Path file = directory.resolve("problem.snapshot");
+        ProblemSnapshot.write(problem(), file);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+
+        assertThrows(IOException.class, () -> ProblemSnapshot.read(file));
+    }
+
+    private static GeneticAlgorithmJobData problem() {
+        Random random = new Random(1);
+        GeneticAlgorithmJobData data = randomProblem(random, 3, 7);
+        // Names are stored as UTF-8, and sets may be empty
+        data.getModules().add(new ModuleGA(22, "Chimie – TP", 30, true, 3, new HashSet<>(), new HashSet<>()));
+        data.setModules(data.getModules());
+        data.setScheduleId(7);
+        data.setJobId(42);
+        data.setNumGenerations(300);
+        data.setPopulationSize(40);
+        data.setCrossoverProbability(0.25f);
+        data.setMutateProbability(0.05f);
+        data.setMutatedGenesMax(4);
+        data.setAdaptiveRates(true);
+        data.setAdaptiveStallWindow(250);
+        data.setTimeBudgetMillis(60_000);
+        data.setFitnessCacheSize(5000);
+
+        // Every other module is already scheduled, some locked
+        Gene[] genes = randomGenes(data, random);
+        List<Gene> scheduledModules = new ArrayList<>();
+        for (int i = 0; i < genes.length; i += 2) {
+            genes[i].setLockedVenue(i % 4 == 0);
+            genes[i].setLockedTimeslot(i % 3 == 0);
+            scheduledModules.add(genes[i]);
+        }
+        data.setScheduledModules(scheduledModules);
+        data.setModifyExistingJob(true);
+        return data;
+    }
+}
@@ -0,0 +1,105 @@
+package io.qusay.ga.geneticalgorithm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds the small problem instances the GA's unit tests run on
+ */
+final class TestProblems {
+    private TestProblems() {
+    }
+
+    /**
+     * A module in department 1, on one course
+     */
+    static ModuleGA module(long id, boolean isLab, int numEnrolled, long lecturerId, long courseId) {
+        return new ModuleGA(id, "Module " + id, numEnrolled, isLab, lecturerId, new HashSet<>(Arrays.asList(courseId)), new HashSet<>(Arrays.asList(1L)));
+    }
+
+    /**
+     * A venue that no department prefers
+     */
+    static VenueGA venue(long id, boolean isLab, int capacity) {
+        return new VenueGA(id, "Venue " + id, isLab, capacity, 0, 0, new HashMap<>());
+    }
+
+    /**
+     * @return IDs 1 to count, eight a day from 9:00, with no lecturer preferences
+     */
+    static List<TimeslotGA> timeslots(int count) {
+        List<TimeslotGA> timeslots = new ArrayList<>();
+        for (int t = 0; t < count; ++t) {
+            timeslots.add(new TimeslotGA(t + 1, t / 8, 9 + t % 8, new HashMap<>()));
+        }
+        return timeslots;
+    }
+
+    static GeneticAlgorithmJobData problem(List<VenueGA> venues, List<TimeslotGA> timeslots, ModuleGA... modules) {
+        GeneticAlgorithmJobData data = new GeneticAlgorithmJobData();
+        data.setModules(new ArrayList<>(Arrays.asList(modules)));
+        data.setVenues(venues);
+        data.setTimeslots(timeslots);
+        return data;
+    }
+
+    /**
+     * A problem with lecturer preferences and venue scores, and too few timeslots and venues for its modules, so that every kind of conflict happens
+     * Two venues per department, the first a lab; six timeslots. Every seventh module has no lecturer
+     */
+    static GeneticAlgorithmJobData randomProblem(Random random, int departments, int modulesPerDepartment) {
+        List<TimeslotGA> timeslots = new ArrayList<>();
+        for (int day = 0; day < 2; ++day) {
+            for (int time = 9; time < 12; ++time) {
+                HashMap<Long, Integer> preferences = new HashMap<>();
+                for (int i = 0; i < 10; ++i) {
+                    preferences.put((long) random.nextInt(departments * 5), random.nextInt(Gene.MAX_TIMESLOT_PREF_SCORE + 1));
+                }
+                timeslots.add(new TimeslotGA(timeslots.size() + 1, day, time, preferences));
+            }
+        }
+
+        List<VenueGA> venues = new ArrayList<>();
+        List<ModuleGA> modules = new ArrayList<>();
+        for (int department = 0; department < departments; ++department) {
+            for (int v = 0; v < 2; ++v) {
+                HashMap<Long, Integer> scores = new HashMap<>();
+                scores.put((long) department, random.nextInt(Gene.MAX_BUILDING_PREF_SCORE + 1));
+                venues.add(new VenueGA(venues.size() + 1, "Room " + department + "." + v, v == 0, 20 + random.nextInt(100),
+                        random.nextDouble() * 1000, random.nextDouble() * 1000, scores));
+            }
+            for (int m = 0; m < modulesPerDepartment; ++m) {
+                HashSet<Long> courseIds = new HashSet<>();
+                courseIds.add((long) department * 10 + random.nextInt(3));
+                courseIds.add((long) department * 10 + random.nextInt(3));
+                HashSet<Long> departmentIds = new HashSet<>();
+                departmentIds.add((long) department);
+                final long lecturerId = m % 7 == 6 ? ModuleGA.NO_LECTURER : department * 5 + random.nextInt(5);
+                modules.add(new ModuleGA(modules.size() + 1, "Module " + department + "-" + m, 10 + random.nextInt(100), m % 4 == 0,
+                        lecturerId, courseIds, departmentIds));
+            }
+        }
+
+        GeneticAlgorithmJobData data = new GeneticAlgorithmJobData();
+        data.setModules(modules);
+        data.setVenues(venues);
+        data.setTimeslots(timeslots);
+        return data;
+    }
+
+    /**
+     * Every module in a random venue and timeslot, valid or not
+     */
+    static Gene[] randomGenes(GeneticAlgorithmJobData data, Random random) {
+        Gene[] genes = new Gene[data.getChromosomeSize()];
+        for (int i = 0; i < genes.length; ++i) {
+            genes[i] = new Gene(data.getIndexedModule(i), data.getVenues().get(random.nextInt(data.getVenues().size())),
+                    data.getTimeslots().get(random.nextInt(data.getTimeslots().size())), data);
+        }
+        return genes;
+    }
+}
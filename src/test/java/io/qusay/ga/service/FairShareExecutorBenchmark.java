@@ -0,0 +1,118 @@
+package io.qusay.ga.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Benchmark: one huge job and five small jobs running at once, on a plain fixed thread pool vs. the {@link FairShareExecutor}
+ *
+ * Each job imitates the shape of a {@link io.qusay.ga.geneticalgorithm.GeneticAlgorithmJob}: for every generation, a driver thread
+ * submits one CPU-bound task per individual, then waits for all of them before starting the next generation.
+ * Reports how long the small jobs took to finish. On the plain pool they queue behind the huge job's tasks every generation;
+ * with fair sharing they should finish close to how long they'd take alone.
+ *
+ * Not a unit test (surefire won't pick it up): run its main() by hand
+ */
+public class FairShareExecutorBenchmark {
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+    private static final int GENERATIONS = 200;
+    private static final int HUGE_POPULATION = 2000;
+    private static final int SMALL_POPULATION = 60;
+    private static final int SMALL_JOBS = 5;
+    // Roughly the cost of one fitness evaluation
+    private static final int WORK_PER_TASK = 20_000;
+
+    private static volatile long sink; // Stops the JIT from removing the busy work
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Threads=" + THREADS + ", generations=" + GENERATIONS + ", huge population=" + HUGE_POPULATION + ", small population=" + SMALL_POPULATION + " x" + SMALL_JOBS);
+
+        // Warm up the JIT
+        ExecutorService warmUp = Executors.newFixedThreadPool(THREADS);
+        runJob(warmUp, 20, SMALL_POPULATION);
+        warmUp.shutdown();
+
+        ExecutorService fixedPool = Executors.newFixedThreadPool(THREADS);
+        report("Fixed thread pool", runMix(fixedPool, fixedPool, new ExecutorService[SMALL_JOBS]));
+        fixedPool.shutdown();
+
+        FairShareExecutor fairShare = new FairShareExecutor(THREADS, "benchmark");
+        ExecutorService[] smallShares = new ExecutorService[SMALL_JOBS];
+        for (int i = 0; i < SMALL_JOBS; ++i) {
+            smallShares[i] = fairShare.createShare("small-" + i, 1.0);
+        }
+        report("Fair share, equal weights", runMix(null, fairShare.createShare("huge", 1.0), smallShares));
+
+        for (int i = 0; i < SMALL_JOBS; ++i) {
+            smallShares[i] = fairShare.createShare("small-" + i, 1.0);
+        }
+        report("Fair share, huge job throttled to 25%", runMix(null, fairShare.createShare("huge", 0.25), smallShares));
+        fairShare.shutdownNow();
+    }
+
+    /**
+     * @param shared     If not null, every job uses this executor. Otherwise huge and small are used
+     * @return Milliseconds taken by: the huge job, then each small job
+     */
+    private static long[] runMix(ExecutorService shared, ExecutorService huge, ExecutorService[] small) throws Exception {
+        ExecutorService drivers = Executors.newCachedThreadPool();
+        List<Future<Long>> results = new ArrayList<>();
+        results.add(drivers.submit(timed(shared != null ? shared : huge, HUGE_POPULATION)));
+        Thread.sleep(200); // The small jobs arrive while the huge one is already running
+        for (int i = 0; i < SMALL_JOBS; ++i) {
+            results.add(drivers.submit(timed(shared != null ? shared : small[i], SMALL_POPULATION)));
+        }
+
+        long[] millis = new long[results.size()];
+        for (int i = 0; i < results.size(); ++i) {
+            millis[i] = results.get(i).get();
+        }
+        drivers.shutdown();
+        return millis;
+    }
+
+    private static Callable<Long> timed(ExecutorService pool, int populationSize) {
+        return () -> {
+            final long start = System.nanoTime();
+            runJob(pool, GENERATIONS, populationSize);
+            return (System.nanoTime() - start) / 1_000_000;
+        };
+    }
+
+    private static void runJob(ExecutorService pool, int generations, int populationSize) throws Exception {
+        List<Callable<Long>> tasks = new ArrayList<>(populationSize);
+        for (int i = 0; i < populationSize; ++i) {
+            final long seed = i;
+            tasks.add(() -> busyWork(seed));
+        }
+        for (int generation = 0; generation < generations; ++generation) {
+            for (Future<Long> future : pool.invokeAll(tasks)) {
+                sink += future.get();
+            }
+        }
+    }
+
+    private static long busyWork(long seed) {
+        long x = seed;
+        for (int i = 0; i < WORK_PER_TASK; ++i) {
+            x ^= x << 13;
+            x ^= x >>> 7;
+            x ^= x << 17;
+        }
+        return x;
+    }
+
+    private static void report(String name, long[] millis) {
+        long smallTotal = 0;
+        long smallWorst = 0;
+        for (int i = 1; i < millis.length; ++i) {
+            smallTotal += millis[i];
+            smallWorst = Math.max(smallWorst, millis[i]);
+        }
+        System.out.println(name + ": huge=" + millis[0] + "ms, small avg=" + (smallTotal / (millis.length - 1)) + "ms, small worst=" + smallWorst + "ms");
+    }
+}
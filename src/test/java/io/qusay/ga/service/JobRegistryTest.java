@@ -0,0 +1,100 @@
+package io.qusay.ga.service;
+
+import io.qusay.ga.geneticalgorithm.GeneticAlgorithmJobData;
+import io.qusay.ga.geneticalgorithm.JobListener;
+import io.qusay.model.Job;
+import io.qusay.model.JobMetricsDto;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JobRegistryTest {
+    private final ThreadPoolExecutor jobExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+    private final FairShareExecutor computePool = new FairShareExecutor(1, "test-compute");
+    // Holds the job executor's only thread, so that every job started stays queued
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void shutDown() {
+        jobExecutor.getQueue().clear();
+        release.countDown();
+        jobExecutor.shutdownNow();
+        computePool.shutdownNow();
+    }
+
+    @Test
+    void registerGetAndRemove() {
+        JobRegistry registry = new JobRegistry();
+        GeneticAlgorithmRunner runner = runner(1L, 10L, 1.0);
+
+        registry.register(1L, runner);
+        assertSame(runner, registry.get(1L));
+        assertEquals(1, registry.size());
+        assertThrows(IllegalStateException.class, () -> registry.register(1L, runner(1L, 11L, 1.0)));
+        assertSame(runner, registry.get(1L));
+
+        assertSame(runner, registry.remove(1L));
+        assertNull(registry.remove(1L));
+        assertNull(registry.get(1L));
+        assertNull(registry.getMetrics(1L));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void metricsAreOrderedByJobIdAndLive() {
+        jobExecutor.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        JobRegistry registry = new JobRegistry();
+        GeneticAlgorithmRunner first = runner(3L, 30L, 2.0);
+        GeneticAlgorithmRunner second = runner(2L, 20L, 1.0);
+        registry.register(3L, first);
+        registry.register(2L, second);
+        registry.register(5L, runner(5L, 50L, 1.0)); // Never started
+        first.start();
+        second.start();
+
+        List<JobMetricsDto> metrics = registry.listMetrics();
+        assertEquals(3, metrics.size());
+        assertEquals(2L, metrics.get(0).getJobId());
+        assertEquals(3L, metrics.get(1).getJobId());
+        assertEquals(5L, metrics.get(2).getJobId());
+
+        assertEquals(20L, metrics.get(0).getScheduleId());
+        assertEquals(2, metrics.get(0).getQueuePosition());
+        assertEquals(1, metrics.get(1).getQueuePosition());
+        assertEquals(0, metrics.get(2).getQueuePosition());
+        assertEquals(2.0, metrics.get(1).getComputeWeight());
+        assertNull(metrics.get(1).getStartTime());
+
+        assertTrue(first.cancelIfQueued());
+        assertEquals("CANCELLED", registry.getMetrics(3L).getState());
+        assertEquals(1, registry.getMetrics(2L).getQueuePosition());
+    }
+
+    private GeneticAlgorithmRunner runner(Long jobId, Long scheduleId, double weight) {
+        GeneticAlgorithmJobData data = new GeneticAlgorithmJobData();
+        data.setJobId(jobId);
+        data.setScheduleId(scheduleId);
+        Job jobRecord = new Job();
+        jobRecord.setJobId(jobId);
+        return new GeneticAlgorithmRunner(data, jobRecord, jobExecutor, computePool.createShare("job-" + jobId, weight), null, JobListener.NONE);
+    }
+}